@@ -0,0 +1,318 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.io.output.NullWriter;
+import org.apache.ivy.plugins.report.XmlReportOutputter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of each phase of the generation of an ivy report, on synthetic
+ * resolve reports of increasing size.
+ * <p>
+ * Run with <code>mvn -Pbenchmark test-compile exec:exec</code>, the results
+ * are written as json to target/jmh-result.json. The benchmarks and sizes can
+ * be selected with <code>-Djmh.includes=".*parse.*"</code> and
+ * <code>-Djmh.args="-p modules=1000"</code>. The xsl transforms of the
+ * largest reports take minutes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportGenerationBenchmark {
+	private static final String RESOLVE_ID = "org.root-app";
+	private static final String CONF = "default";
+	private static final GraphReduction TRANSITIVE_REDUCTION = new GraphReduction(
+			true, false, false, 0);
+	private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+	@Param({ "100", "1000", "10000", "50000" })
+	public int modules;
+
+	@Param({ "3" })
+	public int fanOut;
+
+	@Param({ "0.2" })
+	public double diamondDensity;
+
+	private File dir;
+	private File resolveReportFile;
+	private File dependencyGraphFile;
+	private ResolveReport resolveReport;
+	private Templates htmlTemplates;
+	private Templates dotTemplates;
+	private byte[] html;
+	private byte[] dot;
+	private DotGraph dotGraph;
+	private DotGraph reducedDotGraph;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		dir = File.createTempFile("ivyreport-benchmark", "");
+		if (!dir.delete() || !dir.mkdir()) {
+			throw new IOException("Unable to create directory: " + dir);
+		}
+		resolveReportFile = new File(dir, RESOLVE_ID + "-" + CONF + ".xml");
+		new SyntheticResolveReport(modules, fanOut, diamondDensity, 42)
+				.write(resolveReportFile, CONF);
+		resolveReport = ResolveReport.parse(resolveReportFile);
+		dependencyGraphFile = new File(dir, RESOLVE_ID + "-" + CONF
+				+ DependencyGraph.EXTENSION);
+		new DependencyGraphWriter(resolveReport).write(dependencyGraphFile);
+		htmlTemplates = TemplatesCache.getInstance().getTemplates(
+				XmlReportOutputter.class, "ivy-report.xsl");
+		dotTemplates = TemplatesCache.getInstance().getTemplates(
+				XmlReportOutputter.class, "ivy-report-dot.xsl");
+		ByteArrayOutputStream htmlOutput = new ByteArrayOutputStream();
+		writeHtml(new OutputStreamWriter(htmlOutput, "UTF-8"));
+		html = htmlOutput.toByteArray();
+		ByteArrayOutputStream dotOutput = new ByteArrayOutputStream();
+		transform(dotTemplates, dotOutput);
+		dot = dotOutput.toByteArray();
+		dotGraph = parseDot();
+		StringWriter reducedDot = new StringWriter();
+		new DotReportWriter(resolveReport, TRANSITIVE_REDUCTION, reducedDot)
+				.write();
+		reducedDotGraph = new DotParser(new StringReader(reducedDot
+				.toString())).parse();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException, InterruptedException {
+		Util.deleteRecursive(dir);
+	}
+
+	/**
+	 * Parse of the resolve report by {@link ResolveReport}
+	 */
+	@Benchmark
+	public ResolveReport parse() throws IOException {
+		return ResolveReport.parse(resolveReportFile);
+	}
+
+	/**
+	 * Dependency graph written by {@link DependencyGraphWriter}, from the
+	 * parsed report
+	 */
+	@Benchmark
+	public void writeDependencyGraph() throws IOException {
+		new DependencyGraphWriter(resolveReport).write(new NullOutputStream());
+	}
+
+	/**
+	 * Mapped dependency graph read like {@link DependencyIndex} does, to
+	 * compare with {@link #parse()}
+	 */
+	@Benchmark
+	public int readDependencyGraph() throws IOException {
+		DependencyGraph graph = DependencyGraph.read(dependencyGraphFile);
+		int hash = 0;
+		for (int r = 0; r < graph.getRevisionCount(); r++) {
+			if (!graph.isEvicted(r)) {
+				int m = graph.getRevisionModule(r);
+				hash += graph.getModuleOrganisation(m).hashCode()
+						+ graph.getModuleName(m).hashCode()
+						+ graph.getRevisionName(r).hashCode();
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Html report written by {@link HtmlReportWriter}, from the parsed report
+	 */
+	@Benchmark
+	public void htmlWriter() throws IOException {
+		writeHtml(new NullWriter());
+	}
+
+	/**
+	 * Html report written by the ivy-report.xsl stylesheet, what a custom
+	 * stylesheet costs
+	 */
+	@Benchmark
+	public void htmlTransform() throws Exception {
+		transform(htmlTemplates, new NullOutputStream());
+	}
+
+	@Benchmark
+	public void dotTransform() throws Exception {
+		transform(dotTemplates, new NullOutputStream());
+	}
+
+	@Benchmark
+	public DotGraph dotParse() throws IOException {
+		return parseDot();
+	}
+
+	/**
+	 * Layout of the parsed dot by {@link LayeredGraphLayout}
+	 */
+	@Benchmark
+	public LayeredGraphLayout layout() throws InterruptedException {
+		LayeredGraphLayout layout = new LayeredGraphLayout(dotGraph);
+		layout.layout();
+		return layout;
+	}
+
+	/**
+	 * Dot written by {@link DotReportWriter} with a transitive reduction,
+	 * from the parsed report
+	 */
+	@Benchmark
+	public void reducedDot() throws IOException {
+		new DotReportWriter(resolveReport, TRANSITIVE_REDUCTION,
+				new NullWriter()).write();
+	}
+
+	/**
+	 * Layout of the transitively reduced graph, to compare with
+	 * {@link #layout()}
+	 */
+	@Benchmark
+	public LayeredGraphLayout reducedLayout() throws InterruptedException {
+		LayeredGraphLayout layout = new LayeredGraphLayout(reducedDotGraph);
+		layout.layout();
+		return layout;
+	}
+
+	/**
+	 * Layout and svg rendering by the dot executable, which must be on the
+	 * path. Exclude it with <code>-Djmh.args="-e dotExecutable"</code>
+	 * otherwise.
+	 */
+	@Benchmark
+	public void dotExecutable() throws Exception {
+		new DotGraphRenderer("dot").render(new ByteArrayInputStream(dot),
+				new NullOutputStream());
+	}
+
+	/**
+	 * Gzip compressed write of the html report, as done by
+	 * {@link IvyReportGenerator#setCompress(boolean)}
+	 */
+	@Benchmark
+	public void writeCompressed() throws IOException {
+		write(new BufferedOutputStream(new GZIPOutputStream(
+				new FileOutputStream(new File(dir, "report.html.gz")),
+				GZIP_BUFFER_SIZE)));
+	}
+
+	@Benchmark
+	public void writeUncompressed() throws IOException {
+		write(new BufferedOutputStream(new FileOutputStream(new File(dir,
+				"report.html"))));
+	}
+
+	/**
+	 * All the phases, as run by the publisher with the java graph layout
+	 */
+	@Benchmark
+	public File generateReports() throws Exception {
+		File targetDir = new File(dir, "report");
+		IvyReportGenerator generator = new IvyReportGenerator(RESOLVE_ID,
+				new String[] { CONF }, dir, targetDir);
+		generator.setGraphRenderer(new LayeredGraphRenderer());
+		generator.setCompress(true);
+		return generator.generateReports();
+	}
+
+	private void writeHtml(Writer writer) throws IOException {
+		HtmlReportWriter htmlReportWriter = new HtmlReportWriter(
+				resolveReport, null, "html", writer);
+		htmlReportWriter.setSubtreeUrl("subtree?report=" + RESOLVE_ID + "-"
+				+ CONF);
+		htmlReportWriter.write();
+		writer.close();
+	}
+
+	private void transform(Templates templates, OutputStream output)
+			throws Exception {
+		Transformer transformer = templates.newTransformer();
+		transformer.setParameter("confs", CONF);
+		transformer.setParameter("extension", "html");
+		transformer.setParameter("assets", "");
+		InputStream input = new FileInputStream(resolveReportFile);
+		try {
+			transformer.transform(new StreamSource(input, resolveReportFile
+					.toURI().toString()), new StreamResult(output));
+		} finally {
+			input.close();
+		}
+	}
+
+	private DotGraph parseDot() throws IOException {
+		return new DotParser(new InputStreamReader(new ByteArrayInputStream(
+				dot), "UTF-8")).parse();
+	}
+
+	private void write(OutputStream output) throws IOException {
+		try {
+			output.write(html);
+		} finally {
+			output.close();
+		}
+	}
+
+}
@@ -0,0 +1,175 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Write synthetic ivy resolve reports, in the format of
+ * {@link org.apache.ivy.plugins.report.XmlReportOutputter}, to benchmark the
+ * report generation.
+ * <p>
+ * Module i only depends on modules with a greater index, so the graph has no
+ * cycle. Each module has up to fanOut dependencies : a dependency is either a
+ * close module, giving long chains, or, with the diamond density probability,
+ * any module already depended upon, giving diamonds. One module out of eight
+ * has a second, evicted, revision.
+ */
+public class SyntheticResolveReport {
+	private static final String ROOT_ORGANISATION = "org.root";
+	private static final String ROOT_MODULE = "app";
+	private static final String[] ARTIFACT_STATUSES = { "no", "successful",
+			"no", "failed" };
+
+	private final int modules;
+	private final int fanOut;
+	private final double diamondDensity;
+	private final long seed;
+
+	public SyntheticResolveReport(int modules, int fanOut,
+			double diamondDensity, long seed) {
+		this.modules = modules;
+		this.fanOut = fanOut;
+		this.diamondDensity = diamondDensity;
+		this.seed = seed;
+	}
+
+	public void write(File file, String conf) throws IOException {
+		Random random = new Random(seed);
+		int[] revisions = new int[modules];
+		List<List<int[]>> callers = new ArrayList<List<int[]>>(modules);
+		for (int i = 0; i < modules; i++) {
+			revisions[i] = random.nextInt(8) == 0 ? 2 : 1;
+			callers.add(new ArrayList<int[]>());
+		}
+		// the root module depends on the first modules
+		for (int i = 0; i < Math.min(5, modules); i++) {
+			callers.get(i).add(new int[] { -1, 0 });
+		}
+		for (int i = 0; i < modules - 1; i++) {
+			int dependencies = random.nextInt(fanOut + 1);
+			for (int j = 0; j < dependencies; j++) {
+				int target;
+				if (random.nextDouble() < diamondDensity) {
+					target = i + 1 + random.nextInt(modules - i - 1);
+				} else {
+					target = i + 1
+							+ random.nextInt(Math.min(modules - i - 1, 20));
+				}
+				callers.get(target).add(
+						new int[] { i, random.nextInt(revisions[target]) });
+			}
+		}
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+				new FileOutputStream(file), "UTF-8"));
+		try {
+			writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+			writer.println("<ivy-report version=\"1.0\">");
+			writer.println("\t<info organisation=\"" + ROOT_ORGANISATION
+					+ "\" module=\"" + ROOT_MODULE
+					+ "\" revision=\"1.0\" conf=\"" + conf + "\" confs=\""
+					+ conf + "\" date=\"20120102101112\"/>");
+			writer.println("\t<dependencies>");
+			for (int i = 0; i < modules; i++) {
+				writeModule(writer, random, i, revisions[i], callers.get(i));
+			}
+			writer.println("\t</dependencies>");
+			writer.println("</ivy-report>");
+		} finally {
+			writer.close();
+		}
+		if (writer.checkError()) {
+			throw new IOException("Could not write " + file);
+		}
+	}
+
+	private void writeModule(PrintWriter writer, Random random, int module,
+			int revisions, List<int[]> callers) {
+		writer.println("\t\t<module organisation=\"" + organisation(module)
+				+ "\" name=\"module" + module + "\">");
+		for (int r = 0; r < revisions; r++) {
+			boolean evicted = r == 1;
+			writer.print("\t\t\t<revision name=\"" + (r + 1)
+					+ ".0\" status=\"release\" pubdate=\"20120101000000\""
+					+ " resolver=\"public\" artresolver=\"public\""
+					+ " homepage=\"http://example.org/module" + module + "\""
+					+ " downloaded=\"" + random.nextBoolean()
+					+ "\" searched=\"false\" default=\"false\""
+					+ " conf=\"default, master\" position=\"" + module + "\"");
+			if (evicted) {
+				writer.print(" evicted=\"latest-revision\" evicted-reason=\"\"");
+			}
+			writer.println(">");
+			writer.println("\t\t\t\t<license name=\"Apache License 2.0\" url=\"http://www.apache.org/licenses/LICENSE-2.0\"/>");
+			writer.println("\t\t\t\t<metadata-artifact status=\"no\" details=\"\" size=\"1024\" location=\"/cache/module"
+					+ module + ".xml\"/>");
+			if (evicted) {
+				writer.println("\t\t\t\t<evicted-by rev=\"1.0\"/>");
+			}
+			for (int[] caller : callers) {
+				if (caller[1] != r) {
+					continue;
+				}
+				if (caller[0] == -1) {
+					writer.println("\t\t\t\t<caller organisation=\""
+							+ ROOT_ORGANISATION + "\" name=\"" + ROOT_MODULE
+							+ "\" conf=\"default\" rev=\"latest.integration\" callerrev=\"1.0\"/>");
+				} else {
+					writer.println("\t\t\t\t<caller organisation=\""
+							+ organisation(caller[0]) + "\" name=\"module"
+							+ caller[0] + "\" conf=\"default\" rev=\"[1.0,)\" callerrev=\"1.0\"/>");
+				}
+			}
+			writer.println("\t\t\t\t<artifacts>");
+			int artifacts = 1 + random.nextInt(2);
+			for (int a = 0; a < artifacts; a++) {
+				writer.println("\t\t\t\t\t<artifact name=\"module" + module
+						+ (a == 0 ? "" : "-sources")
+						+ "\" type=\"jar\" ext=\"jar\" status=\""
+						+ ARTIFACT_STATUSES[random
+								.nextInt(ARTIFACT_STATUSES.length)]
+						+ "\" details=\"\" size=\"" + random.nextInt(2000000)
+						+ "\" location=\"/cache/module" + module + ".jar\">");
+				writer.println("\t\t\t\t\t\t<origin-location is-local=\"false\" location=\"http://repo.example.org/module"
+						+ module + ".jar\"/>");
+				writer.println("\t\t\t\t\t</artifact>");
+			}
+			writer.println("\t\t\t\t</artifacts>");
+			writer.println("\t\t\t</revision>");
+		}
+		writer.println("\t\t</module>");
+	}
+
+	private static String organisation(int module) {
+		return "org.example.group" + (module % 50);
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import static jenkins.plugins.ivyreport.SvgGraphWriter.escape;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Write the {@link DependencyDiff}s of the configurations of a build as a
+ * html page styled like the ivy report
+ */
+public class ChangesReportWriter {
+	public static final String FILE_NAME = "changes.html";
+	private final Writer out;
+	private String assetsUrl = "";
+
+	public ChangesReportWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * @param assetsUrl
+	 *            url of the css of the page, ending with a '/'
+	 */
+	public void setAssetsUrl(String assetsUrl) {
+		this.assetsUrl = assetsUrl;
+	}
+
+	/**
+	 * @param previousBuild
+	 *            display name of the build compared to, or null if there is
+	 *            no previous report
+	 * @param diffs
+	 *            the diff of each configuration, null for a configuration
+	 *            that has no previous report
+	 */
+	public void write(String previousBuild, List<String> confs,
+			List<DependencyDiff> diffs) throws IOException {
+		String title = previousBuild == null ? "Dependency changes"
+				: "Dependency changes since " + previousBuild;
+		out.write("<html>\n<head>\n");
+		out.write("<meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\">\n");
+		out.write("<title>" + escape(title) + "</title>\n");
+		out.write("<link rel=\"stylesheet\" type=\"text/css\" href=\""
+				+ escape(assetsUrl + "ivy-report.css") + "\">\n");
+		out.write("</head>\n<body>\n");
+		out.write("<h1>" + escape(title) + "</h1>\n");
+		out.write("<div id=\"content\">\n");
+		for (int i = 0; i < confs.size(); i++) {
+			out.write("<h2>" + escape(confs.get(i)) + "</h2>\n");
+			DependencyDiff diff = diffs.get(i);
+			if (diff == null) {
+				out.write("<p>No previous report for this configuration.</p>\n");
+			} else if (diff.isEmpty()) {
+				out.write("<p>No changes.</p>\n");
+			} else {
+				writeChanges("Added modules", diff.getAddedModules(), false);
+				writeChanges("Removed modules", diff.getRemovedModules(),
+						false);
+				writeChanges("Revision changes", diff.getChangedRevisions(),
+						true);
+				writeChanges("New evictions", diff.getNewEvictions(), false);
+				writeChanges("New conflicts", diff.getNewConflicts(), true);
+			}
+		}
+		out.write("</div>\n</body>\n</html>\n");
+		out.flush();
+	}
+
+	private void writeChanges(String title, List<DependencyDiff.Change> changes,
+			boolean withPrevious) throws IOException {
+		if (changes.isEmpty()) {
+			return;
+		}
+		out.write("<h3>" + escape(title) + " (" + changes.size() + ")</h3>\n");
+		out.write("<table class=\"deps\">\n<thead><tr><th>Organisation</th><th>Module</th>");
+		if (withPrevious) {
+			out.write("<th>Previous revisions</th>");
+		}
+		out.write("<th>Revisions</th></tr></thead>\n<tbody>\n");
+		for (DependencyDiff.Change change : changes) {
+			out.write("<tr><td>" + escape(change.getOrganisation())
+					+ "</td><td>" + escape(change.getModule()) + "</td>");
+			if (withPrevious) {
+				out.write("<td>" + revisions(change.getPreviousRevisions())
+						+ "</td>");
+			}
+			out.write("<td>" + revisions(change.getRevisions().isEmpty() ? change
+					.getPreviousRevisions() : change.getRevisions())
+					+ "</td></tr>\n");
+		}
+		out.write("</tbody>\n</table>\n");
+	}
+
+	private static String revisions(List<String> revisions) {
+		StringBuilder sb = new StringBuilder();
+		for (String revision : revisions) {
+			if (sb.length() != 0) {
+				sb.append(", ");
+			}
+			sb.append(escape(revision));
+		}
+		return sb.toString();
+	}
+
+}
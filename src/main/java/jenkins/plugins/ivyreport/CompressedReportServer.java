@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Serves the gzip compressed files of a report.
+ * <p>
+ * A file is sent as is, with a gzip Content-Encoding, to the clients that
+ * accept it and is decompressed for the other ones. The responses have a
+ * strong ETag. The files of a build never change once written, so they can be
+ * cached forever when they are served from the url of the build; the other
+ * urls, like the one of the latest report of a project, are revalidated.
+ */
+public class CompressedReportServer {
+	public static final String GZIP_EXTENSION = ".gz";
+	private static final String IMMUTABLE_CACHE_CONTROL = "private, max-age=31536000, immutable";
+	private static final String REVALIDATED_CACHE_CONTROL = "private, no-cache";
+
+	private CompressedReportServer() {
+	}
+
+	/**
+	 * Serve the compressed version of a file
+	 * 
+	 * @param fileName
+	 *            the path of the file, relative to dir
+	 * @param immutable
+	 *            true if the url always serves this file
+	 * @return false if there is no compressed version of the file
+	 */
+	public static boolean serve(StaplerRequest req, StaplerResponse rsp,
+			File dir, String fileName, boolean immutable) throws IOException {
+		if (fileName.length() == 0 || fileName.contains("..")
+				|| fileName.indexOf('\\') != -1) {
+			return false;
+		}
+		File file = new File(dir, fileName + GZIP_EXTENSION);
+		if (!file.isFile()) {
+			return false;
+		}
+		boolean gzip = acceptsGzip(req.getHeader("Accept-Encoding"));
+		String etag = "\"" + Long.toHexString(file.lastModified()) + "-"
+				+ Long.toHexString(file.length()) + (gzip ? "-gzip" : "")
+				+ "\"";
+		rsp.setHeader("ETag", etag);
+		rsp.setHeader("Cache-Control", immutable ? IMMUTABLE_CACHE_CONTROL
+				: REVALIDATED_CACHE_CONTROL);
+		rsp.setHeader("Vary", "Accept-Encoding");
+		if (matches(req.getHeader("If-None-Match"), etag)) {
+			rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return true;
+		}
+		rsp.setContentType(getContentType(fileName));
+		if (gzip) {
+			rsp.setHeader("Content-Encoding", "gzip");
+			if (file.length() <= Integer.MAX_VALUE) {
+				rsp.setContentLength((int) file.length());
+			}
+		}
+		if ("HEAD".equals(req.getMethod())) {
+			return true;
+		}
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			if (!gzip) {
+				in = new GZIPInputStream(in);
+			}
+			OutputStream out = rsp.getOutputStream();
+			IOUtils.copy(in, out);
+			out.flush();
+		} finally {
+			in.close();
+		}
+		return true;
+	}
+
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parameters = coding.split(";");
+			String name = parameters[0].trim();
+			if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+				continue;
+			}
+			for (int i = 1; i < parameters.length; i++) {
+				String parameter = parameters[i].trim();
+				if (parameter.startsWith("q=")) {
+					try {
+						return Double.parseDouble(parameter.substring(2)) > 0;
+					} catch (NumberFormatException e) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.equals("*") || candidate.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static String getContentType(String fileName) {
+		String name = fileName.toLowerCase();
+		if (name.endsWith(".html") || name.endsWith(".htm")) {
+			return "text/html";
+		}
+		if (name.endsWith(".svg")) {
+			return "image/svg+xml";
+		}
+		if (name.endsWith(".css")) {
+			return "text/css";
+		}
+		if (name.endsWith(".xml")) {
+			return "application/xml";
+		}
+		if (name.endsWith(".js")) {
+			return "text/javascript";
+		}
+		if (name.endsWith(".json")) {
+			return "application/json";
+		}
+		return "application/octet-stream";
+	}
+
+}
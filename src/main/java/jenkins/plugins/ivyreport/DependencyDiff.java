@@ -0,0 +1,275 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Differences between the resolve reports of a configuration in two builds.
+ * <p>
+ * The modules of both reports are sorted by organisation and name, then
+ * walked side by side once, comparing their sorted revisions. The previous
+ * report can be read from its {@link DependencyGraph}, which is much cheaper
+ * than parsing it again.
+ */
+public class DependencyDiff {
+	private final List<Change> addedModules = new ArrayList<Change>();
+	private final List<Change> removedModules = new ArrayList<Change>();
+	private final List<Change> changedRevisions = new ArrayList<Change>();
+	private final List<Change> newEvictions = new ArrayList<Change>();
+	private final List<Change> newConflicts = new ArrayList<Change>();
+
+	/**
+	 * A module with its revisions before and after
+	 */
+	public static class Change {
+		private final String organisation;
+		private final String module;
+		private final List<String> previousRevisions;
+		private final List<String> revisions;
+
+		public Change(String organisation, String module,
+				List<String> previousRevisions, List<String> revisions) {
+			this.organisation = organisation;
+			this.module = module;
+			this.previousRevisions = previousRevisions;
+			this.revisions = revisions;
+		}
+
+		public String getOrganisation() {
+			return organisation;
+		}
+
+		public String getModule() {
+			return module;
+		}
+
+		public List<String> getPreviousRevisions() {
+			return previousRevisions;
+		}
+
+		public List<String> getRevisions() {
+			return revisions;
+		}
+	}
+
+	/**
+	 * A module of a report with its sorted revisions
+	 */
+	private static class Module {
+		private final String organisation;
+		private final String name;
+		// revisions that have not been evicted
+		private final List<String> selected = new ArrayList<String>();
+		private final List<String> evicted = new ArrayList<String>();
+
+		private Module(ResolveReport report, int m) {
+			this.organisation = value(report.getModuleOrganisation(m));
+			this.name = value(report.getModuleName(m));
+			for (int r = report.getFirstRevision(m); r < report
+					.getEndRevision(m); r++) {
+				String revision = value(report.getRevisionAttribute(r,
+						ResolveReport.REVISION_NAME));
+				if (report.hasRevisionAttribute(r,
+						ResolveReport.REVISION_EVICTED)) {
+					evicted.add(revision);
+				} else {
+					selected.add(revision);
+				}
+			}
+			Collections.sort(selected);
+			Collections.sort(evicted);
+		}
+
+		private Module(DependencyGraph graph, int m) {
+			this.organisation = value(graph.getModuleOrganisation(m));
+			this.name = value(graph.getModuleName(m));
+			for (int r = graph.getFirstRevision(m); r < graph
+					.getEndRevision(m); r++) {
+				String revision = value(graph.getRevisionName(r));
+				if (graph.isEvicted(r)) {
+					evicted.add(revision);
+				} else {
+					selected.add(revision);
+				}
+			}
+			Collections.sort(selected);
+			Collections.sort(evicted);
+		}
+
+		private List<String> getRevisions() {
+			List<String> revisions = new ArrayList<String>(selected);
+			revisions.addAll(evicted);
+			Collections.sort(revisions);
+			return revisions;
+		}
+
+		private boolean isConflict() {
+			return selected.size() + evicted.size() > 1;
+		}
+	}
+
+	private static final Comparator<Module> MODULE_COMPARATOR = new Comparator<Module>() {
+		public int compare(Module module1, Module module2) {
+			int result = module1.organisation.compareTo(module2.organisation);
+			if (result == 0) {
+				result = module1.name.compareTo(module2.name);
+			}
+			return result;
+		}
+	};
+
+	public static DependencyDiff compute(ResolveReport previous,
+			ResolveReport current) {
+		return compute(sortedModules(previous), sortedModules(current));
+	}
+
+	public static DependencyDiff compute(DependencyGraph previous,
+			ResolveReport current) {
+		return compute(sortedModules(previous), sortedModules(current));
+	}
+
+	private static DependencyDiff compute(Module[] previousModules,
+			Module[] currentModules) {
+		DependencyDiff diff = new DependencyDiff();
+		int i = 0;
+		int j = 0;
+		while (i < previousModules.length || j < currentModules.length) {
+			int comparison;
+			if (i == previousModules.length) {
+				comparison = 1;
+			} else if (j == currentModules.length) {
+				comparison = -1;
+			} else {
+				comparison = MODULE_COMPARATOR.compare(previousModules[i],
+						currentModules[j]);
+			}
+			if (comparison < 0) {
+				Module module = previousModules[i++];
+				diff.removedModules.add(new Change(module.organisation,
+						module.name, module.getRevisions(), Collections
+								.<String> emptyList()));
+			} else if (comparison > 0) {
+				Module module = currentModules[j++];
+				diff.addedModules.add(new Change(module.organisation,
+						module.name, Collections.<String> emptyList(), module
+								.getRevisions()));
+				diff.compareEvictions(null, module);
+			} else {
+				diff.compareModule(previousModules[i++], currentModules[j++]);
+			}
+		}
+		return diff;
+	}
+
+	private void compareModule(Module previous, Module current) {
+		if (!previous.selected.equals(current.selected)) {
+			changedRevisions.add(new Change(current.organisation,
+					current.name, previous.selected, current.selected));
+		}
+		compareEvictions(previous, current);
+	}
+
+	private void compareEvictions(Module previous, Module current) {
+		List<String> evicted = new ArrayList<String>(current.evicted);
+		if (previous != null) {
+			evicted.removeAll(previous.evicted);
+		}
+		if (!evicted.isEmpty()) {
+			newEvictions.add(new Change(current.organisation, current.name,
+					previous == null ? Collections.<String> emptyList()
+							: previous.evicted, evicted));
+		}
+		if (current.isConflict() && (previous == null || !previous.isConflict())) {
+			newConflicts.add(new Change(current.organisation, current.name,
+					previous == null ? Collections.<String> emptyList()
+							: previous.getRevisions(), current.getRevisions()));
+		}
+	}
+
+	private static Module[] sortedModules(ResolveReport report) {
+		Module[] modules = new Module[report.getModuleCount()];
+		for (int m = 0; m < modules.length; m++) {
+			modules[m] = new Module(report, m);
+		}
+		Arrays.sort(modules, MODULE_COMPARATOR);
+		return modules;
+	}
+
+	private static Module[] sortedModules(DependencyGraph graph) {
+		Module[] modules = new Module[graph.getModuleCount()];
+		for (int m = 0; m < modules.length; m++) {
+			modules[m] = new Module(graph, m);
+		}
+		Arrays.sort(modules, MODULE_COMPARATOR);
+		return modules;
+	}
+
+	private static String value(String value) {
+		return value == null ? "" : value;
+	}
+
+	public List<Change> getAddedModules() {
+		return addedModules;
+	}
+
+	public List<Change> getRemovedModules() {
+		return removedModules;
+	}
+
+	/**
+	 * @return the modules whose selected revisions changed
+	 */
+	public List<Change> getChangedRevisions() {
+		return changedRevisions;
+	}
+
+	/**
+	 * @return the modules with revisions evicted in the current report that
+	 *         were not evicted in the previous one, as the revisions of the
+	 *         change
+	 */
+	public List<Change> getNewEvictions() {
+		return newEvictions;
+	}
+
+	/**
+	 * @return the modules with several revisions in the current report and
+	 *         only one in the previous report
+	 */
+	public List<Change> getNewConflicts() {
+		return newConflicts;
+	}
+
+	public boolean isEmpty() {
+		return addedModules.isEmpty() && removedModules.isEmpty()
+				&& changedRevisions.isEmpty() && newEvictions.isEmpty()
+				&& newConflicts.isEmpty();
+	}
+
+}
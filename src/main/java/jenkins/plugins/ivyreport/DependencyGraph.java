@@ -0,0 +1,391 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Dependency graph of a resolve report, read from the binary file written by
+ * {@link DependencyGraphWriter} with the report of each build.
+ * <p>
+ * The file is read at once and the queries read the columns in place, only
+ * the strings that are asked for are decoded. It is not memory mapped: the
+ * graphs are small, and a mapped file could not be deleted with its build on
+ * Windows until the mapping is garbage collected. This is much cheaper than
+ * parsing the xml resolve report when only the modules, revisions and edges
+ * are needed. The revisions, edges and artifacts are numbered like in the
+ * {@link ResolveReport} the file was written from.
+ */
+public class DependencyGraph {
+	/**
+	 * File extension of the dependency graphs, next to the resolve reports
+	 */
+	public static final String EXTENSION = ".graph";
+
+	// revision flags
+	public static final int SEARCHED = 1;
+	public static final int DOWNLOADED = 2;
+	public static final int EVICTED = 4;
+	public static final int ERROR = 8;
+	public static final int DEFAULT = 16;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ByteBuffer buffer;
+	private final String[] strings;
+	private final int stringOffsets;
+	private final int stringBytes;
+	private final int header;
+	private final int moduleCount;
+	private final int moduleOrganisations;
+	private final int moduleNames;
+	private final int moduleFirstRevisions;
+	private final int sortedModules;
+	private final int revisionCount;
+	private final int revisionModules;
+	private final int revisionNames;
+	private final int revisionStatuses;
+	private final int revisionFlags;
+	private final int edgeCount;
+	private final int firstDependencies;
+	private final int dependencies;
+	private final int dependencyConfs;
+	private final int firstCallers;
+	private final int callers;
+	private final int artifactCount;
+	private final int firstArtifacts;
+	private final int artifactAttributes;
+	private final int artifactSizes;
+
+	private DependencyGraph(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		try {
+			if (buffer.getInt() != DependencyGraphWriter.MAGIC) {
+				throw new IOException("Not a dependency graph");
+			}
+			int version = buffer.getInt();
+			if (version != DependencyGraphWriter.VERSION) {
+				throw new IOException("Unsupported dependency graph version "
+						+ version);
+			}
+			strings = new String[buffer.getInt()];
+			stringOffsets = skipInts(strings.length + 1);
+			stringBytes = buffer.position();
+			skip(buffer.getInt(stringOffsets + strings.length * 4));
+			header = skipInts(4);
+			moduleCount = buffer.getInt();
+			moduleOrganisations = skipInts(moduleCount);
+			moduleNames = skipInts(moduleCount);
+			moduleFirstRevisions = skipInts(moduleCount + 1);
+			sortedModules = skipInts(moduleCount);
+			revisionCount = buffer.getInt();
+			revisionModules = skipInts(revisionCount);
+			revisionNames = skipInts(revisionCount);
+			revisionStatuses = skipInts(revisionCount);
+			revisionFlags = skipInts(revisionCount);
+			edgeCount = buffer.getInt();
+			firstDependencies = skipInts(revisionCount + 2);
+			dependencies = skipInts(edgeCount);
+			dependencyConfs = skipInts(edgeCount);
+			firstCallers = skipInts(revisionCount + 1);
+			callers = skipInts(edgeCount);
+			artifactCount = buffer.getInt();
+			firstArtifacts = skipInts(revisionCount + 1);
+			artifactAttributes = skipInts(4 * artifactCount);
+			artifactSizes = skip(8 * artifactCount);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated dependency graph");
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupted dependency graph");
+		}
+	}
+
+	/**
+	 * Read a dependency graph file
+	 */
+	public static DependencyGraph read(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			long length = randomAccessFile.length();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("Dependency graph too large");
+			}
+			byte[] bytes = new byte[(int) length];
+			randomAccessFile.readFully(bytes);
+			return read(bytes);
+		} catch (IOException e) {
+			IOException ioException = new IOException("Could not read "
+					+ file + " : " + e.getMessage());
+			ioException.initCause(e);
+			throw ioException;
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Read a dependency graph from memory, for example the bytes written by
+	 * {@link DependencyGraphWriter#write(java.io.OutputStream)}
+	 */
+	public static DependencyGraph read(byte[] bytes) throws IOException {
+		return new DependencyGraph(ByteBuffer.wrap(bytes));
+	}
+
+	public String getOrganisation() {
+		return string(buffer.getInt(header));
+	}
+
+	public String getModule() {
+		return string(buffer.getInt(header + 4));
+	}
+
+	public String getRevision() {
+		return string(buffer.getInt(header + 8));
+	}
+
+	public String getConf() {
+		return string(buffer.getInt(header + 12));
+	}
+
+	public int getModuleCount() {
+		return moduleCount;
+	}
+
+	public String getModuleOrganisation(int module) {
+		return string(getInt(moduleOrganisations, module));
+	}
+
+	public String getModuleName(int module) {
+		return string(getInt(moduleNames, module));
+	}
+
+	public int getFirstRevision(int module) {
+		return getInt(moduleFirstRevisions, module);
+	}
+
+	public int getEndRevision(int module) {
+		return getInt(moduleFirstRevisions, module + 1);
+	}
+
+	/**
+	 * @return the module or -1 if there is no such module
+	 */
+	public int findModule(String organisation, String name) {
+		int low = 0;
+		int high = moduleCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int module = getInt(sortedModules, middle);
+			int result = compare(getModuleOrganisation(module), organisation);
+			if (result == 0) {
+				result = compare(getModuleName(module), name);
+			}
+			if (result < 0) {
+				low = middle + 1;
+			} else if (result > 0) {
+				high = middle - 1;
+			} else {
+				return module;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the revision or -1 if there is no such revision
+	 */
+	public int findRevision(String organisation, String name, String revision) {
+		int module = findModule(organisation, name);
+		if (module == -1) {
+			return -1;
+		}
+		for (int r = getFirstRevision(module); r < getEndRevision(module); r++) {
+			if (revision.equals(getRevisionName(r))) {
+				return r;
+			}
+		}
+		return -1;
+	}
+
+	public int getRevisionCount() {
+		return revisionCount;
+	}
+
+	public int getRevisionModule(int revision) {
+		return getInt(revisionModules, revision);
+	}
+
+	public String getRevisionName(int revision) {
+		return string(getInt(revisionNames, revision));
+	}
+
+	public String getRevisionStatus(int revision) {
+		return string(getInt(revisionStatuses, revision));
+	}
+
+	/**
+	 * @return the flags of the revision, see {@link #EVICTED} and the other
+	 *         constants
+	 */
+	public int getRevisionFlags(int revision) {
+		return getInt(revisionFlags, revision);
+	}
+
+	public boolean isEvicted(int revision) {
+		return (getRevisionFlags(revision) & EVICTED) != 0;
+	}
+
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * @param revision
+	 *            the revision or {@link #getRevisionCount()} for the resolved
+	 *            module
+	 * @return the first edge from the revision to its dependencies
+	 */
+	public int getFirstDependency(int revision) {
+		return getInt(firstDependencies, revision);
+	}
+
+	public int getEndDependency(int revision) {
+		return getInt(firstDependencies, revision + 1);
+	}
+
+	/**
+	 * @return the revision the edge leads to
+	 */
+	public int getDependencyRevision(int edge) {
+		return getInt(dependencies, edge);
+	}
+
+	/**
+	 * @return the configurations of the caller that the edge comes from
+	 */
+	public String getDependencyConf(int edge) {
+		return string(getInt(dependencyConfs, edge));
+	}
+
+	public int getFirstCaller(int revision) {
+		return getInt(firstCallers, revision);
+	}
+
+	public int getEndCaller(int revision) {
+		return getInt(firstCallers, revision + 1);
+	}
+
+	/**
+	 * @return the revision that depends on the revision of the caller, or
+	 *         {@link #getRevisionCount()} for the resolved module
+	 */
+	public int getCallerRevision(int caller) {
+		return getInt(callers, caller);
+	}
+
+	public int getArtifactCount() {
+		return artifactCount;
+	}
+
+	public int getFirstArtifact(int revision) {
+		return getInt(firstArtifacts, revision);
+	}
+
+	public int getEndArtifact(int revision) {
+		return getInt(firstArtifacts, revision + 1);
+	}
+
+	/**
+	 * @param attribute
+	 *            one of the ResolveReport.ARTIFACT_ constants
+	 */
+	public String getArtifactAttribute(int artifact, int attribute) {
+		return string(getInt(artifactAttributes, attribute * artifactCount
+				+ artifact));
+	}
+
+	/**
+	 * @return the artifact size or NaN if it is unknown
+	 */
+	public double getArtifactSize(int artifact) {
+		return buffer.getDouble(artifactSizes + artifact * 8);
+	}
+
+	/**
+	 * @return the sum of the known sizes of the artifacts of the revision
+	 */
+	public double getRevisionSize(int revision) {
+		double size = 0;
+		for (int a = getFirstArtifact(revision); a < getEndArtifact(revision); a++) {
+			double artifactSize = getArtifactSize(a);
+			if (!Double.isNaN(artifactSize)) {
+				size += artifactSize;
+			}
+		}
+		return size;
+	}
+
+	static int compare(String s1, String s2) {
+		if (s1 == null) {
+			return s2 == null ? 0 : -1;
+		}
+		return s2 == null ? 1 : s1.compareTo(s2);
+	}
+
+	private int getInt(int column, int index) {
+		return buffer.getInt(column + index * 4);
+	}
+
+	private synchronized String string(int id) {
+		if (id == -1) {
+			return null;
+		}
+		String string = strings[id];
+		if (string == null) {
+			int start = buffer.getInt(stringOffsets + id * 4);
+			int end = buffer.getInt(stringOffsets + id * 4 + 4);
+			ByteBuffer bytes = buffer.duplicate();
+			bytes.position(stringBytes + start);
+			bytes.limit(stringBytes + end);
+			string = UTF8.decode(bytes).toString();
+			strings[id] = string;
+		}
+		return string;
+	}
+
+	private int skipInts(int count) {
+		return skip(count * 4);
+	}
+
+	private int skip(int length) {
+		int position = buffer.position();
+		buffer.position(position + length);
+		return position;
+	}
+}
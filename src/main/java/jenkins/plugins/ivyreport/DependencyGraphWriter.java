@@ -0,0 +1,304 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the compact binary form of the dependency graph of a resolve
+ * report, read by {@link DependencyGraph}.
+ * <p>
+ * All the values are big endian ints, except the artifact sizes that are
+ * doubles. Strings are stored once in a string table and referenced by their
+ * index, -1 standing for null. After the magic number and the version, the
+ * file contains :
+ * <ul>
+ * <li>the string table : the count, the offsets of the strings in the UTF-8
+ * bytes that follow (count + 1 of them) and the bytes</li>
+ * <li>the organisation, module, revision and conf of the report</li>
+ * <li>the modules : the count, the organisation and name columns, the first
+ * revision column (count + 1 values) and the modules sorted by organisation
+ * and name</li>
+ * <li>the revisions : the count, the module, name, status and flags
+ * columns</li>
+ * <li>the edges : the count, the first dependency column (revision count + 2
+ * values, the last row being the one of the resolved module), the dependency
+ * and conf columns, then the same edges by dependency : the first caller
+ * column (revision count + 1 values) and the caller column, the resolved
+ * module being the revision count</li>
+ * <li>the artifacts : the count, the first artifact column (revision count +
+ * 1 values), the name, type, ext, status and size columns</li>
+ * </ul>
+ */
+public class DependencyGraphWriter {
+	static final int MAGIC = 0x49564752;
+	static final int VERSION = 1;
+
+	private final ResolveReport report;
+	private final List<String> strings = new ArrayList<String>();
+	private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+
+	public DependencyGraphWriter(ResolveReport report) {
+		this.report = report;
+	}
+
+	public void write(File file) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	public void write(OutputStream stream) throws IOException {
+		int moduleCount = report.getModuleCount();
+		int revisionCount = report.getRevisionCount();
+		int artifactCount = report.getArtifactCount();
+
+		// intern everything first, the string table comes first
+		int[] header = { intern(report.getOrganisation()),
+				intern(report.getModule()), intern(report.getRevision()),
+				intern(report.getConf()) };
+		int[] moduleOrganisations = new int[moduleCount];
+		int[] moduleNames = new int[moduleCount];
+		int[] moduleFirstRevisions = new int[moduleCount + 1];
+		for (int m = 0; m < moduleCount; m++) {
+			moduleOrganisations[m] = intern(report.getModuleOrganisation(m));
+			moduleNames[m] = intern(report.getModuleName(m));
+			moduleFirstRevisions[m] = report.getFirstRevision(m);
+		}
+		moduleFirstRevisions[moduleCount] = revisionCount;
+		int[] revisionModules = new int[revisionCount];
+		int[] revisionNames = new int[revisionCount];
+		int[] revisionStatuses = new int[revisionCount];
+		int[] revisionFlags = new int[revisionCount];
+		for (int r = 0; r < revisionCount; r++) {
+			revisionModules[r] = report.getRevisionModule(r);
+			revisionNames[r] = intern(report.getRevisionAttribute(r,
+					ResolveReport.REVISION_NAME));
+			revisionStatuses[r] = intern(report.getRevisionAttribute(r,
+					ResolveReport.REVISION_STATUS));
+			revisionFlags[r] = getFlags(r);
+		}
+		int[] firstDependencies = new int[revisionCount + 2];
+		IntList dependencies = new IntList();
+		IntList dependencyConfs = new IntList();
+		for (int r = 0; r <= revisionCount; r++) {
+			firstDependencies[r] = dependencies.size();
+			int key = r < revisionCount ? report.getDependencyKey(r) : report
+					.getDependencyKey(report.getOrganisation(),
+							report.getModule(), report.getRevision());
+			for (int d = report.getFirstDependency(key); d < report
+					.getEndDependency(key); d++) {
+				int caller = report.getDependencyCaller(d);
+				dependencies.add(report.getCallerRevision(caller));
+				dependencyConfs.add(intern(report.getCallerAttribute(caller,
+						ResolveReport.CALLER_CONF)));
+			}
+		}
+		int edgeCount = dependencies.size();
+		firstDependencies[revisionCount + 1] = edgeCount;
+		int[] firstCallers = new int[revisionCount + 1];
+		for (int e = 0; e < edgeCount; e++) {
+			firstCallers[dependencies.get(e) + 1]++;
+		}
+		for (int r = 0; r < revisionCount; r++) {
+			firstCallers[r + 1] += firstCallers[r];
+		}
+		int[] callers = new int[edgeCount];
+		int[] filled = new int[revisionCount];
+		for (int r = 0; r <= revisionCount; r++) {
+			for (int e = firstDependencies[r]; e < firstDependencies[r + 1]; e++) {
+				int dependency = dependencies.get(e);
+				callers[firstCallers[dependency] + filled[dependency]++] = r;
+			}
+		}
+		int[] firstArtifacts = new int[revisionCount + 1];
+		for (int r = 0; r < revisionCount; r++) {
+			firstArtifacts[r] = report.getFirstArtifact(r);
+		}
+		firstArtifacts[revisionCount] = artifactCount;
+		int[][] artifactAttributes = new int[4][artifactCount];
+		double[] artifactSizes = new double[artifactCount];
+		for (int a = 0; a < artifactCount; a++) {
+			for (int i = 0; i < artifactAttributes.length; i++) {
+				artifactAttributes[i][a] = intern(report.getArtifactAttribute(
+						a, i));
+			}
+			artifactSizes[a] = report.hasArtifactSize(a) ? report
+					.getArtifactSize(a) : Double.NaN;
+		}
+
+		DataOutputStream out = new DataOutputStream(stream);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		writeStrings(out);
+		writeInts(out, header);
+		out.writeInt(moduleCount);
+		writeInts(out, moduleOrganisations);
+		writeInts(out, moduleNames);
+		writeInts(out, moduleFirstRevisions);
+		writeInts(out, sortModules(moduleOrganisations, moduleNames));
+		out.writeInt(revisionCount);
+		writeInts(out, revisionModules);
+		writeInts(out, revisionNames);
+		writeInts(out, revisionStatuses);
+		writeInts(out, revisionFlags);
+		out.writeInt(edgeCount);
+		writeInts(out, firstDependencies);
+		writeInts(out, dependencies.toArray());
+		writeInts(out, dependencyConfs.toArray());
+		writeInts(out, firstCallers);
+		writeInts(out, callers);
+		out.writeInt(artifactCount);
+		writeInts(out, firstArtifacts);
+		for (int[] column : artifactAttributes) {
+			writeInts(out, column);
+		}
+		for (double size : artifactSizes) {
+			out.writeDouble(size);
+		}
+		out.flush();
+	}
+
+	private int getFlags(int revision) {
+		int flags = 0;
+		if ("true".equals(report.getRevisionAttribute(revision,
+				ResolveReport.REVISION_SEARCHED))) {
+			flags |= DependencyGraph.SEARCHED;
+		}
+		if ("true".equals(report.getRevisionAttribute(revision,
+				ResolveReport.REVISION_DOWNLOADED))) {
+			flags |= DependencyGraph.DOWNLOADED;
+		}
+		if (report.hasRevisionAttribute(revision,
+				ResolveReport.REVISION_EVICTED)) {
+			flags |= DependencyGraph.EVICTED;
+		}
+		if (report.hasRevisionAttribute(revision, ResolveReport.REVISION_ERROR)) {
+			flags |= DependencyGraph.ERROR;
+		}
+		if ("true".equals(report.getRevisionAttribute(revision,
+				ResolveReport.REVISION_DEFAULT))) {
+			flags |= DependencyGraph.DEFAULT;
+		}
+		return flags;
+	}
+
+	private int[] sortModules(final int[] organisations, final int[] names) {
+		Integer[] modules = new Integer[organisations.length];
+		for (int m = 0; m < modules.length; m++) {
+			modules[m] = m;
+		}
+		Arrays.sort(modules, new Comparator<Integer>() {
+			public int compare(Integer m1, Integer m2) {
+				int result = compareStrings(organisations[m1],
+						organisations[m2]);
+				return result != 0 ? result : compareStrings(names[m1],
+						names[m2]);
+			}
+		});
+		int[] result = new int[modules.length];
+		for (int m = 0; m < modules.length; m++) {
+			result[m] = modules[m];
+		}
+		return result;
+	}
+
+	private int compareStrings(int id1, int id2) {
+		return DependencyGraph.compare(id1 == -1 ? null : strings.get(id1),
+				id2 == -1 ? null : strings.get(id2));
+	}
+
+	private void writeStrings(DataOutputStream out) throws IOException {
+		byte[][] bytes = new byte[strings.size()][];
+		out.writeInt(bytes.length);
+		int offset = 0;
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = strings.get(i).getBytes("UTF-8");
+			out.writeInt(offset);
+			offset += bytes[i].length;
+		}
+		out.writeInt(offset);
+		for (byte[] string : bytes) {
+			out.write(string);
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values)
+			throws IOException {
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	private int intern(String value) {
+		if (value == null) {
+			return -1;
+		}
+		Integer id = stringIds.get(value);
+		if (id == null) {
+			id = strings.size();
+			strings.add(value);
+			stringIds.put(value, id);
+		}
+		return id;
+	}
+
+	private static class IntList {
+		private int[] values = new int[16];
+		private int size;
+
+		public void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		public int get(int index) {
+			return values[index];
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -0,0 +1,585 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Util;
+import hudson.ivy.IvyModuleSet;
+import hudson.model.Hudson;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Index of the module revisions resolved by the latest ivy report of each
+ * job, to find the jobs that depend on a given module without opening their
+ * reports.
+ * <p>
+ * The index is kept in memory and persisted as a small gzip compressed file
+ * per job, rewritten when the job publishes a report. Only the revisions
+ * that have not been evicted are indexed. A rebuild fills a new index off to
+ * the side, the current one answering the queries until it is swapped.
+ */
+public class DependencyIndex {
+	private static final Logger LOGGER = Logger
+			.getLogger(DependencyIndex.class.getName());
+	private static final String FILE_EXTENSION = ".gz";
+	private static DependencyIndex instance;
+
+	private final File dir;
+	private boolean loaded;
+	private State state = new State();
+	// jobs updated or removed while the index is rebuilt, null otherwise
+	private Set<String> changedDuringRebuild;
+
+	public DependencyIndex(File dir) {
+		this.dir = dir;
+	}
+
+	public static synchronized DependencyIndex getInstance() {
+		if (instance == null) {
+			instance = new DependencyIndex(new File(Hudson.getInstance()
+					.getRootDir(), "ivy-report-index"));
+		}
+		return instance;
+	}
+
+	/**
+	 * A revision resolved by a configuration of a build
+	 */
+	@ExportedBean
+	public static class Entry {
+		private final String organisation;
+		private final String module;
+		private final String revision;
+		private final String job;
+		private final int buildNumber;
+		private final String conf;
+
+		public Entry(String organisation, String module, String revision,
+				String job, int buildNumber, String conf) {
+			this.organisation = organisation;
+			this.module = module;
+			this.revision = revision;
+			this.job = job;
+			this.buildNumber = buildNumber;
+			this.conf = conf;
+		}
+
+		@Exported
+		public String getOrganisation() {
+			return organisation;
+		}
+
+		@Exported
+		public String getModule() {
+			return module;
+		}
+
+		@Exported
+		public String getRevision() {
+			return revision;
+		}
+
+		/**
+		 * @return the full name of the job
+		 */
+		@Exported
+		public String getJob() {
+			return job;
+		}
+
+		@Exported
+		public int getBuildNumber() {
+			return buildNumber;
+		}
+
+		@Exported
+		public String getConf() {
+			return conf;
+		}
+	}
+
+	/**
+	 * Replace the indexed report of a job by the resolve reports of one of
+	 * its builds
+	 * 
+	 * @param reportsDir
+	 *            the directory with the resolve reports of the build
+	 */
+	public void update(String job, int buildNumber, File reportsDir)
+			throws IOException {
+		// read outside of the lock
+		List<DependencyGraph> graphs = readDependencyGraphs(reportsDir);
+		synchronized (this) {
+			load();
+			List<Entry> entries = state.getEntries(job, buildNumber, graphs);
+			state.put(job, buildNumber, entries);
+			save(dir, job, buildNumber, entries);
+			changed(job);
+		}
+	}
+
+	/**
+	 * @param reportsDir
+	 *            the directory with the resolve reports of a build
+	 */
+	private static List<DependencyGraph> readDependencyGraphs(File reportsDir)
+			throws IOException {
+		File[] files = reportsDir.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.getName().endsWith(".xml");
+			}
+		});
+		if (files == null) {
+			throw new IOException("Unable to list " + reportsDir);
+		}
+		List<DependencyGraph> graphs = new ArrayList<DependencyGraph>();
+		for (File file : files) {
+			graphs.add(readDependencyGraph(file));
+		}
+		return graphs;
+	}
+
+	/**
+	 * Read the dependency graph written next to a resolve report, or parse
+	 * the report if the build has no graph, like the builds published by
+	 * older versions of the plugin
+	 */
+	private static DependencyGraph readDependencyGraph(File resolveReport)
+			throws IOException {
+		String name = resolveReport.getName();
+		File graphFile = new File(resolveReport.getParentFile(), name
+				.substring(0, name.length() - ".xml".length())
+				+ DependencyGraph.EXTENSION);
+		if (graphFile.isFile()) {
+			try {
+				return DependencyGraph.read(graphFile);
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Could not read " + graphFile
+						+ ", parsing " + resolveReport + " instead", e);
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new DependencyGraphWriter(ResolveReport.parse(resolveReport))
+				.write(out);
+		return DependencyGraph.read(out.toByteArray());
+	}
+
+	/**
+	 * @return true if the indexed report of a job is the one of the given
+	 *         build
+	 */
+	public synchronized boolean isIndexed(String job, int buildNumber) {
+		load();
+		Integer indexedBuildNumber = state.builds.get(job);
+		return indexedBuildNumber != null && indexedBuildNumber == buildNumber;
+	}
+
+	/**
+	 * Replace the indexed report of a job, if it is the one of a deleted
+	 * build, by the report of a previous build. The job is removed from the
+	 * index if there is no such report.
+	 * 
+	 * @param previous
+	 *            the report of the latest remaining build of the job with a
+	 *            report, or null
+	 */
+	public void remove(String job, int buildNumber,
+			IvyReportBuildAction previous) throws IOException {
+		synchronized (this) {
+			load();
+			Integer indexedBuildNumber = state.builds.get(job);
+			if (indexedBuildNumber == null || indexedBuildNumber != buildNumber) {
+				return;
+			}
+			if (previous == null) {
+				remove(job);
+				return;
+			}
+		}
+		// read outside of the lock
+		int previousBuildNumber = previous.getBuild().getNumber();
+		List<DependencyGraph> graphs;
+		try {
+			graphs = readDependencyGraphs(previous.getReportsDir());
+		} catch (IOException e) {
+			remove(job, buildNumber, null);
+			throw e;
+		}
+		synchronized (this) {
+			Integer indexedBuildNumber = state.builds.get(job);
+			// a report published meanwhile is kept
+			if (indexedBuildNumber == null || indexedBuildNumber != buildNumber) {
+				return;
+			}
+			List<Entry> entries = state.getEntries(job, previousBuildNumber,
+					graphs);
+			state.put(job, previousBuildNumber, entries);
+			save(dir, job, previousBuildNumber, entries);
+			changed(job);
+		}
+	}
+
+	/**
+	 * Remove the indexed report of a job, for example a deleted job
+	 */
+	public synchronized void remove(String job) {
+		load();
+		state.put(job, 0, null);
+		getFile(dir, job).delete();
+		changed(job);
+	}
+
+	/**
+	 * Index the report of a renamed job under its new name
+	 */
+	public synchronized void rename(String oldJob, String newJob)
+			throws IOException {
+		load();
+		List<Entry> entries = state.jobs.get(oldJob);
+		if (entries == null) {
+			return;
+		}
+		int buildNumber = state.builds.get(oldJob);
+		List<Entry> renamedEntries = new ArrayList<Entry>(entries.size());
+		for (Entry entry : entries) {
+			renamedEntries.add(new Entry(entry.getOrganisation(), entry
+					.getModule(), entry.getRevision(), newJob, buildNumber,
+					entry.getConf()));
+		}
+		remove(oldJob);
+		state.put(newJob, buildNumber, renamedEntries);
+		save(dir, newJob, buildNumber, renamedEntries);
+		changed(newJob);
+	}
+
+	/**
+	 * Index the latest report of each job again, from the resolve reports
+	 * archived with the builds. The new index is built in a separate
+	 * directory and replaces the current one at the end, the jobs that
+	 * publish a report or are removed meanwhile keeping their current
+	 * entries.
+	 */
+	public void rebuild() throws IOException {
+		File newDir = new File(dir.getPath() + ".new");
+		synchronized (this) {
+			if (changedDuringRebuild != null) {
+				throw new IllegalStateException(
+						"The dependency index is already being rebuilt");
+			}
+			load();
+			changedDuringRebuild = new HashSet<String>();
+		}
+		try {
+			long start = System.currentTimeMillis();
+			if (newDir.exists()) {
+				Util.deleteRecursive(newDir);
+			}
+			State newState = new State();
+			for (IvyModuleSet project : Hudson.getInstance().getAllItems(
+					IvyModuleSet.class)) {
+				IvyReportBuildAction action = IvyReportProjectAction
+						.getLastResult(project);
+				if (action == null) {
+					continue;
+				}
+				String job = project.getFullName();
+				int buildNumber = action.getBuild().getNumber();
+				try {
+					List<Entry> entries = newState.getEntries(job,
+							buildNumber,
+							readDependencyGraphs(action.getReportsDir()));
+					newState.put(job, buildNumber, entries);
+					save(newDir, job, buildNumber, entries);
+				} catch (IOException e) {
+					LOGGER.log(Level.WARNING,
+							"Could not index the ivy report of "
+									+ action.getBuild().getFullDisplayName(),
+							e);
+				}
+			}
+			synchronized (this) {
+				for (String job : changedDuringRebuild) {
+					List<Entry> entries = state.jobs.get(job);
+					newState.put(job, 0, null);
+					getFile(newDir, job).delete();
+					if (entries != null) {
+						int buildNumber = state.builds.get(job);
+						List<Entry> copy = new ArrayList<Entry>(entries.size());
+						for (Entry entry : entries) {
+							copy.add(new Entry(newState.intern(entry
+									.getOrganisation()), newState
+									.intern(entry.getModule()), newState
+									.intern(entry.getRevision()), job,
+									buildNumber, newState.intern(entry
+											.getConf())));
+						}
+						newState.put(job, buildNumber, copy);
+						save(newDir, job, buildNumber, copy);
+					}
+				}
+				newDir.mkdirs();
+				File oldDir = new File(dir.getPath() + ".old");
+				if (oldDir.exists()) {
+					Util.deleteRecursive(oldDir);
+				}
+				if (dir.exists() && !dir.renameTo(oldDir)) {
+					throw new IOException("Unable to rename " + dir + " to "
+							+ oldDir);
+				}
+				if (!newDir.renameTo(dir)) {
+					oldDir.renameTo(dir);
+					throw new IOException("Unable to rename " + newDir
+							+ " to " + dir);
+				}
+				state = newState;
+				try {
+					Util.deleteRecursive(oldDir);
+				} catch (IOException e) {
+					LOGGER.log(Level.WARNING, "Could not delete " + oldDir, e);
+				}
+				LOGGER.info("Rebuilt the dependency index of "
+						+ newState.jobs.size() + " jobs in "
+						+ (System.currentTimeMillis() - start) + " ms");
+			}
+		} finally {
+			synchronized (this) {
+				changedDuringRebuild = null;
+			}
+		}
+	}
+
+	private void changed(String job) {
+		if (changedDuringRebuild != null) {
+			changedDuringRebuild.add(job);
+		}
+	}
+
+	/**
+	 * @param revision
+	 *            the revision or null for all the revisions of the module
+	 * @return the entries of the jobs that resolve the module
+	 */
+	public synchronized List<Entry> find(String organisation, String module,
+			String revision) {
+		load();
+		List<Entry> result = new ArrayList<Entry>();
+		Set<Entry> entries = state.modules.get(organisation + "#" + module);
+		if (entries != null) {
+			for (Entry entry : entries) {
+				if (revision == null || revision.equals(entry.getRevision())) {
+					result.add(entry);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The indexed entries, by job and by module
+	 */
+	private static class State {
+		// job full name -> entries of its indexed report
+		private final Map<String, List<Entry>> jobs = new HashMap<String, List<Entry>>();
+		// job full name -> number of the build of its indexed report
+		private final Map<String, Integer> builds = new HashMap<String, Integer>();
+		// organisation#module -> entries of all the jobs
+		private final Map<String, Set<Entry>> modules = new HashMap<String, Set<Entry>>();
+		// the same organisations, modules and revisions are used by many jobs
+		private final Map<String, String> strings = new HashMap<String, String>();
+
+		private List<Entry> getEntries(String job, int buildNumber,
+				List<DependencyGraph> graphs) {
+			List<Entry> entries = new ArrayList<Entry>();
+			for (DependencyGraph graph : graphs) {
+				String conf = intern(graph.getConf());
+				for (int r = 0; r < graph.getRevisionCount(); r++) {
+					if (graph.isEvicted(r)) {
+						continue;
+					}
+					int m = graph.getRevisionModule(r);
+					entries.add(new Entry(intern(graph
+							.getModuleOrganisation(m)), intern(graph
+							.getModuleName(m)),
+							intern(graph.getRevisionName(r)), job,
+							buildNumber, conf));
+				}
+			}
+			return entries;
+		}
+
+		private void put(String job, int buildNumber, List<Entry> entries) {
+			builds.remove(job);
+			List<Entry> previous = jobs.remove(job);
+			if (previous != null) {
+				for (Entry entry : previous) {
+					String key = entry.getOrganisation() + "#"
+							+ entry.getModule();
+					Set<Entry> moduleEntries = modules.get(key);
+					moduleEntries.remove(entry);
+					if (moduleEntries.isEmpty()) {
+						modules.remove(key);
+					}
+				}
+			}
+			if (entries == null) {
+				return;
+			}
+			jobs.put(job, entries);
+			builds.put(job, buildNumber);
+			for (Entry entry : entries) {
+				String key = entry.getOrganisation() + "#" + entry.getModule();
+				Set<Entry> moduleEntries = modules.get(key);
+				if (moduleEntries == null) {
+					moduleEntries = new LinkedHashSet<Entry>();
+					modules.put(key, moduleEntries);
+				}
+				moduleEntries.add(entry);
+			}
+		}
+
+		private String intern(String value) {
+			if (value == null) {
+				return null;
+			}
+			String interned = strings.get(value);
+			if (interned == null) {
+				strings.put(value, value);
+				interned = value;
+			}
+			return interned;
+		}
+	}
+
+	private static File getFile(File dir, String job) {
+		return new File(dir, Util.getDigestOf(job) + FILE_EXTENSION);
+	}
+
+	/**
+	 * The file of a job has the job name, the build number, and a line per
+	 * entry with the tab separated configuration, organisation, module and
+	 * revision
+	 */
+	private static void save(File dir, String job, int buildNumber,
+			List<Entry> entries) throws IOException {
+		dir.mkdirs();
+		File file = getFile(dir, job);
+		File tmpFile = new File(dir, file.getName() + ".tmp");
+		Writer writer = new OutputStreamWriter(new GZIPOutputStream(
+				new FileOutputStream(tmpFile)), "UTF-8");
+		try {
+			writer.write(job + "\n");
+			writer.write(buildNumber + "\n");
+			for (Entry entry : entries) {
+				writer.write(entry.getConf() + "\t" + entry.getOrganisation()
+						+ "\t" + entry.getModule() + "\t"
+						+ entry.getRevision() + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+		if (!tmpFile.renameTo(file)
+				&& !(file.delete() && tmpFile.renameTo(file))) {
+			throw new IOException("Unable to rename " + tmpFile + " to "
+					+ file);
+		}
+	}
+
+	private void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		for (File file : files) {
+			if (!file.getName().endsWith(FILE_EXTENSION)) {
+				continue;
+			}
+			try {
+				load(file);
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Could not load dependency index "
+						+ file, e);
+			}
+		}
+		LOGGER.fine("Loaded the dependency index of " + state.jobs.size()
+				+ " jobs in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	private void load(File file) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(new FileInputStream(file)), "UTF-8"));
+		try {
+			String job = reader.readLine();
+			String buildNumberLine = reader.readLine();
+			if (job == null || buildNumberLine == null) {
+				throw new IOException("Truncated file");
+			}
+			int buildNumber = Integer.parseInt(buildNumberLine);
+			List<Entry> entries = new ArrayList<Entry>();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				if (fields.length != 4) {
+					throw new IOException("Invalid line : " + line);
+				}
+				entries.add(new Entry(state.intern(fields[1]), state
+						.intern(fields[2]), state.intern(fields[3]), job,
+						buildNumber, state.intern(fields[0])));
+			}
+			state.put(job, buildNumber, entries);
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid build number");
+		} finally {
+			reader.close();
+		}
+	}
+
+}
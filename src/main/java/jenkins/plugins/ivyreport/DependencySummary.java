@@ -0,0 +1,183 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.Serializable;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Figures of the "Dependencies Stats" section of the report of a
+ * configuration, computed once when the report is published so that they can
+ * be read from the remote api without parsing the report
+ */
+@ExportedBean
+public class DependencySummary implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private final String conf;
+	private int modules;
+	private int conflicts;
+	private int revisions;
+	private int searched;
+	private int downloaded;
+	private int evicted;
+	private int errors;
+	private int artifacts;
+	private int downloadedArtifacts;
+	private int failedArtifacts;
+	private long artifactsSize;
+	private long downloadedArtifactsSize;
+	private long cachedArtifactsSize;
+
+	private DependencySummary(String conf) {
+		this.conf = conf;
+	}
+
+	/**
+	 * Compute the summary of a parsed resolve report
+	 */
+	public static DependencySummary compute(String conf, ResolveReport report) {
+		DependencySummary summary = new DependencySummary(conf);
+		summary.modules = report.getModuleCount();
+		for (int m = 0; m < report.getModuleCount(); m++) {
+			if (report.getEndRevision(m) - report.getFirstRevision(m) > 1) {
+				summary.conflicts++;
+			}
+		}
+		summary.revisions = report.getRevisionCount();
+		for (int r = 0; r < report.getRevisionCount(); r++) {
+			if ("true".equals(report.getRevisionAttribute(r,
+					ResolveReport.REVISION_SEARCHED))) {
+				summary.searched++;
+			}
+			if ("true".equals(report.getRevisionAttribute(r,
+					ResolveReport.REVISION_DOWNLOADED))) {
+				summary.downloaded++;
+			}
+			if (report.hasRevisionAttribute(r, ResolveReport.REVISION_EVICTED)) {
+				summary.evicted++;
+			}
+			if (report.hasRevisionAttribute(r, ResolveReport.REVISION_ERROR)) {
+				summary.errors++;
+			}
+		}
+		summary.artifacts = report.getArtifactCount();
+		for (int a = 0; a < report.getArtifactCount(); a++) {
+			String status = report.getArtifactAttribute(a,
+					ResolveReport.ARTIFACT_STATUS);
+			double size = report.getArtifactSize(a);
+			// unlike the report, ignore the sizes that are not numbers
+			long bytes = Double.isNaN(size) || Double.isInfinite(size) ? 0
+					: (long) size;
+			summary.artifactsSize += bytes;
+			if ("successful".equals(status)) {
+				summary.downloadedArtifacts++;
+				summary.downloadedArtifactsSize += bytes;
+			} else if ("failed".equals(status)) {
+				summary.failedArtifacts++;
+			} else if ("no".equals(status)) {
+				summary.cachedArtifactsSize += bytes;
+			}
+		}
+		return summary;
+	}
+
+	@Exported
+	public String getConf() {
+		return conf;
+	}
+
+	@Exported
+	public int getModules() {
+		return modules;
+	}
+
+	/**
+	 * @return the number of modules with more than one revision
+	 */
+	@Exported
+	public int getConflicts() {
+		return conflicts;
+	}
+
+	@Exported
+	public int getRevisions() {
+		return revisions;
+	}
+
+	@Exported
+	public int getSearched() {
+		return searched;
+	}
+
+	@Exported
+	public int getDownloaded() {
+		return downloaded;
+	}
+
+	@Exported
+	public int getEvicted() {
+		return evicted;
+	}
+
+	@Exported
+	public int getErrors() {
+		return errors;
+	}
+
+	@Exported
+	public int getArtifacts() {
+		return artifacts;
+	}
+
+	@Exported
+	public int getDownloadedArtifacts() {
+		return downloadedArtifacts;
+	}
+
+	@Exported
+	public int getFailedArtifacts() {
+		return failedArtifacts;
+	}
+
+	/**
+	 * @return the total size of the artifacts, in bytes
+	 */
+	@Exported
+	public long getArtifactsSize() {
+		return artifactsSize;
+	}
+
+	@Exported
+	public long getDownloadedArtifactsSize() {
+		return downloadedArtifactsSize;
+	}
+
+	@Exported
+	public long getCachedArtifactsSize() {
+		return cachedArtifactsSize;
+	}
+
+}
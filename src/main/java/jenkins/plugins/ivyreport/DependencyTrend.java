@@ -0,0 +1,261 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.model.AbstractProject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Time series of the dependency summaries of the builds of a project, kept in
+ * a single file so that the trend charts do not load the builds.
+ * <p>
+ * The file is append only : a line per published report, with the build
+ * number followed by the values of the {@link #METRICS}. A line for a build
+ * replaces the previous lines for the same build and a deleted build is
+ * recorded as its negated number. The file is compacted when it is read and
+ * most of its lines are dead. The points of the most recently read files are
+ * cached until the file changes, as a project page reads the trend once per
+ * chart.
+ */
+public class DependencyTrend {
+	private static final Logger LOGGER = Logger.getLogger(DependencyTrend.class
+			.getName());
+	private static final String FILE_NAME = "ivy-report-trend.log";
+	private static final int COMPACTION_SLACK = 64;
+	private static final int CACHE_SIZE = 64;
+	// appends and compactions of all the projects, they are short
+	private static final Object LOCK = new Object();
+	// file path -> points read from it, in access order, guarded by LOCK
+	private static final Map<String, CachedPoints> CACHE = new LinkedHashMap<String, CachedPoints>(
+			16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<String, CachedPoints> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	public static final String[] METRICS = { "modules", "conflicts",
+			"evicted", "artifactsSize", "generationTime" };
+	public static final String[] METRIC_TITLES = { "Modules", "Conflicts",
+			"Evicted revisions", "Artifacts size (kB)",
+			"Report generation time (ms)" };
+
+	private final File file;
+
+	public DependencyTrend(File file) {
+		this.file = file;
+	}
+
+	public static DependencyTrend forProject(AbstractProject<?, ?> project) {
+		return new DependencyTrend(new File(project.getRootDir(), FILE_NAME));
+	}
+
+	/**
+	 * A build of the time series
+	 */
+	public static class Point {
+		private final int buildNumber;
+		private final long[] values;
+
+		public Point(int buildNumber, long[] values) {
+			this.buildNumber = buildNumber;
+			this.values = values;
+		}
+
+		/**
+		 * The point of a report. Only the first configuration is recorded,
+		 * the one the report opens on.
+		 */
+		public static Point of(int buildNumber, DependencySummary summary,
+				long generationTime) {
+			return new Point(buildNumber, new long[] { summary.getModules(),
+					summary.getConflicts(), summary.getEvicted(),
+					summary.getArtifactsSize() / 1024, generationTime });
+		}
+
+		public int getBuildNumber() {
+			return buildNumber;
+		}
+
+		/**
+		 * @param metric
+		 *            index in {@link DependencyTrend#METRICS}
+		 */
+		public long getValue(int metric) {
+			return values[metric];
+		}
+	}
+
+	public void append(Point point) throws IOException {
+		appendLine(format(point));
+	}
+
+	public void remove(int buildNumber) throws IOException {
+		if (file.exists()) {
+			appendLine("-" + buildNumber);
+		}
+	}
+
+	private void appendLine(String line) throws IOException {
+		synchronized (LOCK) {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(file,
+					true), "US-ASCII");
+			try {
+				writer.write(line + "\n");
+			} finally {
+				writer.close();
+			}
+		}
+	}
+
+	/**
+	 * The points of a file and the size and modification time of the file
+	 * when they were read
+	 */
+	private static class CachedPoints {
+		private final long length;
+		private final long lastModified;
+		private final List<Point> points;
+
+		public CachedPoints(File file, List<Point> points) {
+			this.length = file.length();
+			this.lastModified = file.lastModified();
+			this.points = points;
+		}
+
+		public boolean isUpToDate(File file) {
+			return file.length() == length
+					&& file.lastModified() == lastModified;
+		}
+	}
+
+	/**
+	 * @return the points of the builds that have not been deleted, ordered by
+	 *         build number. The list must not be modified.
+	 */
+	public List<Point> read() throws IOException {
+		synchronized (LOCK) {
+			if (!file.exists()) {
+				CACHE.remove(file.getPath());
+				return Collections.emptyList();
+			}
+			CachedPoints cached = CACHE.get(file.getPath());
+			if (cached != null && cached.isUpToDate(file)) {
+				return cached.points;
+			}
+			Map<Integer, Point> points = new TreeMap<Integer, Point>();
+			int lines = 0;
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					new FileInputStream(file), "US-ASCII"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					lines++;
+					parseLine(line, points);
+				}
+			} finally {
+				reader.close();
+			}
+			List<Point> result = Collections
+					.unmodifiableList(new ArrayList<Point>(points.values()));
+			if (lines > 2 * result.size() + COMPACTION_SLACK) {
+				compact(result);
+			}
+			CACHE.put(file.getPath(), new CachedPoints(file, result));
+			return result;
+		}
+	}
+
+	private static String format(Point point) {
+		StringBuilder line = new StringBuilder();
+		line.append(point.getBuildNumber());
+		for (long value : point.values) {
+			line.append(' ').append(value);
+		}
+		return line.toString();
+	}
+
+	private static void parseLine(String line, Map<Integer, Point> points) {
+		String[] fields = line.trim().split(" ");
+		try {
+			int buildNumber = Integer.parseInt(fields[0]);
+			if (buildNumber < 0) {
+				points.remove(-buildNumber);
+				return;
+			}
+			if (fields.length != METRICS.length + 1) {
+				// truncated by a crash
+				return;
+			}
+			long[] values = new long[METRICS.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = Long.parseLong(fields[i + 1]);
+			}
+			points.put(buildNumber, new Point(buildNumber, values));
+		} catch (NumberFormatException e) {
+			// ignore the line
+		}
+	}
+
+	private void compact(List<Point> points) {
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(
+					tmpFile), "US-ASCII");
+			try {
+				for (Point point : points) {
+					writer.write(format(point) + "\n");
+				}
+			} finally {
+				writer.close();
+			}
+			if (!tmpFile.renameTo(file)
+					&& !(file.delete() && tmpFile.renameTo(file))) {
+				throw new IOException("Unable to rename " + tmpFile + " to "
+						+ file);
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Could not compact " + file, e);
+			tmpFile.delete();
+		}
+	}
+
+}
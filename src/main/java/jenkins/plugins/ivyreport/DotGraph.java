@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A graph read from the dot language. Only what is needed to lay the graph out
+ * is kept : nodes, edges and their attributes.
+ */
+public class DotGraph {
+	private final boolean directed;
+	private final Map<String, String> attributes = new HashMap<String, String>();
+	private final Map<String, Node> nodesById = new LinkedHashMap<String, Node>();
+	private final List<Node> nodes = new ArrayList<Node>();
+	private final List<Edge> edges = new ArrayList<Edge>();
+
+	public DotGraph(boolean directed) {
+		this.directed = directed;
+	}
+
+	public boolean isDirected() {
+		return directed;
+	}
+
+	public Map<String, String> getAttributes() {
+		return attributes;
+	}
+
+	public String getAttribute(String name, String defaultValue) {
+		String value = attributes.get(name);
+		return value == null ? defaultValue : value;
+	}
+
+	public List<Node> getNodes() {
+		return nodes;
+	}
+
+	public List<Edge> getEdges() {
+		return edges;
+	}
+
+	public Node getNode(String id) {
+		return nodesById.get(id);
+	}
+
+	/**
+	 * Get a node, creating it with the given default attributes if it does
+	 * not exist yet
+	 */
+	public Node getOrCreateNode(String id, Map<String, String> defaults) {
+		Node node = nodesById.get(id);
+		if (node == null) {
+			node = new Node(nodes.size(), id);
+			node.attributes.putAll(defaults);
+			nodesById.put(id, node);
+			nodes.add(node);
+		}
+		return node;
+	}
+
+	public Edge addEdge(Node tail, Node head, Map<String, String> attributes) {
+		Edge edge = new Edge(tail, head);
+		edge.attributes.putAll(attributes);
+		edges.add(edge);
+		return edge;
+	}
+
+	public static class Node {
+		private final int index;
+		private final String id;
+		private final Map<String, String> attributes = new HashMap<String, String>();
+
+		private Node(int index, String id) {
+			this.index = index;
+			this.id = id;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public Map<String, String> getAttributes() {
+			return attributes;
+		}
+
+		public String getAttribute(String name, String defaultValue) {
+			String value = attributes.get(name);
+			return value == null ? defaultValue : value;
+		}
+	}
+
+	public static class Edge {
+		private final Node tail;
+		private final Node head;
+		private final Map<String, String> attributes = new HashMap<String, String>();
+
+		private Edge(Node tail, Node head) {
+			this.tail = tail;
+			this.head = head;
+		}
+
+		public Node getTail() {
+			return tail;
+		}
+
+		public Node getHead() {
+			return head;
+		}
+
+		public Map<String, String> getAttributes() {
+			return attributes;
+		}
+
+		public String getAttribute(String name, String defaultValue) {
+			String value = attributes.get(name);
+			return value == null ? defaultValue : value;
+		}
+	}
+
+}
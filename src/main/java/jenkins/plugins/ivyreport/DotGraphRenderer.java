@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Launcher;
+import hudson.util.LogTaskListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Render graphs using the graphviz dot executable
+ */
+public class DotGraphRenderer implements GraphRenderer {
+	private static final long serialVersionUID = -4385318411432434785L;
+	private static final Logger LOGGER = Logger.getLogger(DotGraphRenderer.class.getName());
+	public static final String ID = "dot";
+	private final String dotExe;
+
+	public DotGraphRenderer(String dotExe) {
+		this.dotExe = dotExe;
+	}
+
+	public String getDotExe() {
+		return dotExe;
+	}
+
+	public void render(InputStream dot, OutputStream svg) throws IOException,
+			InterruptedException {
+		Launcher launcher = new Launcher.LocalLauncher(new LogTaskListener(
+				LOGGER, Level.CONFIG));
+		try {
+			int exitCode = launcher.launch().cmds(dotExe, "-T" + "svg")
+					.stdin(dot).stdout(svg).start().join();
+			if (exitCode != 0) {
+				throw new IOException(dotExe + " failed with exit code "
+						+ exitCode);
+			}
+		} catch (InterruptedException e) {
+			// the layout deadline or an aborted build, handled by the caller
+			LOGGER.fine("Interrupted while waiting for dot-file to be created");
+			throw e;
+		}
+	}
+
+}
@@ -0,0 +1,425 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parser for the dot language. Subgraphs are flattened and ports are ignored.
+ */
+public class DotParser {
+	private static final int EOF = -1;
+	private static final int ID = 0;
+	private static final int PUNCTUATION = 1;
+	private static final int EDGE_OP = 2;
+
+	private final Reader reader;
+	private int peeked = -2;
+	private int line = 1;
+
+	private int tokenType;
+	private String tokenValue;
+	private boolean tokenQuoted;
+	private boolean pushedBack;
+
+	private DotGraph graph;
+
+	public DotParser(Reader reader) {
+		this.reader = reader;
+	}
+
+	public DotGraph parse() throws IOException {
+		nextToken();
+		if (isKeyword("strict")) {
+			nextToken();
+		}
+		boolean directed;
+		if (isKeyword("digraph")) {
+			directed = true;
+		} else if (isKeyword("graph")) {
+			directed = false;
+		} else {
+			throw error("Expected graph or digraph");
+		}
+		graph = new DotGraph(directed);
+		nextToken();
+		if (tokenType == ID) {
+			nextToken();
+		}
+		expect("{");
+		parseStatements(new Scope());
+		return graph;
+	}
+
+	private void parseStatements(Scope scope) throws IOException {
+		while (true) {
+			nextToken();
+			if (tokenType == EOF) {
+				throw error("Unexpected end of graph");
+			}
+			if (isPunctuation("}")) {
+				return;
+			}
+			if (isPunctuation(";")) {
+				continue;
+			}
+			parseStatement(scope);
+		}
+	}
+
+	private void parseStatement(Scope scope) throws IOException {
+		if (isKeyword("graph")) {
+			Map<String, String> attributes = parseAttributeLists();
+			if (scope.root) {
+				graph.getAttributes().putAll(attributes);
+			}
+			return;
+		}
+		if (isKeyword("node")) {
+			scope.nodeDefaults.putAll(parseAttributeLists());
+			return;
+		}
+		if (isKeyword("edge")) {
+			scope.edgeDefaults.putAll(parseAttributeLists());
+			return;
+		}
+		boolean subgraph = isKeyword("subgraph") || isPunctuation("{");
+		List<DotGraph.Node> tails = parseNodeOrSubgraph(scope);
+		if (tails == null) {
+			// graph attribute assignment
+			return;
+		}
+		nextToken();
+		if (tokenType != EDGE_OP) {
+			pushBack();
+			if (!subgraph) {
+				tails.get(0).getAttributes().putAll(parseAttributeLists());
+			}
+			return;
+		}
+		List<List<DotGraph.Node>> chain = new ArrayList<List<DotGraph.Node>>();
+		chain.add(tails);
+		while (tokenType == EDGE_OP) {
+			nextToken();
+			chain.add(parseNodeOrSubgraph(scope));
+			nextToken();
+		}
+		pushBack();
+		Map<String, String> attributes = new HashMap<String, String>(
+				scope.edgeDefaults);
+		attributes.putAll(parseAttributeLists());
+		for (int i = 0; i < chain.size() - 1; i++) {
+			for (DotGraph.Node tail : chain.get(i)) {
+				for (DotGraph.Node head : chain.get(i + 1)) {
+					graph.addEdge(tail, head, attributes);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the nodes of the node or subgraph, or null if the statement was
+	 *         a graph attribute assignment
+	 */
+	private List<DotGraph.Node> parseNodeOrSubgraph(Scope scope)
+			throws IOException {
+		if (isKeyword("subgraph") || isPunctuation("{")) {
+			if (isKeyword("subgraph")) {
+				nextToken();
+				if (tokenType == ID) {
+					nextToken();
+				}
+			}
+			if (!isPunctuation("{")) {
+				throw error("Expected {");
+			}
+			Scope subgraphScope = new Scope(scope);
+			parseStatements(subgraphScope);
+			scope.nodes.addAll(subgraphScope.nodes);
+			return new ArrayList<DotGraph.Node>(subgraphScope.nodes);
+		}
+		if (tokenType != ID) {
+			throw error("Expected node identifier");
+		}
+		String id = tokenValue;
+		nextToken();
+		if (isPunctuation("=")) {
+			nextToken();
+			if (tokenType != ID) {
+				throw error("Expected attribute value");
+			}
+			if (scope.root) {
+				graph.getAttributes().put(id, tokenValue);
+			}
+			return null;
+		}
+		// ignore ports
+		while (isPunctuation(":")) {
+			nextToken();
+			nextToken();
+		}
+		pushBack();
+		DotGraph.Node node = graph.getOrCreateNode(id, scope.nodeDefaults);
+		scope.nodes.add(node);
+		List<DotGraph.Node> nodes = new ArrayList<DotGraph.Node>(1);
+		nodes.add(node);
+		return nodes;
+	}
+
+	private Map<String, String> parseAttributeLists() throws IOException {
+		Map<String, String> attributes = new HashMap<String, String>();
+		nextToken();
+		while (isPunctuation("[")) {
+			nextToken();
+			while (!isPunctuation("]")) {
+				if (tokenType != ID) {
+					throw error("Expected attribute name");
+				}
+				String name = tokenValue;
+				nextToken();
+				String value = "true";
+				if (isPunctuation("=")) {
+					nextToken();
+					if (tokenType != ID) {
+						throw error("Expected attribute value");
+					}
+					value = tokenValue;
+					nextToken();
+				}
+				attributes.put(name, value);
+				if (isPunctuation(",") || isPunctuation(";")) {
+					nextToken();
+				}
+			}
+			nextToken();
+		}
+		pushBack();
+		return attributes;
+	}
+
+	private void expect(String punctuation) throws IOException {
+		if (!isPunctuation(punctuation)) {
+			throw error("Expected " + punctuation);
+		}
+	}
+
+	private boolean isKeyword(String keyword) {
+		return tokenType == ID && !tokenQuoted
+				&& keyword.equalsIgnoreCase(tokenValue);
+	}
+
+	private boolean isPunctuation(String punctuation) {
+		return tokenType == PUNCTUATION && punctuation.equals(tokenValue);
+	}
+
+	private IOException error(String message) {
+		return new IOException(message + " at line " + line + " (found '"
+				+ tokenValue + "')");
+	}
+
+	private void pushBack() {
+		pushedBack = true;
+	}
+
+	private void nextToken() throws IOException {
+		if (pushedBack) {
+			pushedBack = false;
+			return;
+		}
+		tokenQuoted = false;
+		int c = skipWhitespacesAndComments();
+		if (c == EOF) {
+			tokenType = EOF;
+			tokenValue = "<EOF>";
+			return;
+		}
+		if (c == '"') {
+			tokenType = ID;
+			tokenQuoted = true;
+			tokenValue = readQuotedString();
+			return;
+		}
+		if (c == '<') {
+			tokenType = ID;
+			tokenQuoted = true;
+			tokenValue = readHtmlString();
+			return;
+		}
+		if (c == '-' && (peek() == '>' || peek() == '-')) {
+			read();
+			tokenType = EDGE_OP;
+			tokenValue = "->";
+			return;
+		}
+		if ("{}[]=;,:".indexOf(c) != -1) {
+			tokenType = PUNCTUATION;
+			tokenValue = String.valueOf((char) c);
+			return;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append((char) c);
+		while (isIdentifierChar(peek())) {
+			sb.append((char) read());
+		}
+		tokenType = ID;
+		tokenValue = sb.toString();
+	}
+
+	private boolean isIdentifierChar(int c) {
+		return c != EOF
+				&& (Character.isLetterOrDigit(c) || c == '_' || c == '.' || c > 127);
+	}
+
+	private int skipWhitespacesAndComments() throws IOException {
+		while (true) {
+			int c = read();
+			if (c == EOF) {
+				return EOF;
+			}
+			if (Character.isWhitespace(c)) {
+				continue;
+			}
+			if (c == '#') {
+				skipLine();
+			} else if (c == '/' && peek() == '/') {
+				skipLine();
+			} else if (c == '/' && peek() == '*') {
+				read();
+				int previous = 0;
+				while (true) {
+					c = read();
+					if (c == EOF || (previous == '*' && c == '/')) {
+						break;
+					}
+					previous = c;
+				}
+			} else {
+				return c;
+			}
+		}
+	}
+
+	private void skipLine() throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c != EOF && c != '\n');
+	}
+
+	private String readQuotedString() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		while (true) {
+			int c = read();
+			if (c == EOF) {
+				throw error("Unterminated string");
+			}
+			if (c == '"') {
+				return sb.toString();
+			}
+			if (c == '\\') {
+				int next = read();
+				if (next == '"') {
+					sb.append('"');
+				} else if (next == '\n') {
+					// line continuation
+				} else if (next != EOF) {
+					// other escapes are interpreted by the label rendering
+					sb.append('\\').append((char) next);
+				}
+			} else {
+				sb.append((char) c);
+			}
+		}
+	}
+
+	private String readHtmlString() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int depth = 1;
+		while (true) {
+			int c = read();
+			if (c == EOF) {
+				throw error("Unterminated html string");
+			}
+			if (c == '<') {
+				depth++;
+			} else if (c == '>') {
+				depth--;
+				if (depth == 0) {
+					return sb.toString();
+				}
+			}
+			sb.append((char) c);
+		}
+	}
+
+	private int peek() throws IOException {
+		if (peeked == -2) {
+			peeked = reader.read();
+		}
+		return peeked;
+	}
+
+	private int read() throws IOException {
+		int c;
+		if (peeked != -2) {
+			c = peeked;
+			peeked = -2;
+		} else {
+			c = reader.read();
+		}
+		if (c == '\n') {
+			line++;
+		}
+		return c;
+	}
+
+	private static class Scope {
+		private final boolean root;
+		private final Map<String, String> nodeDefaults;
+		private final Map<String, String> edgeDefaults;
+		private final Set<DotGraph.Node> nodes = new LinkedHashSet<DotGraph.Node>();
+
+		public Scope() {
+			this.root = true;
+			this.nodeDefaults = new HashMap<String, String>();
+			this.edgeDefaults = new HashMap<String, String>();
+		}
+
+		public Scope(Scope parent) {
+			this.root = false;
+			this.nodeDefaults = new HashMap<String, String>(
+					parent.nodeDefaults);
+			this.edgeDefaults = new HashMap<String, String>(
+					parent.edgeDefaults);
+		}
+	}
+
+}
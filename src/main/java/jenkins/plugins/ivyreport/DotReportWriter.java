@@ -0,0 +1,492 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write the dependency graph of a {@link ResolveReport} in the dot language,
+ * like ivy-report-dot.xsl, after a {@link GraphReduction}.
+ * <p>
+ * The graph has a node per module, the root module and the callers that are
+ * not in the report, and an edge from the callers of each revision that has
+ * not been evicted. It is then reduced in this order : evicted revisions
+ * hidden, depth limited, modules collapsed into organisations, transitive
+ * reduction.
+ */
+public class DotReportWriter {
+	private final ResolveReport report;
+	private final GraphReduction reduction;
+	private final Writer out;
+
+	private final List<String> nodeIds = new ArrayList<String>();
+	private final List<String> labels = new ArrayList<String>();
+	private final List<String> organisations = new ArrayList<String>();
+	private final Map<String, Integer> nodes = new HashMap<String, Integer>();
+	private int root;
+	private boolean clustered;
+	private boolean[] hidden;
+	private boolean[] truncated;
+	private int edgeCount;
+	private int[] edgeFrom = new int[16];
+	private int[] edgeTo = new int[16];
+	private String[] edgeLabels = new String[16];
+
+	public DotReportWriter(ResolveReport report, GraphReduction reduction,
+			Writer out) {
+		this.report = report;
+		this.reduction = reduction;
+		this.out = out;
+	}
+
+	public void write() throws IOException {
+		buildModuleGraph();
+		if (reduction.getMaxDepth() > 0) {
+			limitDepth(reduction.getMaxDepth());
+		}
+		if (reduction.isClusterOrganisations()) {
+			clusterOrganisations();
+		}
+		if (reduction.isTransitiveReduction()) {
+			removeDuplicateEdges();
+			reduceTransitively();
+		}
+		removeHiddenEdges();
+		out.write("digraph G {\n");
+		writeNode(root);
+		for (int node = 0; node < nodeIds.size(); node++) {
+			if (node != root && !hidden[node]) {
+				writeNode(node);
+			}
+		}
+		for (int edge = 0; edge < edgeCount; edge++) {
+			if (edgeFrom[edge] == -1) {
+				continue;
+			}
+			out.write("\"" + escape(nodeIds.get(edgeFrom[edge])) + "\" -> \""
+					+ escape(nodeIds.get(edgeTo[edge])) + "\"");
+			if (edgeLabels[edge] != null) {
+				out.write(" [label=\"" + escape(edgeLabels[edge]) + "\"]");
+			}
+			out.write(";\n");
+		}
+		out.write("}\n");
+		out.flush();
+	}
+
+	private void writeNode(int node) throws IOException {
+		out.write("\"" + escape(nodeIds.get(node)) + "\" [label=\""
+				+ escape(labels.get(node)) + "\"");
+		if (clustered && node != root) {
+			out.write(", shape=box");
+		}
+		if (truncated[node]) {
+			out.write(", style=dashed");
+		}
+		out.write("];\n");
+	}
+
+	private void buildModuleGraph() {
+		boolean hideEvicted = reduction.isHideEvicted();
+		for (int m = 0; m < report.getModuleCount(); m++) {
+			StringBuilder label = new StringBuilder(value(report
+					.getModuleName(m)));
+			for (int r = report.getFirstRevision(m); r < report
+					.getEndRevision(m); r++) {
+				boolean evicted = report.hasRevisionAttribute(r,
+						ResolveReport.REVISION_EVICTED);
+				if (evicted && hideEvicted) {
+					continue;
+				}
+				label.append('\n').append(
+						value(report.getRevisionAttribute(r,
+								ResolveReport.REVISION_NAME)));
+				if (report.hasRevisionAttribute(r, ResolveReport.REVISION_ERROR)) {
+					label.append(" (error)");
+				}
+				if (evicted) {
+					label.append(" (evicted)");
+				}
+			}
+			addNode(value(report.getModuleOrganisation(m)),
+					value(report.getModuleName(m)), label.toString());
+		}
+		String rootModule = value(report.getModule());
+		root = addNode(value(report.getOrganisation()), rootModule,
+				rootModule);
+		for (int m = 0; m < report.getModuleCount(); m++) {
+			for (int r = report.getFirstRevision(m); r < report
+					.getEndRevision(m); r++) {
+				if (report.hasRevisionAttribute(r,
+						ResolveReport.REVISION_EVICTED)) {
+					continue;
+				}
+				for (int c = report.getFirstCaller(r); c < report
+						.getEndCaller(r); c++) {
+					String callerName = value(report.getCallerAttribute(c,
+							ResolveReport.CALLER_NAME));
+					int caller = addNode(value(report.getCallerAttribute(c,
+							ResolveReport.CALLER_ORGANISATION)), callerName,
+							callerName);
+					addEdge(caller, m, value(report.getCallerAttribute(c,
+							ResolveReport.CALLER_REV)));
+				}
+			}
+		}
+		hidden = new boolean[nodeIds.size()];
+		truncated = new boolean[nodeIds.size()];
+		if (hideEvicted) {
+			for (int m = 0; m < report.getModuleCount(); m++) {
+				hidden[m] = m != root;
+				for (int r = report.getFirstRevision(m); r < report
+						.getEndRevision(m); r++) {
+					if (!report.hasRevisionAttribute(r,
+							ResolveReport.REVISION_EVICTED)) {
+						hidden[m] = false;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the node, added if it does not exist yet
+	 */
+	private int addNode(String organisation, String module, String label) {
+		String id = organisation + "-" + module;
+		Integer node = nodes.get(id);
+		if (node == null) {
+			node = nodeIds.size();
+			nodes.put(id, node);
+			nodeIds.add(id);
+			labels.add(label);
+			organisations.add(organisation);
+		}
+		return node;
+	}
+
+	private void addEdge(int from, int to, String label) {
+		if (edgeCount == edgeFrom.length) {
+			edgeFrom = Arrays.copyOf(edgeFrom, edgeCount * 2);
+			edgeTo = Arrays.copyOf(edgeTo, edgeCount * 2);
+			edgeLabels = Arrays.copyOf(edgeLabels, edgeCount * 2);
+		}
+		edgeFrom[edgeCount] = from;
+		edgeTo[edgeCount] = to;
+		edgeLabels[edgeCount] = label;
+		edgeCount++;
+	}
+
+	/**
+	 * Hide the nodes deeper than the max depth from the root, or that cannot
+	 * be reached from it. The nodes with hidden dependencies are truncated.
+	 */
+	private void limitDepth(int maxDepth) {
+		int[] depths = new int[nodeIds.size()];
+		Arrays.fill(depths, Integer.MAX_VALUE);
+		int[][] adjacency = getAdjacency();
+		int[] queue = new int[nodeIds.size()];
+		int head = 0;
+		int tail = 0;
+		depths[root] = 0;
+		queue[tail++] = root;
+		while (head < tail) {
+			int node = queue[head++];
+			for (int edge : adjacency[node]) {
+				int to = edgeTo[edge];
+				if (depths[to] == Integer.MAX_VALUE) {
+					depths[to] = depths[node] + 1;
+					queue[tail++] = to;
+				}
+			}
+		}
+		for (int node = 0; node < nodeIds.size(); node++) {
+			if (depths[node] > maxDepth) {
+				hidden[node] = true;
+			}
+		}
+		for (int edge = 0; edge < edgeCount; edge++) {
+			if (edgeFrom[edge] != -1 && !hidden[edgeFrom[edge]]
+					&& hidden[edgeTo[edge]]
+					&& depths[edgeTo[edge]] > maxDepth) {
+				truncated[edgeFrom[edge]] = true;
+			}
+		}
+		removeHiddenEdges();
+	}
+
+	/**
+	 * Replace the nodes by a node per organisation, the root module
+	 * excepted. The edges between the modules of an organisation are
+	 * removed, the edges between two organisations are kept once.
+	 */
+	private void clusterOrganisations() {
+		removeHiddenEdges();
+		List<String> clusterIds = new ArrayList<String>();
+		List<Integer> moduleCounts = new ArrayList<Integer>();
+		Map<String, Integer> clusters = new HashMap<String, Integer>();
+		clusterIds.add(nodeIds.get(root));
+		moduleCounts.add(0);
+		int[] clusterOf = new int[nodeIds.size()];
+		List<Boolean> clusterTruncated = new ArrayList<Boolean>();
+		clusterTruncated.add(truncated[root]);
+		for (int node = 0; node < nodeIds.size(); node++) {
+			if (node == root) {
+				clusterOf[node] = 0;
+				continue;
+			}
+			if (hidden[node]) {
+				clusterOf[node] = -1;
+				continue;
+			}
+			String organisation = organisations.get(node);
+			Integer cluster = clusters.get(organisation);
+			if (cluster == null) {
+				cluster = clusterIds.size();
+				clusters.put(organisation, cluster);
+				clusterIds.add(organisation);
+				moduleCounts.add(0);
+				clusterTruncated.add(false);
+			}
+			clusterOf[node] = cluster;
+			moduleCounts.set(cluster, moduleCounts.get(cluster) + 1);
+			if (truncated[node]) {
+				clusterTruncated.set(cluster, true);
+			}
+		}
+		nodeIds.clear();
+		labels.clear();
+		organisations.clear();
+		nodes.clear();
+		hidden = new boolean[clusterIds.size()];
+		truncated = new boolean[clusterIds.size()];
+		for (int cluster = 0; cluster < clusterIds.size(); cluster++) {
+			String id = clusterIds.get(cluster);
+			nodeIds.add(id);
+			nodes.put(id, cluster);
+			organisations.add(id);
+			if (cluster == 0) {
+				labels.add(value(report.getModule()));
+			} else {
+				int count = moduleCounts.get(cluster);
+				labels.add(id + "\n" + count
+						+ (count == 1 ? " module" : " modules"));
+			}
+			truncated[cluster] = clusterTruncated.get(cluster);
+		}
+		root = 0;
+		clustered = true;
+		for (int edge = 0; edge < edgeCount; edge++) {
+			if (edgeFrom[edge] == -1) {
+				continue;
+			}
+			int from = clusterOf[edgeFrom[edge]];
+			int to = clusterOf[edgeTo[edge]];
+			if (from == to) {
+				edgeFrom[edge] = -1;
+			} else {
+				edgeFrom[edge] = from;
+				edgeTo[edge] = to;
+				edgeLabels[edge] = null;
+			}
+		}
+		removeDuplicateEdges();
+	}
+
+	/**
+	 * Keep a single edge between two nodes, with the label of the first one
+	 */
+	private void removeDuplicateEdges() {
+		Map<Long, Boolean> pairs = new HashMap<Long, Boolean>();
+		for (int edge = 0; edge < edgeCount; edge++) {
+			if (edgeFrom[edge] != -1
+					&& pairs.put(((long) edgeFrom[edge] << 32) | edgeTo[edge],
+							Boolean.TRUE) != null) {
+				edgeFrom[edge] = -1;
+			}
+		}
+	}
+
+	/**
+	 * Remove the edges to the nodes that can be reached through other edges.
+	 * The children of each node are visited in topological order, so that
+	 * the reduction is exact when the graph has no cycles. With cycles, some
+	 * redundant edges may be kept but the nodes reachable from each node stay
+	 * the same.
+	 */
+	private void reduceTransitively() throws IOException {
+		int nodeCount = nodeIds.size();
+		int[][] adjacency = getAdjacency();
+		final int[] topologicalOrder = getTopologicalOrder(adjacency);
+		int[] visited = new int[nodeCount];
+		int[] stack = new int[nodeCount];
+		for (int node = 0; node < nodeCount; node++) {
+			if (adjacency[node].length < 2) {
+				continue;
+			}
+			if (Thread.currentThread().isInterrupted()) {
+				throw new InterruptedIOException(
+						"Interrupted while reducing the graph");
+			}
+			int stamp = node + 1;
+			Integer[] children = new Integer[adjacency[node].length];
+			for (int i = 0; i < children.length; i++) {
+				children[i] = adjacency[node][i];
+			}
+			Arrays.sort(children, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					return topologicalOrder[edgeTo[a]]
+							- topologicalOrder[edgeTo[b]];
+				}
+			});
+			visited[node] = stamp;
+			for (int edge : children) {
+				int child = edgeTo[edge];
+				if (visited[child] == stamp) {
+					edgeFrom[edge] = -1;
+					continue;
+				}
+				// mark everything reachable from the kept child, without
+				// going through the node itself
+				int top = 0;
+				visited[child] = stamp;
+				stack[top++] = child;
+				while (top > 0) {
+					int current = stack[--top];
+					for (int next : adjacency[current]) {
+						int to = edgeTo[next];
+						if (edgeFrom[next] != -1 && visited[to] != stamp) {
+							visited[to] = stamp;
+							stack[top++] = to;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the rank of each node in a topological order, ignoring the
+	 *         edges that close cycles
+	 */
+	private int[] getTopologicalOrder(int[][] adjacency) {
+		int nodeCount = nodeIds.size();
+		int[] order = new int[nodeCount];
+		int rank = nodeCount;
+		byte[] state = new byte[nodeCount];
+		int[] stack = new int[nodeCount];
+		int[] positions = new int[nodeCount];
+		for (int start = -1; start < nodeCount; start++) {
+			// the root first, so that it comes first
+			int first = start == -1 ? root : start;
+			if (state[first] != 0) {
+				continue;
+			}
+			int top = 0;
+			stack[top++] = first;
+			state[first] = 1;
+			while (top > 0) {
+				int node = stack[top - 1];
+				if (positions[node] < adjacency[node].length) {
+					int to = edgeTo[adjacency[node][positions[node]++]];
+					if (state[to] == 0) {
+						state[to] = 1;
+						stack[top++] = to;
+					}
+				} else {
+					state[node] = 2;
+					order[node] = --rank;
+					top--;
+				}
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * @return the outgoing edges of each node, the removed edges and the
+	 *         edges of hidden nodes excepted
+	 */
+	private int[][] getAdjacency() {
+		int nodeCount = nodeIds.size();
+		int[] counts = new int[nodeCount];
+		for (int edge = 0; edge < edgeCount; edge++) {
+			if (isVisible(edge)) {
+				counts[edgeFrom[edge]]++;
+			}
+		}
+		int[][] adjacency = new int[nodeCount][];
+		for (int node = 0; node < nodeCount; node++) {
+			adjacency[node] = new int[counts[node]];
+			counts[node] = 0;
+		}
+		for (int edge = 0; edge < edgeCount; edge++) {
+			if (isVisible(edge)) {
+				adjacency[edgeFrom[edge]][counts[edgeFrom[edge]]++] = edge;
+			}
+		}
+		return adjacency;
+	}
+
+	private boolean isVisible(int edge) {
+		return edgeFrom[edge] != -1 && !hidden[edgeFrom[edge]]
+				&& !hidden[edgeTo[edge]];
+	}
+
+	private void removeHiddenEdges() {
+		for (int edge = 0; edge < edgeCount; edge++) {
+			if (!isVisible(edge)) {
+				edgeFrom[edge] = -1;
+			}
+		}
+	}
+
+	private static String escape(String value) {
+		StringBuilder sb = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c == '\n') {
+				sb.append("\\n");
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String value(String value) {
+		return value == null ? "" : value;
+	}
+
+}
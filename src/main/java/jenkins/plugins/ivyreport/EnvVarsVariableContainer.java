@@ -25,6 +25,9 @@ package jenkins.plugins.ivyreport;
 
 import hudson.EnvVars;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.ivy.core.settings.IvyVariableContainerImpl;
 
 /**
@@ -36,6 +39,8 @@ import org.apache.ivy.core.settings.IvyVariableContainerImpl;
  */
 public class EnvVarsVariableContainer extends IvyVariableContainerImpl {
 	private EnvVars envVars;
+	// shared with the clones
+	private Map<String, String> usedEnvVars = new HashMap<String, String>();
 
 	public EnvVarsVariableContainer(EnvVars envVars) {
 		this.envVars = envVars;
@@ -46,13 +51,23 @@ public class EnvVarsVariableContainer extends IvyVariableContainerImpl {
 		String val = null;
 		String envPrefix = getEnvironmentPrefix();
 		if ((envPrefix != null) && name.startsWith(envPrefix)) {
-			val = envVars.get(name.substring(envPrefix.length()));
+			String envVarName = name.substring(envPrefix.length());
+			val = envVars.get(envVarName);
+			usedEnvVars.put(envVarName, val);
 		} else {
 			val = super.getVariable(name);
 		}
 		return val;
 	}
 
+	/**
+	 * @return the environment variables that have been read, with their
+	 *         value
+	 */
+	public Map<String, String> getUsedEnvVars() {
+		return usedEnvVars;
+	}
+
 	@Override
 	public Object clone() {
 		EnvVarsVariableContainer clone;
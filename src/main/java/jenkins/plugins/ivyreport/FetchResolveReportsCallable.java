@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.FilePath.FileCallable;
+import hudson.remoting.Pipe;
+import hudson.remoting.VirtualChannel;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarOutputStream;
+
+/**
+ * Send the resolve reports of all the configurations from the resolution cache
+ * root of a slave as a single gzip compressed tar, so that they are
+ * transferred in one round trip.
+ */
+public class FetchResolveReportsCallable implements
+		FileCallable<List<String>> {
+	private static final long serialVersionUID = 1L;
+	private final String resolveId;
+	private final String[] confs;
+	private final Pipe pipe;
+
+	public FetchResolveReportsCallable(String resolveId, String[] confs,
+			Pipe pipe) {
+		this.resolveId = resolveId;
+		this.confs = confs;
+		this.pipe = pipe;
+	}
+
+	/**
+	 * @return the paths of the resolve reports that do not exist
+	 */
+	public List<String> invoke(File resolutionCacheRoot, VirtualChannel channel)
+			throws IOException, InterruptedException {
+		List<String> missingReports = new ArrayList<String>();
+		TarOutputStream tar = new TarOutputStream(new GZIPOutputStream(
+				pipe.getOut()));
+		try {
+			tar.setLongFileMode(TarOutputStream.LONGFILE_GNU);
+			for (String conf : confs) {
+				File report = new File(resolutionCacheRoot, resolveId + "-"
+						+ conf + ".xml");
+				if (!report.isFile()) {
+					missingReports.add(report.getPath());
+					continue;
+				}
+				TarEntry entry = new TarEntry(report.getName());
+				entry.setSize(report.length());
+				entry.setModTime(report.lastModified());
+				tar.putNextEntry(entry);
+				InputStream in = new BufferedInputStream(new FileInputStream(
+						report));
+				try {
+					IOUtils.copy(in, tar);
+				} finally {
+					in.close();
+				}
+				tar.closeEntry();
+			}
+		} finally {
+			tar.close();
+		}
+		return missingReports;
+	}
+
+}
@@ -0,0 +1,183 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.FilePath;
+import hudson.FilePath.FileCallable;
+import hudson.Util;
+import hudson.remoting.Pipe;
+import hudson.remoting.VirtualChannel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generate the ivy reports on the slave that did the build, from its
+ * resolution cache root. The generated files are sent back as a gzip
+ * compressed tar through a pipe.
+ */
+public class GenerateReportsCallable implements
+		FileCallable<GenerateReportsCallable.Result> {
+	private static final long serialVersionUID = 1L;
+	private final String resolveId;
+	private final String[] confs;
+	private final GraphRenderer graphRenderer;
+	private final GraphReduction graphReduction;
+	private final boolean pagedHtml;
+	private final int renderThreads;
+	private final boolean keepDotFiles;
+	private final String assetsUrl;
+	private final long layoutTimeout;
+	private final Pipe pipe;
+
+	public GenerateReportsCallable(String resolveId, String[] confs,
+			GraphRenderer graphRenderer, GraphReduction graphReduction,
+			boolean pagedHtml, int renderThreads,
+			boolean keepDotFiles, String assetsUrl, long layoutTimeout,
+			Pipe pipe) {
+		this.resolveId = resolveId;
+		this.confs = confs;
+		this.graphRenderer = graphRenderer;
+		this.graphReduction = graphReduction;
+		this.pagedHtml = pagedHtml;
+		this.renderThreads = renderThreads;
+		this.keepDotFiles = keepDotFiles;
+		this.assetsUrl = assetsUrl;
+		this.layoutTimeout = layoutTimeout;
+		this.pipe = pipe;
+	}
+
+	public Result invoke(File resolutionCacheRoot, VirtualChannel channel)
+			throws IOException, InterruptedException {
+		File targetDir = File.createTempFile("ivyreport", "");
+		OutputStream out = pipe.getOut();
+		ExecutorService executor = renderThreads > 1 ? Executors
+				.newFixedThreadPool(renderThreads) : null;
+		try {
+			if (!targetDir.delete() || !targetDir.mkdir()) {
+				throw new IOException("Unable to create directory: "
+						+ targetDir.getAbsolutePath());
+			}
+			IvyReportGenerator ivyReportGenerator = new IvyReportGenerator(
+					resolveId, confs, resolutionCacheRoot, targetDir);
+			ivyReportGenerator.setExecutor(executor);
+			ivyReportGenerator.setGraphRenderer(graphRenderer);
+			ivyReportGenerator.setGraphReduction(graphReduction);
+			ivyReportGenerator.setPagedHtml(pagedHtml);
+			ivyReportGenerator.setKeepDotFiles(keepDotFiles);
+			ivyReportGenerator.setCompress(true);
+			ivyReportGenerator.setAssetsUrl(assetsUrl);
+			ivyReportGenerator.setLayoutTimeout(layoutTimeout);
+			long start = System.currentTimeMillis();
+			File htmlReport = ivyReportGenerator.generateReports();
+			long generationTime = System.currentTimeMillis() - start;
+			Map<String, Throwable> failures = new HashMap<String, Throwable>();
+			for (Map.Entry<String, Throwable> failure : ivyReportGenerator
+					.getFailures().entrySet()) {
+				// the cause may not be serializable
+				failures.put(failure.getKey(), new IOException(failure
+						.getValue().getMessage()));
+			}
+			// the files are already compressed but not the dot files
+			new FilePath(targetDir).tar(new GZIPOutputStream(out), "**/*");
+			out = null;
+			return new Result(htmlReport.getName(), failures,
+					new ArrayList<DependencySummary>(ivyReportGenerator
+							.getSummaries()), ivyReportGenerator
+							.getGraphLevels(), ivyReportGenerator.getTimings(),
+					generationTime);
+		} finally {
+			if (out != null) {
+				// the master stops waiting for the archive
+				out.close();
+			}
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			Util.deleteRecursive(targetDir);
+		}
+	}
+
+	public static class Result implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final String indexFileName;
+		private final Map<String, Throwable> failures;
+		private final List<DependencySummary> summaries;
+		private final Map<String, GraphLevel> graphLevels;
+		private final PublishTimings timings;
+		private final long generationTime;
+
+		public Result(String indexFileName, Map<String, Throwable> failures,
+				List<DependencySummary> summaries,
+				Map<String, GraphLevel> graphLevels, PublishTimings timings,
+				long generationTime) {
+			this.indexFileName = indexFileName;
+			this.failures = failures;
+			this.summaries = summaries;
+			this.graphLevels = graphLevels;
+			this.timings = timings;
+			this.generationTime = generationTime;
+		}
+
+		public String getIndexFileName() {
+			return indexFileName;
+		}
+
+		/**
+		 * @return the configurations for which report generation failed
+		 */
+		public Map<String, Throwable> getFailures() {
+			return failures;
+		}
+
+		public List<DependencySummary> getSummaries() {
+			return summaries;
+		}
+
+		/**
+		 * @return the level of detail of the graph of each configuration
+		 */
+		public Map<String, GraphLevel> getGraphLevels() {
+			return graphLevels;
+		}
+
+		public PublishTimings getTimings() {
+			return timings;
+		}
+
+		public long getGenerationTime() {
+			return generationTime;
+		}
+	}
+
+}
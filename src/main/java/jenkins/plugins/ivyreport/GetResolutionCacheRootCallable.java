@@ -37,6 +37,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.ivy.core.settings.IvySettings;
@@ -44,6 +49,11 @@ import org.apache.ivy.util.Message;
 
 /**
  * Get the ivy resolution cache root on the slave or master that built the project  
+ * <p>
+ * Loading the ivy settings can be slow, so the resolution cache root is cached
+ * in the JVM of the slave. It is found again when the settings file, the
+ * property files, the branch or the environment variables used by the settings
+ * change.
  * 
  * @author Cedric Chabanois (cchabanois at gmail.com)
  *
@@ -51,6 +61,20 @@ import org.apache.ivy.util.Message;
 public class GetResolutionCacheRootCallable implements
 		Callable<FilePath, Throwable> {
 	private static final long serialVersionUID = 8422944415684825418L;
+	private static final int CACHE_SIZE = 32;
+	private static final Map<String, CachedResolutionCacheRoot> CACHE = Collections
+			.synchronizedMap(new LinkedHashMap<String, CachedResolutionCacheRoot>(
+					16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<String, CachedResolutionCacheRoot> eldest) {
+					return size() > CACHE_SIZE;
+				}
+			});
+	private static final AtomicInteger CACHE_HITS = new AtomicInteger();
+	private static final AtomicInteger CACHE_LOOKUPS = new AtomicInteger();
 	private final BuildListener listener;
 	private final String ivySettingsFile;
 	private final String ivySettingsPropertyFiles;
@@ -82,17 +106,58 @@ public class GetResolutionCacheRootCallable implements
 
 	private File getResolutionCacheRoot() throws AbortException {
 		PrintStream logger = listener.getLogger();
-		IvySettings ivySettings = getIvySettings(logger);
+		File settingsLoc = getSettingsFile();
+		List<File> propertyFiles = getPropertyFiles();
+		String key = getCacheKey(settingsLoc, propertyFiles);
+		int lookups = CACHE_LOOKUPS.incrementAndGet();
+		CachedResolutionCacheRoot cached = CACHE.get(key);
+		if (cached != null && cached.isValid(envVars)) {
+			logger.println("Ivy resolution cache root found in cache ("
+					+ CACHE_HITS.incrementAndGet() + " hits / " + lookups
+					+ " lookups)");
+			return cached.resolutionCacheRoot;
+		}
+		EnvVarsVariableContainer variableContainer = new EnvVarsVariableContainer(
+				envVars);
+		IvySettings ivySettings = getIvySettings(logger, settingsLoc,
+				propertyFiles, variableContainer);
 		if (ivySettings == null) {
 			return null;
 		}
 		File resolutionCacheRoot = ivySettings.getResolutionCacheManager()
 				.getResolutionCacheRoot();
+		CACHE.put(key, new CachedResolutionCacheRoot(resolutionCacheRoot,
+				variableContainer.getUsedEnvVars()));
+		logger.println("Ivy resolution cache root not found in cache ("
+				+ CACHE_HITS.get() + " hits / " + lookups + " lookups)");
 		return resolutionCacheRoot;
 	}
 
-	private IvySettings getIvySettings(PrintStream logger) throws AbortException {
-		Message.setDefaultLogger(new IvyMessageImpl());
+	/**
+	 * @return a key that changes when the settings file, the property files
+	 *         or the branch change
+	 */
+	private String getCacheKey(File settingsLoc, List<File> propertyFiles) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(ivyBranch).append('|');
+		appendFile(sb, settingsLoc);
+		for (File file : propertyFiles) {
+			appendFile(sb, file);
+		}
+		return sb.toString();
+	}
+
+	private void appendFile(StringBuilder sb, File file) {
+		if (file == null) {
+			sb.append("<default>|");
+		} else {
+			sb.append(file.getAbsolutePath()).append(':')
+					.append(file.lastModified()).append(':')
+					.append(file.length()).append('|');
+		}
+	}
+
+	private File getSettingsFile() throws AbortException {
 		File settingsLoc = (ivySettingsFile == null) ? null : new File(
 				workspaceProper, ivySettingsFile);
 
@@ -101,7 +166,10 @@ public class GetResolutionCacheRootCallable implements
 					Messages.IvyModuleSetBuild_NoSuchIvySettingsFile(settingsLoc
 							.getAbsolutePath()));
 		}
+		return settingsLoc;
+	}
 
+	private List<File> getPropertyFiles() throws AbortException {
 		ArrayList<File> propertyFiles = new ArrayList<File>();
 		if (StringUtils.isNotBlank(ivySettingsPropertyFiles)) {
 			for (String file : ivySettingsPropertyFiles.split(",")) {
@@ -114,8 +182,15 @@ public class GetResolutionCacheRootCallable implements
 				propertyFiles.add(propertyFile);
 			}
 		}
+		return propertyFiles;
+	}
+
+	private IvySettings getIvySettings(PrintStream logger, File settingsLoc,
+			List<File> propertyFiles,
+			EnvVarsVariableContainer variableContainer) {
+		Message.setDefaultLogger(new IvyMessageImpl());
 		try {
-			IvySettings ivySettings = new IvySettings(new EnvVarsVariableContainer(envVars));
+			IvySettings ivySettings = new IvySettings(variableContainer);
 			for (File file : propertyFiles) {
 				ivySettings.loadProperties(file);
 			}
@@ -136,4 +211,30 @@ public class GetResolutionCacheRootCallable implements
 		return null;
 	}
 
+	private static class CachedResolutionCacheRoot {
+		private final File resolutionCacheRoot;
+		private final Map<String, String> usedEnvVars;
+
+		public CachedResolutionCacheRoot(File resolutionCacheRoot,
+				Map<String, String> usedEnvVars) {
+			this.resolutionCacheRoot = resolutionCacheRoot;
+			this.usedEnvVars = new LinkedHashMap<String, String>(usedEnvVars);
+		}
+
+		/**
+		 * @return true if the environment variables used by the settings did
+		 *         not change
+		 */
+		public boolean isValid(EnvVars envVars) {
+			for (Map.Entry<String, String> envVar : usedEnvVars.entrySet()) {
+				String value = envVars.get(envVar.getKey());
+				if (value == null ? envVar.getValue() != null : !value
+						.equals(envVar.getValue())) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+/**
+ * Level of detail of the dependency graph of a report. A graph that cannot be
+ * laid out before the layout deadline is retried at the next level.
+ */
+public enum GraphLevel {
+	/**
+	 * All the modules, as produced by ivy-report-dot.xsl
+	 */
+	FULL("Full graph"),
+	/**
+	 * Only the modules close to the root module
+	 */
+	DEPTH_LIMITED("Graph limited to the dependencies up to depth "
+			+ GraphLevel.MAX_DEPTH),
+	/**
+	 * A node per organisation
+	 */
+	ORGANISATIONS("Graph of the organisations"),
+	/**
+	 * No graph, only the html report
+	 */
+	NONE("No graph");
+
+	public static final int MAX_DEPTH = 3;
+
+	private final String description;
+
+	private GraphLevel(String description) {
+		this.description = description;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * @return the next level or null if this is the last one
+	 */
+	public GraphLevel next() {
+		return this == NONE ? null : values()[ordinal() + 1];
+	}
+
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How the dependency graph is reduced before it is laid out, see
+ * {@link DotReportWriter}. Fewer nodes and edges are much quicker to lay out
+ * and easier to read.
+ */
+public class GraphReduction implements Serializable {
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The graph of ivy-report-dot.xsl
+	 */
+	public static final GraphReduction NONE = new GraphReduction(false,
+			false, false, 0);
+	private final boolean transitiveReduction;
+	private final boolean clusterOrganisations;
+	private final boolean hideEvicted;
+	private final int maxDepth;
+
+	/**
+	 * @param transitiveReduction
+	 *            remove the dependencies that are also reachable through
+	 *            other dependencies
+	 * @param clusterOrganisations
+	 *            a node per organisation instead of a node per module
+	 * @param hideEvicted
+	 *            hide the evicted revisions and the modules that only have
+	 *            evicted revisions
+	 * @param maxDepth
+	 *            only the modules up to this depth from the root module, 0
+	 *            for all of them
+	 */
+	public GraphReduction(boolean transitiveReduction,
+			boolean clusterOrganisations, boolean hideEvicted, int maxDepth) {
+		this.transitiveReduction = transitiveReduction;
+		this.clusterOrganisations = clusterOrganisations;
+		this.hideEvicted = hideEvicted;
+		this.maxDepth = maxDepth < 0 ? 0 : maxDepth;
+	}
+
+	public boolean isTransitiveReduction() {
+		return transitiveReduction;
+	}
+
+	public boolean isClusterOrganisations() {
+		return clusterOrganisations;
+	}
+
+	public boolean isHideEvicted() {
+		return hideEvicted;
+	}
+
+	/**
+	 * @return the maximum depth from the root module or 0 if there is none
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * @return true if the graph is not reduced
+	 */
+	public boolean isNone() {
+		return !transitiveReduction && !clusterOrganisations && !hideEvicted
+				&& maxDepth == 0;
+	}
+
+	/**
+	 * @return this reduction, further reduced to reach a graph level
+	 */
+	public GraphReduction forLevel(GraphLevel graphLevel) {
+		switch (graphLevel) {
+		case DEPTH_LIMITED:
+			return new GraphReduction(transitiveReduction,
+					clusterOrganisations, hideEvicted,
+					maxDepth == 0 ? GraphLevel.MAX_DEPTH : Math.min(maxDepth,
+							GraphLevel.MAX_DEPTH));
+		case ORGANISATIONS:
+			return new GraphReduction(transitiveReduction, true, hideEvicted,
+					maxDepth);
+		default:
+			return this;
+		}
+	}
+
+	/**
+	 * @return the reductions, for humans
+	 */
+	public String getDescription() {
+		List<String> reductions = new ArrayList<String>();
+		if (transitiveReduction) {
+			reductions.add("transitive reduction");
+		}
+		if (clusterOrganisations) {
+			reductions.add("organisations");
+		}
+		if (hideEvicted) {
+			reductions.add("evicted revisions hidden");
+		}
+		if (maxDepth > 0) {
+			reductions.add("depth " + maxDepth);
+		}
+		if (reductions.isEmpty()) {
+			return "none";
+		}
+		StringBuilder sb = new StringBuilder();
+		for (String reduction : reductions) {
+			if (sb.length() > 0) {
+				sb.append(", ");
+			}
+			sb.append(reduction);
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return getDescription();
+	}
+
+}
@@ -0,0 +1,922 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.util.BitSet;
+
+/**
+ * Writes the html report of a configuration from a {@link ResolveReport}.
+ * <p>
+ * The output is the one of ivy-report.xsl, but dependencies of a module
+ * revision are looked up in the index of the report instead of being searched
+ * among all the callers of the report for each row.
+ * <p>
+ * When a subtree url is set, the dependencies of a module revision are only
+ * written the first time the revision is met. Other occurrences get an expand
+ * link that fetches the rows from the url, so that the size of the page
+ * depends on the number of module revisions instead of the number of paths.
+ * <p>
+ * A paged report does not contain the dependencies overview and details :
+ * the modules are listed from a json data file, see
+ * {@link ReportDataWriter}, and the details of a module are fetched when it
+ * is opened, see {@link #writeModule(int)}.
+ */
+public class HtmlReportWriter {
+	private static final String EXPAND_SCRIPT = "function ivyReportExpand(link, url) {\n"
+			+ "  var request = new XMLHttpRequest();\n"
+			+ "  request.onreadystatechange = function() {\n"
+			+ "    if (request.readyState != 4) return;\n"
+			+ "    if (request.status != 200) { window.location.href = link.href; return; }\n"
+			+ "    var row = link.parentNode.parentNode;\n"
+			+ "    var table = document.createElement('div');\n"
+			+ "    table.innerHTML = '<table><tbody>' + request.responseText + '</tbody></table>';\n"
+			+ "    var rows = table.getElementsByTagName('tbody')[0].rows;\n"
+			+ "    while (rows.length > 0) {\n"
+			+ "      var next = rows[rows.length - 1];\n"
+			+ "      row.parentNode.insertBefore(next, row.nextSibling);\n"
+			+ "    }\n"
+			+ "    link.parentNode.removeChild(link);\n"
+			+ "  };\n"
+			+ "  request.open('GET', url, true);\n"
+			+ "  request.send(null);\n"
+			+ "  return false;\n"
+			+ "}\n";
+	private final ResolveReport report;
+	private final String confs;
+	private final String extension;
+	private final Writer out;
+	private String subtreeUrl;
+	private String changesUrl;
+	private String assetsUrl = "";
+	private GraphLevel graphLevel = GraphLevel.FULL;
+	private GraphReduction graphReduction = GraphReduction.NONE;
+	private String dataUrl;
+	private String searchIndexUrl;
+	private String moduleUrl;
+	private BitSet expanded;
+
+	/**
+	 * @param confs
+	 *            coma separated list of the configurations of the menu
+	 * @param extension
+	 *            extension of the reports of the other configurations
+	 */
+	public HtmlReportWriter(ResolveReport report, String confs,
+			String extension, Writer out) {
+		this.report = report;
+		this.confs = confs == null ? value(report.getConfs()) : confs;
+		this.extension = extension;
+		this.out = out;
+	}
+
+	/**
+	 * Collapse the subtrees of the dependency tables that have already been
+	 * written.
+	 * 
+	 * @param subtreeUrl
+	 *            url of the rows of a collapsed subtree, relative to the html
+	 *            report. revision, callstack and indent request parameters are
+	 *            appended to it.
+	 */
+	public void setSubtreeUrl(String subtreeUrl) {
+		this.subtreeUrl = subtreeUrl;
+	}
+
+	/**
+	 * Link the report to the changes of the dependencies since the previous
+	 * report
+	 */
+	public void setChangesUrl(String changesUrl) {
+		this.changesUrl = changesUrl;
+	}
+
+	/**
+	 * @param assetsUrl
+	 *            url of the images and css of the report, ending with a '/'.
+	 *            By default they are next to the report.
+	 */
+	public void setAssetsUrl(String assetsUrl) {
+		this.assetsUrl = assetsUrl;
+	}
+
+	/**
+	 * Set the level of detail of the dependency graph, see
+	 * {@link GraphLevel}. There is no graph at {@link GraphLevel#NONE}.
+	 */
+	public void setGraphLevel(GraphLevel graphLevel) {
+		this.graphLevel = graphLevel;
+	}
+
+	/**
+	 * Set how the dependency graph has been reduced, see
+	 * {@link GraphReduction}
+	 */
+	public void setGraphReduction(GraphReduction graphReduction) {
+		this.graphReduction = graphReduction;
+	}
+
+	/**
+	 * Write a paged report, for the reports too large to be displayed as a
+	 * single page
+	 * 
+	 * @param dataUrl
+	 *            url of the data of the modules, see
+	 *            {@link ReportDataWriter#writeData(Writer)}
+	 * @param searchIndexUrl
+	 *            url of the search index, see
+	 *            {@link ReportDataWriter#writeSearchIndex(Writer)}
+	 * @param moduleUrl
+	 *            url of the details of a module, relative to the html report.
+	 *            The index of the module is appended to it.
+	 */
+	public void setPaged(String dataUrl, String searchIndexUrl,
+			String moduleUrl) {
+		this.dataUrl = dataUrl;
+		this.searchIndexUrl = searchIndexUrl;
+		this.moduleUrl = moduleUrl;
+	}
+
+	public void write() throws IOException {
+		expanded = new BitSet(report.getRevisionCount());
+		String organisation = value(report.getOrganisation());
+		String module = value(report.getModule());
+		String conf = value(report.getConf());
+
+		out.write("<html>\n<head>\n");
+		out.write("<META http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\">\n");
+		out.write("<title>Ivy report :: ");
+		text(module);
+		out.write(" by ");
+		text(organisation);
+		out.write(" :: ");
+		text(conf);
+		out.write("</title>\n");
+		out.write("<meta http-equiv=\"content-type\" content=\"text/html; charset=ISO-8859-1\">\n");
+		out.write("<meta http-equiv=\"content-language\" content=\"en\">\n");
+		out.write("<meta name=\"robots\" content=\"index,follow\">\n");
+		out.write("<link rel=\"stylesheet\" type=\"text/css\" href=\"");
+		attribute(assetsUrl + "ivy-report.css");
+		out.write("\">\n");
+		if (subtreeUrl != null) {
+			out.write("<script type=\"text/javascript\">\n");
+			out.write(EXPAND_SCRIPT);
+			out.write("</script>\n");
+		}
+		if (dataUrl != null) {
+			out.write("<script type=\"text/javascript\" src=\"");
+			attribute(assetsUrl + "ivy-report-paged.js");
+			out.write("\"></script>\n");
+		}
+		out.write("</head>\n<body>\n");
+		out.write("<div id=\"logo\"><a href=\"http://ant.apache.org/ivy/\"><img src=\"");
+		attribute(assetsUrl + "logo.svg");
+		out.write("\"></a></div>\n");
+		out.write("<h1><a name=\"");
+		attribute(organisation + "-" + module);
+		out.write("\"></a><span id=\"module\">");
+		text(module + " " + value(report.getRevision()));
+		out.write("</span> by <span id=\"organisation\">");
+		text(organisation);
+		out.write("</span></h1>\n");
+		out.write("<div id=\"date\">resolved on ");
+		writeDate(value(report.getDate()));
+		out.write("</div>\n");
+		if (changesUrl != null) {
+			out.write("<div id=\"changes\"><a href=\"");
+			attribute(changesUrl);
+			out.write("\">changes since previous report</a></div>\n");
+		}
+		out.write("<ul id=\"confmenu\">\n");
+		writeConfs();
+		out.write("</ul>\n");
+
+		out.write("<div id=\"content\">\n");
+		writeGraph(organisation, module, conf);
+		writeStats();
+		writeErrors();
+		writeConflicts();
+		if (dataUrl != null) {
+			writeModuleBrowser();
+		} else {
+			out.write("<h2>Dependencies Overview</h2>\n");
+			writeCalling(report.getDependencyKey(organisation, module,
+					value(report.getRevision())), organisation, module);
+			out.write("<h2>Details</h2>\n");
+			for (int m = 0; m < report.getModuleCount(); m++) {
+				writeModuleDetails(m);
+			}
+		}
+		out.write("</div>\n</body>\n</html>\n");
+		out.flush();
+	}
+
+	/**
+	 * Write the details of a module of a paged report
+	 */
+	public void writeModule(int module) throws IOException {
+		expanded = new BitSet(report.getRevisionCount());
+		writeModuleDetails(module);
+		out.flush();
+	}
+
+	private void writeModuleBrowser() throws IOException {
+		out.write("<h2>Modules</h2>\n<p><input type=\"text\" id=\"modulesearch\" size=\"40\" placeholder=\"Search modules\"> <span id=\"modulecount\"></span></p>\n");
+		out.write("<div id=\"modules\" style=\"height:440px;overflow:auto;position:relative;\"></div>\n");
+		out.write("<div id=\"moduledetails\"></div>\n");
+		out.write("<script type=\"text/javascript\">ivyReportModules('");
+		out.write(escapeScript(dataUrl));
+		out.write("', '");
+		out.write(escapeScript(searchIndexUrl));
+		out.write("', '");
+		out.write(escapeScript(moduleUrl));
+		out.write("', '");
+		out.write(escapeScript(assetsUrl));
+		out.write("');</script>\n");
+	}
+
+	private void writeConfs() throws IOException {
+		String configurations = confs;
+		while (true) {
+			int index = configurations.indexOf(',');
+			if (index == -1) {
+				writeConf(normalizeSpace(configurations));
+				return;
+			}
+			writeConf(normalizeSpace(configurations.substring(0, index)));
+			configurations = configurations.substring(index + 1);
+		}
+	}
+
+	private void writeConf(String conf) throws IOException {
+		out.write("<li><a ");
+		if (conf.equals(report.getConf())) {
+			out.write("class=\"active\" ");
+		}
+		out.write("href=\"");
+		attribute(value(report.getOrganisation()) + "-"
+				+ value(report.getModule()) + "-" + conf + "." + extension);
+		out.write("\">");
+		text(conf);
+		out.write("</a></li>\n");
+	}
+
+	private void writeDate(String date) throws IOException {
+		text(substring(date, 1, 4) + "-" + substring(date, 5, 2) + "-"
+				+ substring(date, 7, 2) + " " + substring(date, 9, 2) + ":"
+				+ substring(date, 11, 2) + ":"
+				+ substring(date, 13, date.length()));
+	}
+
+	private void writeGraph(String organisation, String module, String conf)
+			throws IOException {
+		out.write("<h2>Dependency graph</h2>\n");
+		if (graphLevel != GraphLevel.FULL) {
+			out.write("<p class=\"graphlevel\">");
+			text(graphLevel.getDescription()
+					+ ", the full graph could not be laid out in time");
+			out.write("</p>\n");
+		}
+		if (graphLevel != GraphLevel.NONE && !graphReduction.isNone()) {
+			out.write("<p class=\"graphreduction\">Graph reduced : ");
+			text(graphReduction.getDescription());
+			out.write("</p>\n");
+		}
+		if (graphLevel != GraphLevel.NONE) {
+			out.write("<p><img src=\"");
+			attribute(organisation + "-" + module + "-" + conf + ".svg");
+			out.write("\"></p>\n");
+		}
+	}
+
+	private void writeStats() throws IOException {
+		int searcheds = 0;
+		int downloadeds = 0;
+		int evicteds = 0;
+		int errors = 0;
+		for (int r = 0; r < report.getRevisionCount(); r++) {
+			if ("true".equals(report.getRevisionAttribute(r,
+					ResolveReport.REVISION_SEARCHED))) {
+				searcheds++;
+			}
+			if ("true".equals(report.getRevisionAttribute(r,
+					ResolveReport.REVISION_DOWNLOADED))) {
+				downloadeds++;
+			}
+			if (report.hasRevisionAttribute(r, ResolveReport.REVISION_EVICTED)) {
+				evicteds++;
+			}
+			if (report.hasRevisionAttribute(r, ResolveReport.REVISION_ERROR)) {
+				errors++;
+			}
+		}
+		int downloadedArtifacts = 0;
+		int failedArtifacts = 0;
+		double size = 0;
+		double downloadedSize = 0;
+		double cacheSize = 0;
+		for (int a = 0; a < report.getArtifactCount(); a++) {
+			String status = report.getArtifactAttribute(a,
+					ResolveReport.ARTIFACT_STATUS);
+			double artifactSize = size(a);
+			size += artifactSize;
+			if ("successful".equals(status)) {
+				downloadedArtifacts++;
+				downloadedSize += artifactSize;
+			} else if ("failed".equals(status)) {
+				failedArtifacts++;
+			} else if ("no".equals(status)) {
+				cacheSize += artifactSize;
+			}
+		}
+		out.write("<h2>Dependencies Stats</h2>\n<table class=\"header\">\n");
+		out.write("<tr><td class=\"title\">Modules</td><td class=\"value\">");
+		out.write(Integer.toString(report.getModuleCount()));
+		out.write("</td></tr>\n");
+		out.write("<tr><td class=\"title\">Revisions</td><td class=\"value\">");
+		out.write(report.getRevisionCount() + " (" + searcheds + " searched ");
+		writeIcon("searched", "searched",
+				"module revisions which required a search with a dependency resolver to be resolved");
+		out.write(", " + downloadeds + " downloaded ");
+		writeIcon("downloaded", "downloaded",
+				"module revisions for which ivy file was downloaded by dependency resolver");
+		out.write(", " + evicteds + " evicted ");
+		writeIcon("evicted", "evicted",
+				"module revisions which were evicted by others");
+		out.write(", " + errors + " errors ");
+		writeIcon("error", "error", "module revisions on which error occured");
+		out.write(")</td></tr>\n");
+		out.write("<tr><td class=\"title\">Artifacts</td><td class=\"value\">");
+		out.write(report.getArtifactCount() + " (" + downloadedArtifacts
+				+ " downloaded, " + failedArtifacts + " failed)");
+		out.write("</td></tr>\n");
+		out.write("<tr><td class=\"title\">Artifacts size</td><td class=\"value\">");
+		out.write(kiloBytes(size) + " kB (" + kiloBytes(downloadedSize)
+				+ " kB downloaded, " + kiloBytes(cacheSize) + " kB in cache)");
+		out.write("</td></tr>\n</table>\n");
+	}
+
+	private void writeErrors() throws IOException {
+		boolean first = true;
+		for (int r = 0; r < report.getRevisionCount(); r++) {
+			String error = report.getRevisionAttribute(r,
+					ResolveReport.REVISION_ERROR);
+			if (error == null) {
+				continue;
+			}
+			if (first) {
+				out.write("<h2>Errors</h2>\n<table class=\"errors\">\n");
+				out.write("<thead><tr><th>Module</th><th>Revision</th><th>Error</th></tr></thead>\n<tbody>\n");
+				first = false;
+			}
+			int m = report.getRevisionModule(r);
+			String organisation = value(report.getModuleOrganisation(m));
+			String module = value(report.getModuleName(m));
+			String revision = value(report.getRevisionAttribute(r,
+					ResolveReport.REVISION_NAME));
+			out.write("<tr><td>");
+			writeModuleLink(organisation, module, "");
+			out.write("</td><td>");
+			writeRevisionLink(organisation, module, revision, revision);
+			out.write("</td><td>");
+			text(error);
+			out.write("</td></tr>\n");
+		}
+		if (!first) {
+			out.write("</tbody>\n</table>\n");
+		}
+	}
+
+	private void writeConflicts() throws IOException {
+		boolean first = true;
+		for (int m = 0; m < report.getModuleCount(); m++) {
+			int firstRevision = report.getFirstRevision(m);
+			int endRevision = report.getEndRevision(m);
+			if (endRevision - firstRevision <= 1) {
+				continue;
+			}
+			if (first) {
+				out.write("<h2>Conflicts</h2>\n<table class=\"conflicts\">\n");
+				out.write("<thead><tr><th>Module</th><th>Selected</th><th>Evicted</th></tr></thead>\n<tbody>\n");
+				first = false;
+			}
+			String organisation = value(report.getModuleOrganisation(m));
+			String module = value(report.getModuleName(m));
+			out.write("<tr><td>");
+			writeModuleLink(organisation, module, "");
+			out.write("</td><td>");
+			for (int r = firstRevision; r < endRevision; r++) {
+				if (!report.hasRevisionAttribute(r,
+						ResolveReport.REVISION_EVICTED)) {
+					String revision = value(report.getRevisionAttribute(r,
+							ResolveReport.REVISION_NAME));
+					writeRevisionLink(organisation, module, revision, revision);
+					out.write(' ');
+				}
+			}
+			out.write("</td><td>");
+			for (int r = firstRevision; r < endRevision; r++) {
+				if (report.hasRevisionAttribute(r,
+						ResolveReport.REVISION_EVICTED)) {
+					String revision = value(report.getRevisionAttribute(r,
+							ResolveReport.REVISION_NAME));
+					writeRevisionLink(organisation, module, revision, revision
+							+ " "
+							+ value(report.getRevisionAttribute(r,
+									ResolveReport.REVISION_EVICTED_REASON)));
+					out.write(' ');
+				}
+			}
+			out.write("</td></tr>\n");
+		}
+		if (!first) {
+			out.write("</tbody>\n</table>\n");
+		}
+	}
+
+	/**
+	 * Write the rows of the dependencies of a revision whose subtree has been
+	 * collapsed
+	 * 
+	 * @param callstack
+	 *            the callstack of the row of the revision
+	 * @param indent
+	 *            the indentation level of the row of the revision
+	 */
+	public void writeSubtree(int revision, String callstack, int indent)
+			throws IOException {
+		expanded = new BitSet(report.getRevisionCount());
+		expanded.set(revision);
+		StringBuilder indentation = new StringBuilder();
+		for (int i = 0; i < indent; i++) {
+			indentation.append("---");
+		}
+		writeDependencies(new StringBuilder(callstack),
+				indentation.toString(), revision);
+		out.flush();
+	}
+
+	/**
+	 * Write the table of the dependencies of a module revision
+	 */
+	private void writeCalling(int dependencyKey, String organisation,
+			String module) throws IOException {
+		int first = report.getFirstDependency(dependencyKey);
+		int end = report.getEndDependency(dependencyKey);
+		if (first == end) {
+			out.write("<table><tr><td>No dependency</td></tr></table>\n");
+			return;
+		}
+		out.write("<table class=\"deps\">\n<thead><tr><th>Module</th><th>Revision</th><th>Status</th><th>Resolver</th><th>Default</th><th>Licenses</th><th>Size</th><th></th></tr></thead>\n<tbody>\n");
+		StringBuilder callstack = new StringBuilder();
+		callstack.append(organisation).append('/').append(module);
+		for (int d = first; d < end; d++) {
+			writeCalled(callstack, "",
+					report.getCallerRevision(report.getDependencyCaller(d)));
+		}
+		out.write("</tbody>\n</table>\n");
+	}
+
+	/**
+	 * Write the row of a dependency and, recursively, the ones of its own
+	 * dependencies.
+	 * 
+	 * @param callstack
+	 *            the modules of the path from the root, '#' separated. Like
+	 *            in the stylesheet, a module is not expanded if its name is a
+	 *            substring of the callstack.
+	 */
+	private void writeCalled(StringBuilder callstack, String indent,
+			int revision) throws IOException {
+		int m = report.getRevisionModule(revision);
+		String organisation = value(report.getModuleOrganisation(m));
+		String module = value(report.getModuleName(m));
+		String rev = value(report.getRevisionAttribute(revision,
+				ResolveReport.REVISION_NAME));
+		boolean collapsed = false;
+		if (subtreeUrl != null && hasDependencies(callstack, revision)) {
+			collapsed = expanded.get(revision);
+			expanded.set(revision);
+		}
+		out.write("<tr>\n<td>");
+		writeModuleLink(organisation, module, indent + " ");
+		if (collapsed) {
+			out.write(" <a class=\"expand\" href=\"");
+			attribute("#" + organisation + "-" + module + "-" + rev);
+			out.write("\" onclick=\"return ivyReportExpand(this, '");
+			attribute(subtreeUrl + "&revision=" + revision + "&callstack="
+					+ encode(callstack.toString()) + "&indent="
+					+ indent.length() / 3);
+			out.write("')\">[+]</a>");
+		}
+		out.write("</td>\n<td>");
+		writeRevisionLink(organisation, module, rev, rev);
+		out.write("</td>\n<td align=\"center\">");
+		text(value(report.getRevisionAttribute(revision,
+				ResolveReport.REVISION_STATUS)));
+		out.write("</td>\n<td align=\"center\">");
+		text(value(report.getRevisionAttribute(revision,
+				ResolveReport.REVISION_RESOLVER)));
+		out.write("</td>\n<td align=\"center\">");
+		text(value(report.getRevisionAttribute(revision,
+				ResolveReport.REVISION_DEFAULT)));
+		out.write("</td>\n<td align=\"center\">");
+		writeLicenses(revision);
+		out.write("</td>\n<td align=\"center\">");
+		out.write(kiloBytes(revisionSize(revision, null)));
+		out.write(" kB</td>\n<td align=\"center\">");
+		writeIcons(revision);
+		out.write("</td>\n</tr>\n");
+		if (!collapsed) {
+			writeDependencies(callstack, indent, revision);
+		}
+	}
+
+	/**
+	 * Write the rows of the dependencies of a revision, unless it is evicted
+	 * or its module is already in the callstack
+	 */
+	private void writeDependencies(StringBuilder callstack, String indent,
+			int revision) throws IOException {
+		if (!hasDependencies(callstack, revision)) {
+			return;
+		}
+		int m = report.getRevisionModule(revision);
+		String key = value(report.getModuleOrganisation(m)) + "/"
+				+ value(report.getModuleName(m));
+		int dependencyKey = report.getDependencyKey(revision);
+		int first = report.getFirstDependency(dependencyKey);
+		int end = report.getEndDependency(dependencyKey);
+		int length = callstack.length();
+		callstack.append('#').append(key);
+		String childIndent = indent + "---";
+		for (int d = first; d < end; d++) {
+			writeCalled(callstack, childIndent,
+					report.getCallerRevision(report.getDependencyCaller(d)));
+		}
+		callstack.setLength(length);
+	}
+
+	private boolean hasDependencies(StringBuilder callstack, int revision) {
+		if (report.hasRevisionAttribute(revision,
+				ResolveReport.REVISION_EVICTED)) {
+			return false;
+		}
+		int m = report.getRevisionModule(revision);
+		if (callstack.indexOf(value(report.getModuleOrganisation(m)) + "/"
+				+ value(report.getModuleName(m))) != -1) {
+			return false;
+		}
+		int dependencyKey = report.getDependencyKey(revision);
+		return report.getFirstDependency(dependencyKey) != report
+				.getEndDependency(dependencyKey);
+	}
+
+	private void writeLicenses(int revision) throws IOException {
+		for (int l = report.getFirstLicense(revision); l < report
+				.getEndLicense(revision); l++) {
+			out.write("<span style=\"padding-right:3px;\">");
+			String name = value(report.getLicenseAttribute(l,
+					ResolveReport.LICENSE_NAME));
+			String url = report.getLicenseAttribute(l,
+					ResolveReport.LICENSE_URL);
+			if (url != null) {
+				out.write("<a href=\"");
+				attribute(url);
+				out.write("\">");
+				text(name);
+				out.write("</a>");
+			} else {
+				text(name);
+			}
+			out.write("</span>");
+		}
+	}
+
+	private void writeIcons(int revision) throws IOException {
+		if ("true".equals(report.getRevisionAttribute(revision,
+				ResolveReport.REVISION_SEARCHED))) {
+			writeIcon("searched", "searched", "required a search in repository");
+		}
+		if ("true".equals(report.getRevisionAttribute(revision,
+				ResolveReport.REVISION_DOWNLOADED))) {
+			writeIcon("downloaded", "downloaded", "downloaded from repository");
+		}
+		if (report.hasRevisionAttribute(revision,
+				ResolveReport.REVISION_EVICTED)) {
+			// the stylesheet does not separate the revisions
+			StringBuilder title = new StringBuilder("evicted by ");
+			for (int e = report.getFirstEvictedBy(revision); e < report
+					.getEndEvictedBy(revision); e++) {
+				title.append(value(report.getEvictedByRev(e)));
+			}
+			writeIcon("evicted", "evicted", title.toString());
+		}
+		String error = report.getRevisionAttribute(revision,
+				ResolveReport.REVISION_ERROR);
+		if (error != null) {
+			writeIcon("error", "error", "error: " + error);
+		}
+	}
+
+	private void writeIcon(String image, String alt, String title)
+			throws IOException {
+		out.write("<img src=\"");
+		attribute(assetsUrl + image + ".svg");
+		out.write("\" alt=\"");
+		attribute(alt);
+		out.write("\" title=\"");
+		attribute(title);
+		out.write("\">");
+	}
+
+	private void writeModuleDetails(int m) throws IOException {
+		String organisation = value(report.getModuleOrganisation(m));
+		String module = value(report.getModuleName(m));
+		out.write("<h3><a name=\"");
+		attribute(organisation + "-" + module);
+		out.write("\"></a>");
+		text(module + " by " + organisation);
+		out.write("</h3>\n");
+		for (int r = report.getFirstRevision(m); r < report.getEndRevision(m); r++) {
+			writeRevisionDetails(organisation, module, r);
+		}
+	}
+
+	private void writeRevisionDetails(String organisation, String module,
+			int r) throws IOException {
+		String rev = value(report.getRevisionAttribute(r,
+				ResolveReport.REVISION_NAME));
+		out.write("<h4><a name=\"");
+		attribute(organisation + "-" + module + "-" + rev);
+		out.write("\"></a> Revision: ");
+		text(rev);
+		out.write(" <span style=\"padding-left:15px;\">");
+		writeIcons(r);
+		out.write("</span></h4>\n<table class=\"header\">\n");
+		String homepage = report.getRevisionAttribute(r,
+				ResolveReport.REVISION_HOMEPAGE);
+		if (homepage != null) {
+			out.write("<tr><td class=\"title\">Home Page</td><td class=\"value\"><a href=\"");
+			attribute(homepage);
+			out.write("\">");
+			text(homepage);
+			out.write("</a></td></tr>\n");
+		}
+		writeHeaderRow("Status", ResolveReport.REVISION_STATUS, r);
+		writeHeaderRow("Publication", ResolveReport.REVISION_PUBDATE, r);
+		writeHeaderRow("Resolver", ResolveReport.REVISION_RESOLVER, r);
+		writeHeaderRow("Configurations", ResolveReport.REVISION_CONF, r);
+		out.write("<tr><td class=\"title\">Artifacts size</td><td class=\"value\">");
+		out.write(kiloBytes(revisionSize(r, null)) + " kB ("
+				+ kiloBytes(revisionSize(r, "successful"))
+				+ " kB downloaded, " + kiloBytes(revisionSize(r, "no"))
+				+ " kB in cache)");
+		out.write("</td></tr>\n");
+		if (report.getFirstLicense(r) != report.getEndLicense(r)) {
+			out.write("<tr><td class=\"title\">Licenses</td><td class=\"value\">");
+			writeLicenses(r);
+			out.write("</td></tr>\n");
+		}
+		String evicted = report.getRevisionAttribute(r,
+				ResolveReport.REVISION_EVICTED);
+		if (evicted != null) {
+			out.write("<tr><td class=\"title\">Evicted by</td><td class=\"value\"><b>");
+			for (int e = report.getFirstEvictedBy(r); e < report
+					.getEndEvictedBy(r); e++) {
+				text(value(report.getEvictedByRev(e)));
+				out.write(' ');
+			}
+			out.write("</b> <b>");
+			text(value(report.getRevisionAttribute(r,
+					ResolveReport.REVISION_EVICTED_REASON)));
+			out.write("</b> in <b>");
+			text(evicted);
+			out.write("</b> conflict manager</td></tr>\n");
+		}
+		out.write("</table>\n");
+
+		out.write("<h5>Required by</h5>\n<table>\n");
+		out.write("<thead><tr><th>Organisation</th><th>Name</th><th>Revision</th><th>In Configurations</th><th>Asked Revision</th></tr></thead>\n<tbody>\n");
+		for (int c = report.getFirstCaller(r); c < report.getEndCaller(r); c++) {
+			String callerOrganisation = value(report.getCallerAttribute(c,
+					ResolveReport.CALLER_ORGANISATION));
+			String callerName = value(report.getCallerAttribute(c,
+					ResolveReport.CALLER_NAME));
+			out.write("<tr><td>");
+			text(callerOrganisation);
+			out.write("</td><td><a href=\"");
+			attribute("#" + callerOrganisation + "-" + callerName);
+			out.write("\">");
+			text(callerName);
+			out.write("</a></td><td>");
+			text(value(report.getCallerAttribute(c,
+					ResolveReport.CALLER_CALLERREV)));
+			out.write("</td><td>");
+			text(value(report.getCallerAttribute(c, ResolveReport.CALLER_CONF)));
+			out.write("</td><td>");
+			text(value(report.getCallerAttribute(c, ResolveReport.CALLER_REV)));
+			out.write("</td></tr>\n");
+		}
+		out.write("</tbody>\n</table>\n");
+		if (evicted != null) {
+			return;
+		}
+
+		out.write("<h5>Dependencies</h5>\n");
+		writeCalling(report.getDependencyKey(r), organisation, module);
+		out.write("<h5>Artifacts</h5>\n");
+		int firstArtifact = report.getFirstArtifact(r);
+		int endArtifact = report.getEndArtifact(r);
+		if (firstArtifact == endArtifact) {
+			out.write("<table><tr><td>No artifact</td></tr></table>\n");
+			return;
+		}
+		out.write("<table>\n<thead><tr><th>Name</th><th>Type</th><th>Ext</th><th>Download</th><th>Size</th></tr></thead>\n<tbody>\n");
+		for (int a = firstArtifact; a < endArtifact; a++) {
+			out.write("<tr><td>");
+			text(value(report.getArtifactAttribute(a,
+					ResolveReport.ARTIFACT_NAME)));
+			out.write("</td><td>");
+			text(value(report.getArtifactAttribute(a,
+					ResolveReport.ARTIFACT_TYPE)));
+			out.write("</td><td>");
+			text(value(report.getArtifactAttribute(a,
+					ResolveReport.ARTIFACT_EXT)));
+			out.write("</td><td align=\"center\">");
+			text(value(report.getArtifactAttribute(a,
+					ResolveReport.ARTIFACT_STATUS)));
+			out.write("</td><td align=\"center\">");
+			// number(@size) is NaN when there is no size
+			out.write(kiloBytes(report.getArtifactSize(a)));
+			out.write(" kB</td></tr>\n");
+		}
+		out.write("</tbody>\n</table>\n");
+	}
+
+	private void writeHeaderRow(String title, int attribute, int revision)
+			throws IOException {
+		out.write("<tr><td class=\"title\">");
+		out.write(title);
+		out.write("</td><td class=\"value\">");
+		text(value(report.getRevisionAttribute(revision, attribute)));
+		out.write("</td></tr>\n");
+	}
+
+	private void writeModuleLink(String organisation, String module,
+			String prefix) throws IOException {
+		out.write("<a href=\"");
+		attribute("#" + organisation + "-" + module);
+		out.write("\">");
+		text(prefix + module + " by " + organisation);
+		out.write("</a>");
+	}
+
+	private void writeRevisionLink(String organisation, String module,
+			String revision, String label) throws IOException {
+		out.write("<a href=\"");
+		attribute("#" + organisation + "-" + module + "-" + revision);
+		out.write("\">");
+		text(label);
+		out.write("</a>");
+	}
+
+	/**
+	 * Sum of the sizes of the artifacts of a revision, like
+	 * sum(artifacts/artifact[@status=status]/@size)
+	 */
+	private double revisionSize(int revision, String status) {
+		double size = 0;
+		for (int a = report.getFirstArtifact(revision); a < report
+				.getEndArtifact(revision); a++) {
+			if (status == null
+					|| status.equals(report.getArtifactAttribute(a,
+							ResolveReport.ARTIFACT_STATUS))) {
+				size += size(a);
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the size of the artifact, 0 if it has none as it is then not
+	 *         part of the sum
+	 */
+	private double size(int artifact) {
+		return report.hasArtifactSize(artifact) ? report
+				.getArtifactSize(artifact) : 0;
+	}
+
+	/**
+	 * Same as xpath round(size div 1024)
+	 */
+	static String kiloBytes(double size) {
+		double kiloBytes = Math.floor(size / 1024 + 0.5);
+		if (Double.isNaN(kiloBytes)) {
+			return "NaN";
+		}
+		if (Double.isInfinite(kiloBytes)) {
+			return kiloBytes > 0 ? "Infinity" : "-Infinity";
+		}
+		return Long.toString((long) kiloBytes);
+	}
+
+	/**
+	 * Same as xpath substring(value, start, length)
+	 */
+	private static String substring(String value, int start, int length) {
+		int begin = Math.max(start - 1, 0);
+		int end = Math.min(start - 1 + length, value.length());
+		return begin >= end ? "" : value.substring(begin, end);
+	}
+
+	private static String encode(String value) {
+		try {
+			return URLEncoder.encode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Escape a value for a javascript string literal of a script element
+	 */
+	private static String escapeScript(String value) {
+		return value.replace("\\", "\\\\").replace("'", "\\'")
+				.replace("<", "\\x3c");
+	}
+
+	private static String normalizeSpace(String value) {
+		return value.trim().replaceAll("\\s+", " ");
+	}
+
+	private static String value(String value) {
+		return value == null ? "" : value;
+	}
+
+	private void text(String value) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '&':
+				out.write("&amp;");
+				break;
+			case '<':
+				out.write("&lt;");
+				break;
+			case '>':
+				out.write("&gt;");
+				break;
+			default:
+				out.write(c);
+			}
+		}
+	}
+
+	private void attribute(String value) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '&':
+				out.write("&amp;");
+				break;
+			case '"':
+				out.write("&quot;");
+				break;
+			case '<':
+				out.write("&lt;");
+				break;
+			case '>':
+				out.write("&gt;");
+				break;
+			default:
+				out.write(c);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Extension;
+import hudson.PluginWrapper;
+import hudson.Util;
+import hudson.model.Hudson;
+import hudson.model.UnprotectedRootAction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.ivy.plugins.report.XmlReportOutputter;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Serves the images, css and scripts of the html reports.
+ * <p>
+ * The url of the assets contains the plugin version, so that they can be
+ * cached forever by the browsers and shared by the reports of all the builds.
+ * The assets are also served under the url of each report, for the reports
+ * generated when the Jenkins url is not known.
+ */
+@Extension
+public class IvyReportAssets implements UnprotectedRootAction {
+	public static final String URL_NAME = "ivy-report-assets";
+	private static final String CSS = "ivy-report.css";
+	private static final String[] ASSETS = { "logo.svg", "searched.svg",
+			"downloaded.svg", "evicted.svg", "error.svg", "ivy-report-paged.js" };
+
+	public String getIconFileName() {
+		return null;
+	}
+
+	public String getDisplayName() {
+		return null;
+	}
+
+	public String getUrlName() {
+		return URL_NAME;
+	}
+
+	/**
+	 * Serve /&lt;version&gt;/&lt;asset&gt;
+	 */
+	public void doDynamic(StaplerRequest req, StaplerResponse rsp)
+			throws IOException {
+		serve(req, rsp, req.getRestOfPath());
+	}
+
+	/**
+	 * @param restOfPath
+	 *            /&lt;version&gt;/&lt;asset&gt;
+	 */
+	static void serve(StaplerRequest req, StaplerResponse rsp,
+			String restOfPath) throws IOException {
+		String[] path = restOfPath.split("/");
+		URL asset = path.length == 3 ? getAsset(path[2]) : null;
+		if (asset == null) {
+			rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		String version = getVersion();
+		if (version.equals(path[1])) {
+			String etag = "\"" + version + "\"";
+			rsp.setHeader("ETag", etag);
+			rsp.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+			if (etag.equals(req.getHeader("If-None-Match"))) {
+				rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+		} else {
+			// a report generated by another version of the plugin
+			rsp.setHeader("Cache-Control", "no-cache");
+		}
+		rsp.setContentType(CompressedReportServer.getContentType(path[2]));
+		InputStream in = asset.openStream();
+		try {
+			OutputStream out = rsp.getOutputStream();
+			IOUtils.copy(in, out);
+			out.flush();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static URL getAsset(String name) {
+		if (CSS.equals(name)) {
+			return XmlReportOutputter.class.getResource(CSS);
+		}
+		for (String asset : ASSETS) {
+			if (asset.equals(name)) {
+				return IvyReportAssets.class.getResource("assets/" + name);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the version part of the url of the assets
+	 */
+	public static String getVersion() {
+		PluginWrapper plugin = Hudson.getInstance().getPluginManager()
+				.getPlugin("ivy-report-plugin");
+		String version = plugin == null ? null : plugin.getVersion();
+		return version == null ? "unknown" : Util.rawEncode(version);
+	}
+
+	/**
+	 * @return the url of the assets for the html reports of a build, ending
+	 *         with a '/'. It is relative to the root of the server if the
+	 *         Jenkins url is configured or if a request is being served.
+	 *         Otherwise it is relative to the report, whose url can be the one
+	 *         of the build or the one of the project, and the assets are
+	 *         served by the report, see {@link IvyReportBuildAction}.
+	 */
+	public static String getUrl() {
+		String prefix = null;
+		String rootUrl = Hudson.getInstance().getRootUrl();
+		if (rootUrl != null) {
+			try {
+				prefix = new URL(rootUrl).getPath();
+				if (!prefix.endsWith("/")) {
+					prefix += "/";
+				}
+			} catch (IOException e) {
+				// use the url of the request or a relative url
+			}
+		}
+		StaplerRequest req = Stapler.getCurrentRequest();
+		if (prefix == null && req != null) {
+			prefix = req.getContextPath() + "/";
+		}
+		if (prefix == null) {
+			prefix = "";
+		}
+		return prefix + URL_NAME + "/" + getVersion() + "/";
+	}
+
+}
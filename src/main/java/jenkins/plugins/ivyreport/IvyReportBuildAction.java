@@ -27,14 +27,27 @@ import hudson.FilePath;
 import hudson.ivy.IvyModuleSetBuild;
 import hudson.model.Action;
 import hudson.model.DirectoryBrowserSupport;
+import hudson.model.Hudson;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.lang.ref.SoftReference;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
 
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
 
 /**
  * Action used to display the ivy report for the build
@@ -42,14 +55,159 @@ import org.kohsuke.stapler.StaplerResponse;
  * @author Cedric Chabanois (cchabanois at gmail.com)
  *
  */
+@ExportedBean
 public class IvyReportBuildAction implements Action {
 	private static final String ICON_FILENAME = "/plugin/ivy-report-plugin/ivyReport.png";
 	private final IvyModuleSetBuild build;
 	private final String indexFileName;
+	// only set when the report is rendered on demand
+	private final String resolveId;
+	private final String[] confs;
+	private final String graphRenderer;
+	private final GraphReduction graphReduction;
+	private final boolean pagedHtml;
+	private final boolean pending;
+	private String resolveReportsDigest;
+	private long generationTime;
+	private List<DependencySummary> summaries;
+	private PublishTimings timings;
+	private Map<String, GraphLevel> graphLevels;
+	private transient Map<String, SoftReference<ResolveReport>> resolveReports;
 	
 	public IvyReportBuildAction(IvyModuleSetBuild build, String indexFileName) {
 		this.build = build;
 		this.indexFileName = indexFileName;
+		this.resolveId = null;
+		this.confs = null;
+		this.graphRenderer = null;
+		this.graphReduction = null;
+		this.pagedHtml = false;
+		this.pending = false;
+	}
+
+	/**
+	 * Action for a report rendered when it is first viewed, from the resolve
+	 * reports archived with the build
+	 */
+	public IvyReportBuildAction(IvyModuleSetBuild build, String resolveId,
+			String[] confs, String graphRenderer,
+			GraphReduction graphReduction, boolean pagedHtml) {
+		this.build = build;
+		this.indexFileName = resolveId + "-" + confs[0] + ".html";
+		this.resolveId = resolveId;
+		this.confs = confs;
+		this.graphRenderer = graphRenderer;
+		this.graphReduction = graphReduction;
+		this.pagedHtml = pagedHtml;
+		this.pending = false;
+	}
+
+	/**
+	 * Action of a report queued to be published in the background. It is
+	 * replaced by the action of the report once published.
+	 */
+	public IvyReportBuildAction(IvyModuleSetBuild build) {
+		this.build = build;
+		this.indexFileName = null;
+		this.resolveId = null;
+		this.confs = null;
+		this.graphRenderer = null;
+		this.graphReduction = null;
+		this.pagedHtml = false;
+		this.pending = true;
+	}
+
+	public IvyModuleSetBuild getBuild() {
+		return build;
+	}
+
+	public String getIndexFileName() {
+		return indexFileName;
+	}
+
+	/**
+	 * @return true if the report has not been published yet
+	 */
+	@Exported
+	public boolean isPending() {
+		return pending;
+	}
+
+	/**
+	 * @return the directory of the archived resolve reports and, unless the
+	 *         report is rendered on demand, of the generated report
+	 */
+	public File getReportsDir() {
+		return dir();
+	}
+
+	/**
+	 * @return the digest of the resolve reports and rendering settings the
+	 *         report was generated from, or null if the report cannot be
+	 *         reused by the next builds
+	 */
+	public String getResolveReportsDigest() {
+		return resolveReportsDigest;
+	}
+
+	public void setResolveReportsDigest(String resolveReportsDigest) {
+		this.resolveReportsDigest = resolveReportsDigest;
+	}
+
+	/**
+	 * @return the time it took to generate the report, in ms
+	 */
+	public long getGenerationTime() {
+		return generationTime;
+	}
+
+	public void setGenerationTime(long generationTime) {
+		this.generationTime = generationTime;
+	}
+
+	/**
+	 * @return the summaries of the configurations of the report. Empty for
+	 *         the reports published before the summaries were computed.
+	 */
+	@Exported
+	public List<DependencySummary> getSummaries() {
+		if (summaries == null) {
+			return Collections.emptyList();
+		}
+		return summaries;
+	}
+
+	public void setSummaries(List<DependencySummary> summaries) {
+		this.summaries = summaries;
+	}
+
+	/**
+	 * @return the level of detail of the graph of each configuration whose
+	 *         report was generated at publish time
+	 */
+	@Exported
+	public Map<String, GraphLevel> getGraphLevels() {
+		if (graphLevels == null) {
+			return Collections.emptyMap();
+		}
+		return graphLevels;
+	}
+
+	public void setGraphLevels(Map<String, GraphLevel> graphLevels) {
+		this.graphLevels = graphLevels;
+	}
+
+	/**
+	 * @return the time spent in each phase of the publication of the report,
+	 *         null for the reports published before they were recorded
+	 */
+	@Exported
+	public PublishTimings getTimings() {
+		return timings;
+	}
+
+	public void setTimings(PublishTimings timings) {
+		this.timings = timings;
 	}
 
 	public String getUrlName() {
@@ -57,7 +215,7 @@ public class IvyReportBuildAction implements Action {
 	}
 
 	public String getDisplayName() {
-		return "Ivy report";
+		return pending ? "Ivy report (pending)" : "Ivy report";
 	}
 
 	public String getIconFileName() {
@@ -66,12 +224,199 @@ public class IvyReportBuildAction implements Action {
 
 	public void doDynamic(StaplerRequest req, StaplerResponse rsp)
 			throws IOException, ServletException {
+		serve(req, rsp, true);
+	}
+
+	/**
+	 * Serve a file of the report
+	 * 
+	 * @param buildUrl
+	 *            true if the request is for the url of the build, false for
+	 *            the url of the latest report of the project, which serves
+	 *            another build once a new report is published
+	 */
+	void serve(StaplerRequest req, StaplerResponse rsp, boolean buildUrl)
+			throws IOException, ServletException {
+		if (pending) {
+			rsp.forward(this, "pending", req);
+			return;
+		}
+		if (resolveId == null) {
+			serve(req, rsp, dir(), buildUrl);
+			return;
+		}
+		IvyReportPublisher.DescriptorImpl descriptor = Hudson.getInstance()
+				.getDescriptorByType(IvyReportPublisher.DescriptorImpl.class);
+		ReportRenderCache renderCache = descriptor.getRenderCache();
+		String key = getRenderKey(descriptor);
+		File renderedDir = getRenderedDir(descriptor, key);
+		try {
+			// rendered again when the settings change
+			serve(req, rsp, renderedDir, false);
+		} finally {
+			// the rendered report may be evicted once served
+			renderCache.release(key);
+		}
+	}
+
+	private void serve(StaplerRequest req, StaplerResponse rsp,
+			File reportsDir, boolean immutable) throws IOException,
+			ServletException {
+		String path = req.getRestOfPath();
+		if (path.equals("/")) {
+			path = "/" + indexFileName;
+		}
+		String assetsPath = "/" + IvyReportAssets.URL_NAME + "/";
+		if (path.startsWith(assetsPath)) {
+			// linked by the reports generated without the Jenkins url
+			IvyReportAssets.serve(req, rsp,
+					path.substring(assetsPath.length() - 1));
+			return;
+		}
+		if (path.startsWith("/")
+				&& CompressedReportServer.serve(req, rsp, reportsDir,
+						path.substring(1), immutable)) {
+			return;
+		}
 		DirectoryBrowserSupport directoryBrowserSupport = new DirectoryBrowserSupport(
-				this, new FilePath(dir()), getTitle(), null, false);
+				this, new FilePath(reportsDir), getTitle(), null, false);
 		directoryBrowserSupport.setIndexFileName(indexFileName);
 		directoryBrowserSupport.generateResponse(req, rsp, this);
 	}
 
+	/**
+	 * Serve the changes of the dependencies since the previous report
+	 */
+	public void doChanges(StaplerRequest req, StaplerResponse rsp)
+			throws IOException, ServletException {
+		if (!CompressedReportServer.serve(req, rsp, dir(),
+				ChangesReportWriter.FILE_NAME, true)) {
+			rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+		}
+	}
+
+	/**
+	 * Serve the rows of a subtree of a dependency table that has been
+	 * collapsed in the html report
+	 * 
+	 * @param report
+	 *            the name of the resolve report, without extension
+	 */
+	public void doSubtree(StaplerRequest req, StaplerResponse rsp,
+			@QueryParameter String report, @QueryParameter int revision,
+			@QueryParameter String callstack, @QueryParameter int indent)
+			throws IOException, ServletException {
+		ResolveReport resolveReport = getResolveReport(report);
+		if (resolveReport == null || revision < 0
+				|| revision >= resolveReport.getRevisionCount() || indent < 0) {
+			rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		rsp.setContentType("text/html;charset=UTF-8");
+		Writer writer = rsp.getWriter();
+		new HtmlReportWriter(resolveReport, null, "html", writer)
+				.writeSubtree(revision, callstack == null ? "" : callstack,
+						indent);
+	}
+
+	/**
+	 * Serve the details of a module of a paged html report
+	 * 
+	 * @param report
+	 *            the name of the resolve report, without extension
+	 * @param module
+	 *            the index of the module in the resolve report
+	 */
+	public void doModule(StaplerRequest req, StaplerResponse rsp,
+			@QueryParameter String report, @QueryParameter int module)
+			throws IOException, ServletException {
+		ResolveReport resolveReport = getResolveReport(report);
+		if (resolveReport == null || module < 0
+				|| module >= resolveReport.getModuleCount()) {
+			rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		rsp.setContentType("text/html;charset=UTF-8");
+		Writer writer = rsp.getWriter();
+		HtmlReportWriter htmlReportWriter = new HtmlReportWriter(
+				resolveReport, null, "html", writer);
+		htmlReportWriter.setAssetsUrl(IvyReportAssets.getUrl());
+		htmlReportWriter.setSubtreeUrl("subtree?report="
+				+ URLEncoder.encode(report, "UTF-8"));
+		htmlReportWriter.writeModule(module);
+	}
+
+	/**
+	 * @return the parsed resolve report or null if there is no such report
+	 */
+	private synchronized ResolveReport getResolveReport(String name)
+			throws IOException {
+		if (name == null || name.indexOf('/') != -1
+				|| name.indexOf('\\') != -1 || name.startsWith(".")) {
+			return null;
+		}
+		File file = new File(dir(), name + ".xml");
+		if (!file.isFile()) {
+			return null;
+		}
+		if (resolveReports == null) {
+			resolveReports = new HashMap<String, SoftReference<ResolveReport>>();
+		}
+		SoftReference<ResolveReport> reference = resolveReports.get(name);
+		ResolveReport resolveReport = reference == null ? null : reference
+				.get();
+		if (resolveReport == null) {
+			resolveReport = ResolveReport.parse(file);
+			resolveReports.put(name, new SoftReference<ResolveReport>(
+					resolveReport));
+		}
+		return resolveReport;
+	}
+
+	/**
+	 * @return the key of the report in the render cache, which changes with
+	 *         the settings the report is rendered with
+	 */
+	private String getRenderKey(IvyReportPublisher.DescriptorImpl descriptor) {
+		ResolveReportDigest digest = new ResolveReportDigest();
+		digest.add(dir().getAbsolutePath());
+		digest.add(IvyReportAssets.getVersion());
+		descriptor.addSettings(digest, graphRenderer, getGraphReduction(),
+				pagedHtml, IvyReportAssets.getUrl());
+		return digest.digest();
+	}
+
+	private GraphReduction getGraphReduction() {
+		return graphReduction == null ? GraphReduction.NONE : graphReduction;
+	}
+
+	/**
+	 * @return the directory of the report rendered from the archived resolve
+	 *         reports, which must be released once served
+	 */
+	private File getRenderedDir(
+			final IvyReportPublisher.DescriptorImpl descriptor, String key)
+			throws IOException {
+		try {
+			return descriptor.getRenderCache().acquire(key,
+					new ReportRenderCache.Renderer() {
+						public void render(File targetDir) throws IOException,
+								InterruptedException {
+							descriptor.createGenerator(resolveId, confs, dir(),
+									targetDir, graphRenderer,
+									getGraphReduction(), pagedHtml,
+									IvyReportAssets.getUrl())
+									.generateReports();
+						}
+					});
+		} catch (InterruptedException e) {
+			InterruptedIOException ioException = new InterruptedIOException(
+					"Interrupted while rendering the ivy report");
+			ioException.initCause(e);
+			throw ioException;
+		}
+	}
+
 	private File dir() {
 		return new File(build.getRootDir(), "ivyreport");
 	}
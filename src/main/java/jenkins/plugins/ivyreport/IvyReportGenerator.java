@@ -23,31 +23,47 @@
  */
 package jenkins.plugins.ivyreport;
 
-import hudson.Launcher;
-import hudson.model.Hudson;
-import hudson.util.LogTaskListener;
-
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.ivy.plugins.report.XmlReportOutputter;
-import org.apache.ivy.util.FileUtil;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.util.JAXPUtils;
 
@@ -57,36 +73,307 @@ import org.apache.tools.ant.util.JAXPUtils;
  * @author Cedric Chabanois (cchabanois at gmail.com)
  */
 public class IvyReportGenerator {
+	private static final int DOT_PIPE_SIZE = 64 * 1024;
+	private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+	private static final Timer LAYOUT_DEADLINES = new Timer(
+			"Ivy report layout deadlines", true);
 	private final Logger LOGGER = Logger.getLogger(IvyReportGenerator.class.getName());
 	private final String[] confs;
 	private final File targetDir;
 	private final String resolveId;
 	private final File resolutionCacheRoot;
-	private final Hudson hudson;
+	private final Map<String, Throwable> failures = new ConcurrentHashMap<String, Throwable>();
+	private final Map<String, DependencySummary> summaries = new ConcurrentHashMap<String, DependencySummary>();
+	private final Map<String, GraphLevel> graphLevels = new ConcurrentHashMap<String, GraphLevel>();
+	private PublishTimings timings = new PublishTimings();
+	private ExecutorService executor;
+	private GraphRenderer graphRenderer;
+	private boolean keepDotFiles;
+	private boolean compress;
+	private long layoutTimeout;
+	private GraphReduction graphReduction = GraphReduction.NONE;
+	private boolean pagedHtml;
+	
+	private File htmlStylesheet;
+	private String assetsUrl = "";
+	private Map<String, ResolveReport> resolveReports = Collections
+			.emptyMap();
 	
-	public IvyReportGenerator(Hudson hudson, String resolveId, String[] confs,
+	public IvyReportGenerator(String resolveId, String[] confs,
 			File resolutionCacheRoot, File targetDir) {
-		this.hudson = hudson;
 		this.confs = confs;
 		this.targetDir = targetDir;
 		this.resolveId = resolveId;
 		this.resolutionCacheRoot = resolutionCacheRoot;
 	}
 
+	/**
+	 * Set the executor used to generate the reports of the different
+	 * configurations concurrently. If not set, configurations are generated
+	 * one after the other.
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Set the renderer used to lay out the dependency graphs. If not set, dot
+	 * is used.
+	 */
+	public void setGraphRenderer(GraphRenderer graphRenderer) {
+		this.graphRenderer = graphRenderer;
+	}
+
+	/**
+	 * Set the stylesheet used to generate the html reports. If not set, they
+	 * are written by {@link HtmlReportWriter}.
+	 */
+	public void setHtmlStylesheet(File htmlStylesheet) {
+		this.htmlStylesheet = htmlStylesheet;
+	}
+
+	/**
+	 * Set the resolve reports already parsed by the caller, by configuration.
+	 * The reports of the other configurations are parsed from the resolution
+	 * cache.
+	 */
+	public void setResolveReports(Map<String, ResolveReport> resolveReports) {
+		this.resolveReports = resolveReports;
+	}
+
+	/**
+	 * Set the url of the images and css used by the html reports, see
+	 * {@link IvyReportAssets}
+	 */
+	public void setAssetsUrl(String assetsUrl) {
+		this.assetsUrl = assetsUrl;
+	}
+
+	/**
+	 * Keep the generated dot files. They are only needed to debug the
+	 * rendering of the graphs.
+	 */
+	public void setKeepDotFiles(boolean keepDotFiles) {
+		this.keepDotFiles = keepDotFiles;
+	}
+
+	/**
+	 * Write the html reports and graphs gzip compressed, with a
+	 * {@link CompressedReportServer#GZIP_EXTENSION} extension
+	 */
+	public void setCompress(boolean compress) {
+		this.compress = compress;
+	}
+
+	/**
+	 * Set the time given to the renderer to lay out the graph of a
+	 * configuration, in milliseconds. When it expires, the layout is
+	 * interrupted and retried with a reduced graph, see {@link GraphLevel}.
+	 * No deadline if 0.
+	 */
+	public void setLayoutTimeout(long layoutTimeout) {
+		this.layoutTimeout = layoutTimeout;
+	}
+
+	/**
+	 * Set how the dependency graphs are reduced before they are laid out. If
+	 * not set, they are written by ivy-report-dot.xsl.
+	 */
+	public void setGraphReduction(GraphReduction graphReduction) {
+		this.graphReduction = graphReduction;
+	}
+
+	/**
+	 * Write paged html reports, with the data of the modules in json files,
+	 * for the reports too large to be displayed as a single page. Not used
+	 * with a custom stylesheet.
+	 */
+	public void setPagedHtml(boolean pagedHtml) {
+		this.pagedHtml = pagedHtml;
+	}
+
+	/**
+	 * @return the configurations for which report generation failed, with the
+	 *         cause of the failure
+	 */
+	public Map<String, Throwable> getFailures() {
+		return Collections.unmodifiableMap(failures);
+	}
+
+	/**
+	 * @return the summaries of the configurations for which the resolve report
+	 *         could be read, in the order of the configurations
+	 */
+	public List<DependencySummary> getSummaries() {
+		List<DependencySummary> result = new ArrayList<DependencySummary>();
+		for (String conf : confs) {
+			DependencySummary summary = summaries.get(conf);
+			if (summary != null) {
+				result.add(summary);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the level of detail of the graph of each configuration, in the
+	 *         order of the configurations
+	 */
+	public Map<String, GraphLevel> getGraphLevels() {
+		Map<String, GraphLevel> result = new LinkedHashMap<String, GraphLevel>();
+		for (String conf : confs) {
+			GraphLevel graphLevel = graphLevels.get(conf);
+			if (graphLevel != null) {
+				result.put(conf, graphLevel);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the time spent parsing, writing the html and rendering the graph
+	 *         of each configuration, with the size of the files
+	 */
+	public PublishTimings getTimings() {
+		return timings;
+	}
+
+	/**
+	 * Generate the reports for all the configurations. A configuration that
+	 * cannot be generated does not prevent the other ones from being
+	 * generated, see {@link #getFailures()}.
+	 * 
+	 * @return the html report of the first configuration that could be
+	 *         generated. When compressing, this is the name of the report
+	 *         without the gzip extension.
+	 */
 	public File generateReports() throws IOException, InterruptedException {
-		File htmlReport = genHtmlReport();
-		File[] dotFiles = genDotFiles();
-		genSvgFiles(dotFiles);
-		delete(dotFiles);
+		final Templates htmlTemplates = getHtmlTemplates();
+		final Templates dotTemplates = getDotTemplates();
+		failures.clear();
+		summaries.clear();
+		graphLevels.clear();
+		timings = new PublishTimings();
+		List<Future<File>> futures = new ArrayList<Future<File>>();
+		for (final String conf : confs) {
+			Callable<File> task = new Callable<File>() {
+				public File call() throws Exception {
+					return generateReport(conf, htmlTemplates, dotTemplates);
+				}
+			};
+			FutureTask<File> future = new FutureTask<File>(task);
+			if (executor == null || confs.length == 1) {
+				future.run();
+			} else {
+				executor.execute(future);
+			}
+			futures.add(future);
+		}
+		File htmlReport = null;
+		try {
+			for (int i = 0; i < confs.length; i++) {
+				try {
+					File confHtmlReport = futures.get(i).get();
+					if (htmlReport == null) {
+						htmlReport = confHtmlReport;
+					}
+				} catch (ExecutionException e) {
+					LOGGER.log(Level.WARNING,
+							"Could not generate ivy report for configuration "
+									+ confs[i], e.getCause());
+					failures.put(confs[i], e.getCause());
+				}
+			}
+		} finally {
+			// only does something if we have been interrupted
+			for (Future<File> future : futures) {
+				future.cancel(true);
+			}
+		}
+		if (htmlReport == null) {
+			Throwable cause = failures.get(confs[0]);
+			IOException e = new IOException(cause.getMessage());
+			e.initCause(cause);
+			throw e;
+		}
 		return htmlReport;
 	}
 
-	private void delete(File[] files) {
-		for (File file : files) {
-			file.delete();
+	private File generateReport(String conf, Templates htmlTemplates,
+			Templates dotTemplates) throws IOException, InterruptedException {
+		File htmlFile;
+		// the summary is computed from the same parsing as the html report
+		long start = System.currentTimeMillis();
+		ResolveReport report = resolveReports.get(conf);
+		if (report == null) {
+			File reportFile = getReportFile(conf);
+			report = ResolveReport.parse(reportFile);
+			timings.add("parse", conf, start, reportFile.length());
 		}
+		summaries.put(conf, DependencySummary.compute(conf, report));
+		// the graph is rendered first so that the html report can tell when
+		// it has been reduced
+		GraphLevel graphLevel = renderGraph(report, dotTemplates, conf);
+		start = System.currentTimeMillis();
+		if (htmlTemplates != null) {
+			htmlFile = genStyled(htmlTemplates, conf, "html");
+		} else {
+			htmlFile = genHtml(report, conf, graphLevel);
+		}
+		timings.add(htmlTemplates != null ? "html stylesheet" : "html", conf,
+				start, getOutputSize(htmlFile));
+		return htmlFile;
 	}
-	
+
+	private File genHtml(ResolveReport report, String conf,
+			GraphLevel graphLevel) throws IOException {
+		File outFile = getOutputFile(conf, "html");
+		Writer writer = new BufferedWriter(new OutputStreamWriter(
+				openOutput(outFile), "UTF-8"));
+		try {
+			HtmlReportWriter htmlReportWriter = new HtmlReportWriter(report,
+					getConfsAsComaSeparatedString(), "html", writer);
+			htmlReportWriter.setAssetsUrl(assetsUrl);
+			htmlReportWriter.setGraphLevel(graphLevel);
+			htmlReportWriter.setGraphReduction(graphReduction);
+			if (pagedHtml) {
+				String name = resolveId + "-" + conf;
+				genData(report, conf);
+				htmlReportWriter.setPaged(name + ".json", name + ".search.json",
+						"module?report=" + URLEncoder.encode(name, "UTF-8")
+								+ "&module=");
+			}
+			htmlReportWriter.setChangesUrl("changes");
+			htmlReportWriter.setSubtreeUrl("subtree?report="
+					+ URLEncoder.encode(resolveId + "-" + conf, "UTF-8"));
+			htmlReportWriter.write();
+		} finally {
+			writer.close();
+		}
+		return outFile;
+	}
+
+	/**
+	 * Write the data and search index of a paged report
+	 */
+	private void genData(ResolveReport report, String conf) throws IOException {
+		ReportDataWriter reportDataWriter = new ReportDataWriter(report);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(
+				openOutput(getOutputFile(conf, "json")), "UTF-8"));
+		try {
+			reportDataWriter.writeData(writer);
+		} finally {
+			writer.close();
+		}
+		writer = new BufferedWriter(new OutputStreamWriter(
+				openOutput(getOutputFile(conf, "search.json")), "UTF-8"));
+		try {
+			reportDataWriter.writeSearchIndex(writer);
+		} finally {
+			writer.close();
+		}
+	}
+
 	private String getConfsAsComaSeparatedString() {
 		StringBuilder sb = new StringBuilder();
 		for (int i = 0; i < confs.length; i++) {
@@ -102,150 +389,311 @@ public class IvyReportGenerator {
 		return new File(resolutionCacheRoot, resolveId + "-" + conf + ".xml");
 	}
 
-	private File genHtmlReport() throws IOException {
-        File[] generatedHtmlFiles = genStyled(getHtmlXslFile(), "html");
-        File css = new File(targetDir, "ivy-report.css");
-        FileUtil.copy(XmlReportOutputter.class.getResourceAsStream("ivy-report.css"), css,
-                null);
-        return generatedHtmlFiles[0];
-	}
-	
-	private File[] genDotFiles() throws IOException {
-		return genStyled(getDotXslFile(), "dot");
+    private Templates getDotTemplates() throws IOException {
+    	return TemplatesCache.getInstance().getTemplates(
+    			XmlReportOutputter.class, "ivy-report-dot.xsl");
+    }
+
+    /**
+     * @return the custom stylesheet or null if the html report is written by
+     *         {@link HtmlReportWriter}, which produces the same output as
+     *         ivy-report.xsl
+     */
+    private Templates getHtmlTemplates() throws IOException {
+    	if (htmlStylesheet != null) {
+    		return TemplatesCache.getInstance().getTemplates(htmlStylesheet);
+    	}
+    	return null;
+    }
+    
+	/**
+	 * Render the graph of a configuration at the most detailed level that can
+	 * be laid out before the layout deadline. Only a deadline makes the graph
+	 * degrade, other failures are not retried.
+	 * 
+	 * @return the level of the rendered graph, {@link GraphLevel#NONE} if
+	 *         there is no graph
+	 */
+	private GraphLevel renderGraph(ResolveReport report,
+			Templates dotTemplates, String conf) throws IOException,
+			InterruptedException {
+		GraphLevel graphLevel = GraphLevel.FULL;
+		while (graphLevel != GraphLevel.NONE) {
+			// the dot is streamed to the renderer, they cannot be timed apart
+			long start = System.currentTimeMillis();
+			String phase = graphLevel == GraphLevel.FULL ? "dot and graph"
+					: "reduced dot and graph";
+			try {
+				File graphFile = renderGraph(report, dotTemplates, conf,
+						graphLevel);
+				timings.add(phase, conf, start, getOutputSize(graphFile));
+				break;
+			} catch (LayoutTimeoutException e) {
+				timings.add(phase, conf, start, 0);
+				// expected for large graphs, they fall back to a lower level
+				LOGGER.info(e.getMessage());
+				graphLevel = graphLevel.next();
+			}
+		}
+		if (graphLevel == GraphLevel.NONE) {
+			File graphFile = getOutputFile(conf, "svg");
+			graphFile.delete();
+			new File(graphFile.getPath() + CompressedReportServer.GZIP_EXTENSION)
+					.delete();
+		}
+		graphLevels.put(conf, graphLevel);
+		return graphLevel;
 	}
-	
-	private File[] genSvgFiles(File[] dotFiles) throws IOException, InterruptedException {
-		File[] svgFiles = new File[dotFiles.length];
-		for (int i = 0; i < dotFiles.length; i++) {
-			svgFiles[i] = runDot(dotFiles[i]);
+
+	/**
+	 * The dot is not written to disk : it is streamed to the renderer through
+	 * a bounded pipe while the stylesheet or the {@link DotReportWriter}
+	 * produces it.
+	 */
+	private File renderGraph(ResolveReport report, Templates dotTemplates,
+			String conf, GraphLevel graphLevel) throws IOException,
+			InterruptedException {
+		File outputFile = getOutputFile(conf, "svg");
+		PipedInputStream dotInput = new PipedInputStream(DOT_PIPE_SIZE);
+		OutputStream dotOutput = new PipedOutputStream(dotInput);
+		if (keepDotFiles) {
+			dotOutput = new TeeOutputStream(dotOutput, new FileOutputStream(
+					getOutputFile(conf, "dot")));
+		}
+		DotWriter dotWriter = new DotWriter(report, dotTemplates, conf,
+				graphLevel, dotOutput);
+		Thread dotWriterThread = new Thread(dotWriter,
+				"Ivy report dot writer for " + resolveId + "-" + conf);
+		dotWriterThread.start();
+		Deadline deadline = null;
+		if (layoutTimeout > 0) {
+			deadline = new Deadline(Thread.currentThread());
+			LAYOUT_DEADLINES.schedule(deadline, layoutTimeout);
+		}
+		IOException renderFailure = null;
+		boolean rendered = false;
+		boolean expired = false;
+		OutputStream output = null;
+		try {
+			output = openOutput(outputFile);
+			getGraphRenderer().render(dotInput, output);
+			rendered = true;
+		} catch (IOException e) {
+			renderFailure = e;
+		} catch (InterruptedException e) {
+			if (deadline == null || !deadline.finish()) {
+				throw e;
+			}
+		} finally {
+			if (deadline != null) {
+				expired = deadline.finish();
+				if (expired) {
+					// the interruption was only meant for the renderer
+					Thread.interrupted();
+					// stop reducing the graph
+					dotWriter.readerClosed();
+					dotWriterThread.interrupt();
+				}
+			}
+			if (output != null) {
+				output.close();
+			}
+			// unblock the dot writer if the renderer did not read everything
+			dotWriter.readerClosed();
+			dotInput.close();
+			dotWriterThread.join();
+		}
+		if (expired && !rendered) {
+			throw new LayoutTimeoutException("Could not lay out the graph of "
+					+ resolveId + "-" + conf + " at level " + graphLevel
+					+ " in " + layoutTimeout + " ms");
 		}
-		return svgFiles;
+		if (dotWriter.failure != null) {
+			// the renderer probably failed because the dot was incomplete
+			IOException e = new IOException("Could not generate dot : "
+					+ dotWriter.failure.getMessage());
+			e.initCause(dotWriter.failure);
+			throw e;
+		}
+		if (renderFailure != null) {
+			throw renderFailure;
+		}
+		return outputFile;
 	}
-	
-    private File getDotXslFile() throws IOException {
-        // style should be a file (and not an url)
-        File style = new File(resolutionCacheRoot, "ivy-report-dot.xsl");
-        FileUtil.copy(XmlReportOutputter.class.getResourceAsStream("ivy-report-dot.xsl"), style, null);
-        return style;
-    }	
-	
-    private File getHtmlXslFile() throws IOException {
-        // style should be a file (and not an url)    	
-    	File style = new File(resolutionCacheRoot, "ivy-report.xsl");
-        FileUtil.copy(this.getClass().getResourceAsStream("ivy-report.xsl"), style, null);
-        return style;
-    }
-    
-    private File runDot(File inputFile) throws IOException, InterruptedException {
-    	IvyReportPublisher.DescriptorImpl descriptor = hudson.getDescriptorByType(IvyReportPublisher.DescriptorImpl.class);
-    	String dotPath;
-    	if (descriptor != null) {
-    		dotPath = descriptor.getDotExeOrDefault();
-    	} else {
-    		dotPath = IvyReportPublisher.DescriptorImpl.getDefaultDotExe();	
+
+    private GraphRenderer getGraphRenderer() {
+    	if (graphRenderer != null) {
+    		return graphRenderer;
     	}
-    	Launcher launcher = hudson.createLauncher(new LogTaskListener(LOGGER, Level.CONFIG));
-    	File outputFile = new File(inputFile.getParentFile(), inputFile.getName().replace(".dot", ".svg"));
-    	InputStream input = null;
-    	OutputStream output = null;
-    	try {
-    		input = new FileInputStream(inputFile);
-    		output = new FileOutputStream(outputFile);
-            launcher.launch()
-                    .cmds(dotPath,"-T" + "svg")
-                    .stdin(input)
-                    .stdout(output).start().join();
-            return outputFile;
-        } catch (InterruptedException e) {
-            LOGGER.log(Level.SEVERE, "Interrupted while waiting for dot-file to be created",e);
-            throw e;
-        }
-        finally {
-            if (output != null) {
-                output.close();
-            }
-            if (input != null) {
-            	input.close();
-            }
-        }
+    	return new DotGraphRenderer(IvyReportPublisher.DescriptorImpl.getDefaultDotExe());
     }
 
-	private File[] genStyled(File style, String ext)
+	private File getOutputFile(String conf, String ext) {
+		File outFile = new File(targetDir, resolveId + "-" + conf + "." + ext);
+
+		// make sure the output directory exist
+		File outFileDir = outFile.getParentFile();
+		if (!outFileDir.exists()) {
+			if (!outFileDir.mkdirs()) {
+				throw new BuildException("Unable to create directory: "
+						+ outFileDir.getAbsolutePath());
+			}
+		}
+		return outFile;
+	}
+
+	private long getOutputSize(File file) {
+		if (compress) {
+			return new File(file.getPath() + CompressedReportServer.GZIP_EXTENSION)
+					.length();
+		}
+		return file.length();
+	}
+
+	/**
+	 * Open an output file, compressed if needed
+	 */
+	private OutputStream openOutput(File file) throws IOException {
+		if (compress) {
+			return new BufferedOutputStream(new GZIPOutputStream(
+					new FileOutputStream(file.getPath()
+							+ CompressedReportServer.GZIP_EXTENSION),
+					GZIP_BUFFER_SIZE));
+		}
+		return new BufferedOutputStream(new FileOutputStream(file));
+	}
+
+	private File genStyled(Templates templates, String conf, String ext)
 			throws IOException {
-		InputStream xsltStream = null;
+		File outFile = getOutputFile(conf, ext);
+		OutputStream outStream = openOutput(outFile);
 		try {
-			// create stream to stylesheet
-			xsltStream = new BufferedInputStream(new FileInputStream(style));
-			Source xsltSource = new StreamSource(xsltStream,
-					JAXPUtils.getSystemId(style));
+			transform(templates, conf, outStream);
+		} finally {
+			try {
+				outStream.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+		return outFile;
+	}
 
-			// create transformer
-			TransformerFactory tFactory = TransformerFactory.newInstance();
-			Transformer transformer = tFactory.newTransformer(xsltSource);
+	private void transform(Templates templates, String conf,
+			OutputStream outStream) throws IOException {
+		try {
+			// a transformer is cheap to create from the compiled stylesheet
+			// but is not thread safe
+			Transformer transformer = templates.newTransformer();
 
 			// add standard parameters
 			transformer.setParameter("confs", getConfsAsComaSeparatedString());
 			transformer.setParameter("extension", "html");
+			transformer.setParameter("assets", assetsUrl);
 
-			File[] generatedFiles = new File[confs.length];
 			// create the report
-			for (int i = 0; i < confs.length; i++) {
-				File reportFile = getReportFile(confs[i]);
-				File outFile = new File(targetDir, resolveId + "-" + confs[i]
-						+ "." + ext);
-				generatedFiles[i] = outFile;
-				
-				// make sure the output directory exist
-				File outFileDir = outFile.getParentFile();
-				if (!outFileDir.exists()) {
-					if (!outFileDir.mkdirs()) {
-						throw new BuildException("Unable to create directory: "
-								+ outFileDir.getAbsolutePath());
-					}
-				}
-
-				InputStream inStream = null;
-				OutputStream outStream = null;
-				try {
-					inStream = new BufferedInputStream(new FileInputStream(
-							reportFile));
-					outStream = new BufferedOutputStream(new FileOutputStream(
-							outFile));
-					StreamResult res = new StreamResult(outStream);
-					Source src = new StreamSource(inStream,
-							JAXPUtils.getSystemId(style));
-					transformer.transform(src, res);
-				} catch (TransformerException e) {
-					throw new BuildException(e);
-				} finally {
-					if (inStream != null) {
-						try {
-							inStream.close();
-						} catch (IOException e) {
-							// ignore
-						}
-					}
-					if (outStream != null) {
-						try {
-							outStream.close();
-						} catch (IOException e) {
-							// ignore
-						}
+			File reportFile = getReportFile(conf);
+			InputStream inStream = null;
+			try {
+				inStream = new BufferedInputStream(new FileInputStream(
+						reportFile));
+				StreamResult res = new StreamResult(outStream);
+				Source src = new StreamSource(inStream,
+						JAXPUtils.getSystemId(reportFile));
+				transformer.transform(src, res);
+			} catch (TransformerException e) {
+				throw new BuildException(e);
+			} finally {
+				if (inStream != null) {
+					try {
+						inStream.close();
+					} catch (IOException e) {
+						// ignore
 					}
 				}
 			}
-			return generatedFiles;
 		} catch (TransformerConfigurationException e) {
 			throw new BuildException(e);
-		} finally {
-			if (xsltStream != null) {
+		}
+	}
+
+	/**
+	 * Interrupt the rendering thread when the layout takes too long
+	 */
+	private static class Deadline extends TimerTask {
+		private final Thread thread;
+		private boolean finished;
+		private boolean expired;
+
+		public Deadline(Thread thread) {
+			this.thread = thread;
+		}
+
+		@Override
+		public synchronized void run() {
+			if (!finished) {
+				expired = true;
+				thread.interrupt();
+			}
+		}
+
+		/**
+		 * @return true if the rendering thread has been interrupted. It won't
+		 *         be after this call.
+		 */
+		public synchronized boolean finish() {
+			cancel();
+			finished = true;
+			return expired;
+		}
+	}
+
+	/**
+	 * Write the dot of a configuration to the renderer pipe
+	 */
+	private class DotWriter implements Runnable {
+		private final ResolveReport report;
+		private final Templates dotTemplates;
+		private final String conf;
+		private final GraphLevel graphLevel;
+		private final OutputStream output;
+		private volatile boolean readerClosed;
+		private volatile Throwable failure;
+
+		public DotWriter(ResolveReport report, Templates dotTemplates,
+				String conf, GraphLevel graphLevel, OutputStream output) {
+			this.report = report;
+			this.dotTemplates = dotTemplates;
+			this.conf = conf;
+			this.graphLevel = graphLevel;
+			this.output = output;
+		}
+
+		public void readerClosed() {
+			readerClosed = true;
+		}
+
+		public void run() {
+			try {
+				if (graphLevel == GraphLevel.FULL && graphReduction.isNone()) {
+					transform(dotTemplates, conf, output);
+				} else {
+					new DotReportWriter(report, graphReduction
+							.forLevel(graphLevel), new BufferedWriter(
+							new OutputStreamWriter(output, "UTF-8"))).write();
+				}
+			} catch (Throwable e) {
+				if (!readerClosed) {
+					failure = e;
+				}
+			} finally {
 				try {
-					xsltStream.close();
+					output.close();
 				} catch (IOException e) {
 					// ignore
 				}
 			}
 		}
 	}
-	
+
 }
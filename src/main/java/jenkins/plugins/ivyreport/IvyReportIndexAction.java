@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.model.Hudson;
+import hudson.model.Item;
+import hudson.model.RootAction;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+import org.kohsuke.stapler.export.Flavor;
+
+/**
+ * Find the jobs whose latest ivy report resolves a module, using the
+ * {@link DependencyIndex}.
+ * <p>
+ * The page has a search form and query?organisation=&amp;module=&amp;revision=
+ * returns the matching entries as json, or as xml with format=xml.
+ */
+@Extension
+public class IvyReportIndexAction implements RootAction {
+	private static final String ICON_FILENAME = "/plugin/ivy-report-plugin/ivyReport.png";
+	private static final Logger LOGGER = Logger
+			.getLogger(IvyReportIndexAction.class.getName());
+	private transient volatile Thread rebuildThread;
+
+	public String getIconFileName() {
+		return Hudson.getInstance().hasPermission(Hudson.READ) ? ICON_FILENAME
+				: null;
+	}
+
+	public String getDisplayName() {
+		return "Ivy dependencies";
+	}
+
+	public String getUrlName() {
+		return "ivy-report-index";
+	}
+
+	/**
+	 * @param revision
+	 *            the revision or null/empty for all the revisions
+	 * @return the entries of the jobs the current user can see
+	 */
+	public List<DependencyIndex.Entry> find(String organisation,
+			String module, String revision) {
+		List<DependencyIndex.Entry> result = new ArrayList<DependencyIndex.Entry>();
+		if (organisation == null || module == null) {
+			return result;
+		}
+		Hudson hudson = Hudson.getInstance();
+		for (DependencyIndex.Entry entry : DependencyIndex.getInstance().find(
+				organisation.trim(), module.trim(),
+				revision == null || revision.trim().length() == 0 ? null
+						: revision.trim())) {
+			AbstractProject<?, ?> project = hudson.getItemByFullName(
+					entry.getJob(), AbstractProject.class);
+			if (project != null && project.hasPermission(Item.READ)) {
+				result.add(entry);
+			}
+		}
+		return result;
+	}
+
+	public void doQuery(StaplerRequest req, StaplerResponse rsp,
+			@QueryParameter String organisation,
+			@QueryParameter String module, @QueryParameter String revision,
+			@QueryParameter String format) throws IOException,
+			ServletException {
+		Hudson.getInstance().checkPermission(Hudson.READ);
+		if (organisation == null || module == null) {
+			rsp.sendError(HttpServletResponse.SC_BAD_REQUEST,
+					"organisation and module are required");
+			return;
+		}
+		rsp.serveExposedBean(req, new QueryResult(find(organisation, module,
+				revision)), "xml".equals(format) ? Flavor.XML : Flavor.JSON);
+	}
+
+	public boolean isRebuilding() {
+		return rebuildThread != null;
+	}
+
+	/**
+	 * Rebuild the index from the reports of the builds, in the background
+	 */
+	public synchronized void doRebuild(StaplerRequest req, StaplerResponse rsp)
+			throws IOException, ServletException {
+		Hudson.getInstance().checkPermission(Hudson.ADMINISTER);
+		if (!"POST".equals(req.getMethod())) {
+			rsp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+			return;
+		}
+		if (rebuildThread == null) {
+			rebuildThread = new Thread("Ivy report dependency index rebuild") {
+				public void run() {
+					try {
+						DependencyIndex.getInstance().rebuild();
+					} catch (IOException e) {
+						LOGGER.log(Level.WARNING,
+								"Could not rebuild the dependency index", e);
+					} finally {
+						rebuildThread = null;
+					}
+				}
+			};
+			rebuildThread.start();
+		}
+		rsp.sendRedirect2(".");
+	}
+
+	@ExportedBean
+	public static class QueryResult {
+		private final List<DependencyIndex.Entry> entries;
+
+		public QueryResult(List<DependencyIndex.Entry> entries) {
+			this.entries = entries;
+		}
+
+		@Exported
+		public List<DependencyIndex.Entry> getEntries() {
+			return entries;
+		}
+	}
+
+}
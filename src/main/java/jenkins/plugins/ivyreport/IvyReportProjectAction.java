@@ -23,15 +23,30 @@
  */
 package jenkins.plugins.ivyreport;
 
+import hudson.Extension;
 import hudson.ivy.IvyModuleSet;
 import hudson.model.Action;
 import hudson.model.Result;
+import hudson.model.TaskListener;
 import hudson.model.AbstractBuild;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
 
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
@@ -44,6 +59,17 @@ import org.kohsuke.stapler.StaplerResponse;
 public class IvyReportProjectAction implements Action {
 	private final IvyModuleSet project;
 	private static final String ICON_FILENAME = "/plugin/ivy-report-plugin/ivyReport.png";
+	private static final Logger LOGGER = Logger
+			.getLogger(IvyReportProjectAction.class.getName());
+	private static final int NO_BUILD = -1;
+
+	/**
+	 * Number of the latest build with an ivy report for each project, or
+	 * {@link #NO_BUILD}. Projects that are not in the map have not been looked
+	 * up since startup (or their latest build was deleted).
+	 */
+	private static final Map<IvyModuleSet, Integer> LATEST_BUILDS = Collections
+			.synchronizedMap(new WeakHashMap<IvyModuleSet, Integer>());
 	
 	public IvyReportProjectAction(IvyModuleSet ivyModuleSet) {
 		this.project = ivyModuleSet;
@@ -64,23 +90,223 @@ public class IvyReportProjectAction implements Action {
 		return "ivyreport";
 	} 
 
+	public IvyModuleSet getProject() {
+		return project;
+	}
+
+	/**
+	 * @return the metrics of the trend charts
+	 */
+	public List<String> getTrendMetrics() {
+		return Arrays.asList(DependencyTrend.METRICS);
+	}
+
+	public boolean hasTrend() throws IOException {
+		return DependencyTrend.forProject(project).read().size() > 1;
+	}
+
+	/**
+	 * Serve the svg trend chart of a metric
+	 */
+	public void doTrend(StaplerRequest req, StaplerResponse rsp,
+			@QueryParameter String metric) throws IOException,
+			ServletException {
+		int index = Arrays.asList(DependencyTrend.METRICS).indexOf(metric);
+		if (index == -1) {
+			rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		List<DependencyTrend.Point> points = DependencyTrend.forProject(
+				project).read();
+		rsp.setContentType("image/svg+xml;charset=UTF-8");
+		rsp.setHeader("Cache-Control", "no-cache");
+		Writer writer = rsp.getWriter();
+		new TrendChartWriter(writer).write(points, index);
+	}
+
 	public void doDynamic(StaplerRequest req, StaplerResponse rsp)
 			throws IOException, ServletException {
-		IvyReportBuildAction lastResult = getLastResult();
+		IvyReportBuildAction lastResult = getLastResult(project);
 		if (lastResult != null) {
-			lastResult.doDynamic(req, rsp);
+			lastResult.serve(req, rsp, false);
 		}
 	}
 	
-	private IvyReportBuildAction getLastResult() {
+	/**
+	 * @return the action of the latest build of the project with an ivy
+	 *         report or null if there is none
+	 */
+	static IvyReportBuildAction getLastResult(IvyModuleSet project) {
+		Integer number = LATEST_BUILDS.get(project);
+		if (number != null) {
+			if (number == NO_BUILD) {
+				return null;
+			}
+			AbstractBuild<?, ?> b = project.getBuildByNumber(number);
+			if (b != null) {
+				IvyReportBuildAction r = b.getAction(IvyReportBuildAction.class);
+				if (r != null && !r.isPending())
+					return r;
+			}
+		}
+		// not known yet (startup) or stale : walk the builds
+		IvyReportBuildAction r = findLastResult(project, NO_BUILD);
+		// a stale number is replaced even by an older build, so that the
+		// builds are not walked again on the next lookup
+		replaceLatestBuild(project, number, r == null ? NO_BUILD : r
+				.getBuild().getNumber());
+		return r;
+	}
+
+	/**
+	 * Walk the builds of the project to find the latest one with an ivy
+	 * report
+	 * 
+	 * @param ignoredBuild
+	 *            the number of a build that is being deleted, or
+	 *            {@link #NO_BUILD}
+	 */
+	private static IvyReportBuildAction findLastResult(IvyModuleSet project,
+			int ignoredBuild) {
 		for (AbstractBuild<?, ?> b = project.getLastSuccessfulBuild(); b != null; b = b.getPreviousNotFailedBuild()) {
-            if (b.getResult() == Result.FAILURE)
+            if (b.getResult() == Result.FAILURE || b.getNumber() == ignoredBuild)
                 continue;
             IvyReportBuildAction r = b.getAction(IvyReportBuildAction.class);
-            if (r != null)
+            if (r != null && !r.isPending()) {
                 return r;
+            }
         }
         return null;
 	}
+
+	/**
+	 * Record a newly published report, unless a later build is already
+	 * recorded
+	 */
+	static void updateLatestBuild(IvyModuleSet project, int number) {
+		synchronized (LATEST_BUILDS) {
+			Integer current = LATEST_BUILDS.get(project);
+			if (current == null || current < number) {
+				LATEST_BUILDS.put(project, number);
+			}
+		}
+	}
+
+	/**
+	 * Record the result of a walk of the builds, unless the recorded number
+	 * changed during the walk
+	 * 
+	 * @param expected
+	 *            the number recorded before the walk, or null
+	 */
+	private static void replaceLatestBuild(IvyModuleSet project,
+			Integer expected, int number) {
+		synchronized (LATEST_BUILDS) {
+			Integer current = LATEST_BUILDS.get(project);
+			if (current == null ? expected == null : (current
+					.equals(expected) || current < number)) {
+				LATEST_BUILDS.put(project, number);
+			}
+		}
+	}
+
+	/**
+	 * Keeps the latest build with an ivy report of each project, its trend and
+	 * the dependency index up to date
+	 */
+	@Extension
+	public static class LatestReportListener extends
+			RunListener<AbstractBuild<?, ?>> {
+
+		@SuppressWarnings("unchecked")
+		public LatestReportListener() {
+			super((Class) AbstractBuild.class);
+		}
+
+		@Override
+		public void onCompleted(AbstractBuild<?, ?> build, TaskListener listener) {
+			if (!(build.getProject() instanceof IvyModuleSet)) {
+				return;
+			}
+			Result result = build.getResult();
+			if (result == null || !result.isBetterOrEqualTo(Result.UNSTABLE)) {
+				return;
+			}
+			IvyReportBuildAction action = build
+					.getAction(IvyReportBuildAction.class);
+			// a report published in the background updates it once published
+			if (action != null && !action.isPending()) {
+				updateLatestBuild((IvyModuleSet) build.getProject(),
+						build.getNumber());
+			}
+		}
+
+		@Override
+		public void onDeleted(AbstractBuild<?, ?> build) {
+			if (!(build.getProject() instanceof IvyModuleSet)) {
+				return;
+			}
+			try {
+				DependencyTrend.forProject(build.getProject()).remove(
+						build.getNumber());
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Could not remove "
+						+ build.getFullDisplayName()
+						+ " from the ivy report trend", e);
+			}
+			IvyModuleSet project = (IvyModuleSet) build.getProject();
+			String job = project.getFullName();
+			int number = build.getNumber();
+			Integer current = LATEST_BUILDS.get(project);
+			// the builds are only walked when the latest report is deleted,
+			// not for each build removed by the log rotation
+			if ((current == null || current != number)
+					&& !DependencyIndex.getInstance().isIndexed(job, number)) {
+				return;
+			}
+			// the build may not be removed from the project yet
+			IvyReportBuildAction previous = findLastResult(project, number);
+			replaceLatestBuild(project, number, previous == null ? NO_BUILD
+					: previous.getBuild().getNumber());
+			try {
+				DependencyIndex.getInstance().remove(job, number, previous);
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Could not index the ivy report "
+						+ "that precedes " + build.getFullDisplayName(), e);
+			}
+		}
+	}
+
+	/**
+	 * Removes the deleted projects from the dependency index and indexes the
+	 * renamed ones under their new name
+	 */
+	@Extension
+	public static class ProjectListener extends ItemListener {
+
+		@Override
+		public void onDeleted(Item item) {
+			if (item instanceof IvyModuleSet) {
+				DependencyIndex.getInstance().remove(item.getFullName());
+			}
+		}
+
+		@Override
+		public void onRenamed(Item item, String oldName, String newName) {
+			if (!(item instanceof IvyModuleSet)) {
+				return;
+			}
+			String parentName = item.getParent().getFullName();
+			String oldFullName = parentName.length() == 0 ? oldName
+					: parentName + "/" + oldName;
+			try {
+				DependencyIndex.getInstance().rename(oldFullName,
+						item.getFullName());
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Could not rename " + oldFullName
+						+ " in the dependency index", e);
+			}
+		}
+	}
 	
 }
@@ -0,0 +1,299 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.ivy.IvyModuleSet;
+import hudson.ivy.IvyModuleSetBuild;
+import hudson.model.Hudson;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Queue of the ivy reports published in the background, once the resolve
+ * reports have been archived by the build.
+ * <p>
+ * The queue is bounded : when it is full, the build publishes its report
+ * itself. The reports expected to be the quickest to generate, from the
+ * generation time of the previous report of the job, are published first
+ * unless the other ones have been waiting longer than that. The queued
+ * builds are saved in a file so that they are published again after a
+ * restart.
+ */
+public class IvyReportPublishQueue {
+	private static final Logger LOGGER = Logger
+			.getLogger(IvyReportPublishQueue.class.getName());
+	private static IvyReportPublishQueue instance;
+
+	private final File file;
+	private final ThreadPoolExecutor executor;
+	private int capacity;
+	// job full name#build number -> queued or running task
+	private final Map<String, Task> tasks = new LinkedHashMap<String, Task>();
+	private long sequence;
+
+	public IvyReportPublishQueue(File file, int workers, int capacity) {
+		this.file = file;
+		this.capacity = capacity;
+		this.executor = new ThreadPoolExecutor(workers, workers, 60L,
+				TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
+				new PublisherThreadFactory());
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	public static synchronized IvyReportPublishQueue getInstance() {
+		if (instance == null) {
+			IvyReportPublisher.DescriptorImpl descriptor = Hudson
+					.getInstance().getDescriptorByType(
+							IvyReportPublisher.DescriptorImpl.class);
+			instance = new IvyReportPublishQueue(new File(Hudson
+					.getInstance().getRootDir(), "ivy-report-queue.txt"),
+					descriptor.getRenderThreads(),
+					descriptor.getBackgroundQueueSize());
+		}
+		return instance;
+	}
+
+	/**
+	 * Publish again the reports that were queued when Hudson stopped
+	 */
+	@Initializer(after = InitMilestone.JOB_LOADED)
+	public static void recover() {
+		getInstance().load();
+	}
+
+	public synchronized void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Change the number of reports published at the same time. The reports
+	 * being published are not interrupted.
+	 */
+	public synchronized void setWorkers(int workers) {
+		// the core size may not exceed the maximum size
+		if (workers > executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(workers);
+			executor.setCorePoolSize(workers);
+		} else {
+			executor.setCorePoolSize(workers);
+			executor.setMaximumPoolSize(workers);
+		}
+	}
+
+	/**
+	 * @return the number of reports queued or being published
+	 */
+	public synchronized int getSize() {
+		return tasks.size();
+	}
+
+	/**
+	 * Queue the publication of the report of a build whose resolve reports
+	 * have been archived
+	 * 
+	 * @param queued
+	 *            the time the publication started
+	 * @param estimate
+	 *            the expected generation time, in ms
+	 * @return false if the queue is full
+	 */
+	public synchronized boolean offer(IvyReportPublisher publisher,
+			IvyModuleSetBuild build, PublishTimings timings, long queued,
+			long estimate) {
+		if (tasks.size() >= capacity) {
+			return false;
+		}
+		add(new Task(publisher, build, timings, queued, estimate));
+		save();
+		return true;
+	}
+
+	private void add(Task task) {
+		tasks.put(task.getKey(), task);
+		executor.execute(task);
+	}
+
+	private synchronized void finished(Task task) {
+		tasks.remove(task.getKey());
+		save();
+	}
+
+	/**
+	 * Save the queued builds, one per line : job full name, build number,
+	 * time queued and estimated generation time separated by tabs
+	 */
+	private void save() {
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			Writer writer = new OutputStreamWriter(
+					new FileOutputStream(tmp), "UTF-8");
+			try {
+				for (Task task : tasks.values()) {
+					writer.write(task.build.getProject().getFullName() + "\t"
+							+ task.build.getNumber() + "\t" + task.queued
+							+ "\t" + task.estimate + "\n");
+				}
+			} finally {
+				writer.close();
+			}
+			if (!tmp.renameTo(file) && (!file.delete() || !tmp.renameTo(file))) {
+				throw new IOException("Could not rename " + tmp + " to "
+						+ file);
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Could not save the ivy report queue",
+					e);
+		}
+	}
+
+	private synchronized void load() {
+		if (!file.isFile()) {
+			return;
+		}
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					new FileInputStream(file), "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.split("\t");
+					if (fields.length == 4) {
+						recover(fields[0], Integer.parseInt(fields[1]), Long
+								.parseLong(fields[2]), Long
+								.parseLong(fields[3]));
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Could not read the ivy report queue", e);
+		} catch (NumberFormatException e) {
+			LOGGER.log(Level.WARNING, "Corrupted ivy report queue", e);
+		}
+		save();
+	}
+
+	/**
+	 * Queue again a build whose report was still pending, whatever the
+	 * capacity of the queue
+	 */
+	private void recover(String job, int buildNumber, long queued,
+			long estimate) throws IOException {
+		IvyModuleSet project = Hudson.getInstance().getItemByFullName(job,
+				IvyModuleSet.class);
+		IvyModuleSetBuild build = project == null ? null : project
+				.getBuildByNumber(buildNumber);
+		IvyReportBuildAction action = build == null ? null : build
+				.getAction(IvyReportBuildAction.class);
+		if (action == null || !action.isPending()) {
+			return;
+		}
+		IvyReportPublisher publisher = project.getPublishersList().get(
+				IvyReportPublisher.class);
+		if (publisher == null) {
+			build.getActions().remove(action);
+			build.save();
+			return;
+		}
+		LOGGER.info("Publishing the ivy report of "
+				+ build.getFullDisplayName() + " queued before the restart");
+		add(new Task(publisher, build, new PublishTimings(), queued, estimate));
+	}
+
+	private class Task implements Runnable, Comparable<Task> {
+		private final IvyReportPublisher publisher;
+		private final IvyModuleSetBuild build;
+		private final PublishTimings timings;
+		private final long queued;
+		private final long estimate;
+		private final long sequence;
+
+		public Task(IvyReportPublisher publisher, IvyModuleSetBuild build,
+				PublishTimings timings, long queued, long estimate) {
+			this.publisher = publisher;
+			this.build = build;
+			this.timings = timings;
+			this.queued = queued;
+			this.estimate = estimate;
+			this.sequence = IvyReportPublishQueue.this.sequence++;
+		}
+
+		public String getKey() {
+			return build.getProject().getFullName() + "#" + build.getNumber();
+		}
+
+		public void run() {
+			try {
+				publisher.publishQueued(build, timings, queued);
+			} catch (Throwable e) {
+				LOGGER.log(Level.WARNING, "Could not publish the ivy report of "
+						+ build.getFullDisplayName(), e);
+			} finally {
+				finished(this);
+			}
+		}
+
+		public int compareTo(Task other) {
+			long priority = queued + estimate;
+			long otherPriority = other.queued + other.estimate;
+			if (priority != otherPriority) {
+				return priority < otherPriority ? -1 : 1;
+			}
+			return sequence < other.sequence ? -1
+					: (sequence == other.sequence ? 0 : 1);
+		}
+	}
+
+	private static class PublisherThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Ivy report publisher #"
+					+ threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
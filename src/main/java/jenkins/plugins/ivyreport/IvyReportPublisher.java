@@ -27,28 +27,53 @@ import hudson.Extension;
 import hudson.FilePath;
 import hudson.Functions;
 import hudson.Launcher;
+import hudson.PluginWrapper;
 import hudson.Util;
 import hudson.ivy.IvyModuleSet;
 import hudson.ivy.IvyModuleSetBuild;
 import hudson.model.Action;
 import hudson.model.BuildListener;
 import hudson.model.Result;
+import hudson.model.StreamBuildListener;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Hudson;
+import hudson.remoting.Pipe;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
 import net.sf.json.JSONObject;
 
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.lang.StringUtils;
+import org.apache.ivy.util.FileUtil;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
@@ -60,19 +85,98 @@ import org.kohsuke.stapler.StaplerRequest;
  * 
  */
 public class IvyReportPublisher extends Recorder {
+	/**
+	 * Log of a report published in the background, next to the report
+	 */
+	public static final String PUBLISH_LOG = "publish.log";
 	private final String ivyReportConfigurations;
 	private final String resolveId;
+	private final String graphRenderer;
+	private final boolean renderOnDemand;
+	private final boolean transitiveReduction;
+	private final boolean clusterOrganisations;
+	private final boolean hideEvicted;
+	private final int maxGraphDepth;
+	private final boolean pagedHtml;
 
 	@DataBoundConstructor
-	public IvyReportPublisher(String ivyReportConfigurations, String resolveId) {
+	public IvyReportPublisher(String ivyReportConfigurations, String resolveId,
+			String graphRenderer, boolean renderOnDemand,
+			boolean transitiveReduction, boolean clusterOrganisations,
+			boolean hideEvicted, String maxGraphDepth, boolean pagedHtml) {
 		this.ivyReportConfigurations = ivyReportConfigurations;
 		this.resolveId = resolveId;
+		this.graphRenderer = Util.fixEmptyAndTrim(graphRenderer);
+		this.renderOnDemand = renderOnDemand;
+		this.transitiveReduction = transitiveReduction;
+		this.clusterOrganisations = clusterOrganisations;
+		this.hideEvicted = hideEvicted;
+		this.maxGraphDepth = DescriptorImpl.parsePositiveInt(maxGraphDepth);
+		this.pagedHtml = pagedHtml;
 	}
 
 	public String getIvyReportConfigurations() {
 		return ivyReportConfigurations;
 	}
 
+	public String getResolveId() {
+		return resolveId;
+	}
+
+	/**
+	 * @return the renderer used to lay out the dependency graph or null to use
+	 *         the globally configured one
+	 */
+	public String getGraphRenderer() {
+		return graphRenderer;
+	}
+
+	/**
+	 * @return true if only the resolve reports are archived at build time,
+	 *         the html reports and graphs being rendered when they are first
+	 *         viewed
+	 */
+	public boolean isRenderOnDemand() {
+		return renderOnDemand;
+	}
+
+	public boolean isTransitiveReduction() {
+		return transitiveReduction;
+	}
+
+	public boolean isClusterOrganisations() {
+		return clusterOrganisations;
+	}
+
+	public boolean isHideEvicted() {
+		return hideEvicted;
+	}
+
+	/**
+	 * @return the maximum depth of the dependency graph from the root module,
+	 *         0 if there is none
+	 */
+	public int getMaxGraphDepth() {
+		return maxGraphDepth;
+	}
+
+	/**
+	 * @return true if the html report only lists the modules that are
+	 *         displayed, the details of a module being loaded when it is
+	 *         selected
+	 */
+	public boolean isPagedHtml() {
+		return pagedHtml;
+	}
+
+	/**
+	 * @return how the dependency graph is reduced before it is laid out
+	 */
+	public GraphReduction getGraphReduction() {
+		return new GraphReduction(transitiveReduction, clusterOrganisations,
+				hideEvicted, maxGraphDepth);
+	}
+
 	public BuildStepMonitor getRequiredMonitorService() {
 		return BuildStepMonitor.BUILD;
 	}
@@ -93,32 +197,590 @@ public class IvyReportPublisher extends Recorder {
 							"Skipping ivy report as build was not UNSTABLE or better ...");
 			return true;
 		}
+		IvyModuleSetBuild ivyModuleSetBuild = (IvyModuleSetBuild) build;
+		PublishTimings timings = new PublishTimings();
+		long start = System.currentTimeMillis();
 		try {
 			listener.getLogger().println("Publishing ivy report...");
-			IvyModuleSetBuild ivyModuleSetBuild = (IvyModuleSetBuild) build;
-			FilePath resolutionCacheRoot = getResolutionCacheRoot(
-					ivyModuleSetBuild, listener);
+			FilePath resolutionCacheRoot = archiveResolveReports(
+					ivyModuleSetBuild, timings, listener);
 			if (resolutionCacheRoot == null) {
 				return true;
 			}
-			String[] confs = getConfs();
-			File reportsDir = new File(ivyModuleSetBuild.getRootDir(),
-					"ivyreport");
-			reportsDir.mkdirs();
-			copyIvyReportFilesToMaster(resolutionCacheRoot, confs, reportsDir);
-			IvyReportGenerator ivyReportGenerator = new IvyReportGenerator(
-					Hudson.getInstance(), resolveId, confs, reportsDir,
-					reportsDir);
-			File htmlReport = ivyReportGenerator.generateReports();
-
-			build.addAction(new IvyReportBuildAction(ivyModuleSetBuild,
-					htmlReport.getName()));
+			if (enqueue(ivyModuleSetBuild, timings, start, listener)) {
+				return true;
+			}
+			publish(ivyModuleSetBuild, resolutionCacheRoot, timings, listener);
+		} catch (IOException e) {
+			listener.getLogger().println(
+					"Could not generate ivy reports : " + e.getMessage());
+		}
+		recordTimings(ivyModuleSetBuild, timings, start, listener);
+		return true;
+	}
 
-			return true;
+	/**
+	 * Publish a report queued by {@link #enqueue}, logging to the
+	 * {@link #PUBLISH_LOG} as the build log may be closed. Whatever happens,
+	 * the pending action is replaced or removed and the build is saved.
+	 * 
+	 * @param start
+	 *            the time the publication started
+	 */
+	void publishQueued(IvyModuleSetBuild build, PublishTimings timings,
+			long start) throws IOException, InterruptedException {
+		timings.add("queued", null, start, -1);
+		OutputStream log = null;
+		BuildListener listener = null;
+		try {
+			log = new FileOutputStream(new File(new File(build.getRootDir(),
+					"ivyreport"), PUBLISH_LOG));
+			listener = new StreamBuildListener(log);
+			publish(build, null, timings, listener);
 		} catch (IOException e) {
+			if (listener == null) {
+				throw e;
+			}
 			listener.getLogger().println(
 					"Could not generate ivy reports : " + e.getMessage());
-			return true;
+		} finally {
+			try {
+				IvyReportBuildAction action = build
+						.getAction(IvyReportBuildAction.class);
+				if (action != null && action.isPending()) {
+					// the report could not be published
+					build.getActions().remove(action);
+				}
+				if (listener != null) {
+					recordTimings(build, timings, start, listener);
+				}
+				build.save();
+				if (action != null && !action.isPending()) {
+					IvyReportProjectAction.updateLatestBuild(
+							build.getProject(), build.getNumber());
+				}
+			} finally {
+				if (log != null) {
+					log.close();
+				}
+			}
+		}
+	}
+
+	private void recordTimings(IvyModuleSetBuild build,
+			PublishTimings timings, long start, BuildListener listener) {
+		if (!timings.isEmpty()) {
+			timings.add(PublishTimings.TOTAL, null, start, -1);
+			timings.print(listener.getLogger());
+			IvyReportBuildAction action = build
+					.getAction(IvyReportBuildAction.class);
+			if (action != null) {
+				action.setTimings(timings);
+			}
+			PublishStatistics.getInstance().record(
+					build.getProject().getFullName(), build.getNumber(),
+					timings);
+		}
+	}
+
+	/**
+	 * Copy the resolve reports of the build to the master
+	 * 
+	 * @return the resolution cache root or null if it could not be found
+	 */
+	private FilePath archiveResolveReports(IvyModuleSetBuild build,
+			PublishTimings timings, BuildListener listener)
+			throws IOException, InterruptedException {
+		long start = System.currentTimeMillis();
+		FilePath resolutionCacheRoot = getResolutionCacheRoot(build, listener);
+		if (resolutionCacheRoot == null) {
+			return null;
+		}
+		timings.add("resolution cache root", null, start, -1);
+		File reportsDir = new File(build.getRootDir(), "ivyreport");
+		reportsDir.mkdirs();
+		start = System.currentTimeMillis();
+		long transferred = copyIvyReportFilesToMaster(resolutionCacheRoot,
+				getConfs(), reportsDir);
+		timings.add("copy resolve reports", null, start, transferred);
+		return resolutionCacheRoot;
+	}
+
+	/**
+	 * Queue the publication of the report in the background, with a pending
+	 * action until it is published, if enabled
+	 * 
+	 * @return false if the report must be published by the build
+	 */
+	private boolean enqueue(IvyModuleSetBuild build, PublishTimings timings,
+			long start, BuildListener listener) {
+		if (renderOnDemand || !getDescriptor().isPublishInBackground()) {
+			return false;
+		}
+		IvyReportBuildAction previous = findPreviousReport(build);
+		IvyReportBuildAction pending = new IvyReportBuildAction(build);
+		// added first as the report may be published before offer returns
+		build.addAction(pending);
+		if (!IvyReportPublishQueue.getInstance().offer(this, build, timings,
+				start, previous == null ? 0 : previous.getGenerationTime())) {
+			build.getActions().remove(pending);
+			listener.getLogger().println(
+					"Ivy report queue is full, publishing in the build");
+			return false;
+		}
+		listener.getLogger().println(
+				"Ivy report will be published in the background");
+		return true;
+	}
+
+	/**
+	 * Generate the report from the archived resolve reports
+	 * 
+	 * @param resolutionCacheRoot
+	 *            the resolution cache root of the build, used to generate the
+	 *            report on the slave, or null to generate it on the master
+	 */
+	private void publish(IvyModuleSetBuild build,
+			FilePath resolutionCacheRoot, PublishTimings timings,
+			BuildListener listener) throws IOException, InterruptedException {
+		String[] confs = getConfs();
+		File reportsDir = new File(build.getRootDir(), "ivyreport");
+		String assetsUrl = IvyReportAssets.getUrl();
+		long start = System.currentTimeMillis();
+		// the digest is only used to reuse a report generated at publish time
+		ResolveReportDigest digest = null;
+		if (!renderOnDemand) {
+			digest = new ResolveReportDigest();
+			getDescriptor().addSettings(digest, graphRenderer,
+					getGraphReduction(), pagedHtml, assetsUrl);
+		}
+		Map<String, ResolveReport> reports = parseResolveReports(reportsDir,
+				confs, digest, listener);
+		timings.add("parse", null, start, getResolveReportsSize(reportsDir,
+				confs));
+		start = System.currentTimeMillis();
+		IvyReportBuildAction previous = findPreviousReport(build);
+		writeChanges(previous, confs, reports, reportsDir, assetsUrl,
+				listener);
+		timings.add("changes", null, start, new File(reportsDir,
+				ChangesReportWriter.FILE_NAME
+						+ CompressedReportServer.GZIP_EXTENSION).length());
+		start = System.currentTimeMillis();
+		long graphsSize = writeDependencyGraphs(reports, reportsDir, listener);
+		timings.add("dependency graphs", null, start, graphsSize);
+		if (renderOnDemand) {
+			listener.getLogger().println(
+					"Ivy report will be rendered when first viewed");
+			IvyReportBuildAction action = new IvyReportBuildAction(build,
+					resolveId, confs, graphRenderer, getGraphReduction(),
+					pagedHtml);
+			start = System.currentTimeMillis();
+			action.setSummaries(summarizeResolveReports(reports));
+			timings.add("summaries", null, start, -1);
+			addReportAction(build, action);
+			start = System.currentTimeMillis();
+			recordReport(build, action, listener);
+			timings.add("trend and index", null, start, -1);
+			return;
+		}
+		// a report that could not be parsed is not digested
+		String reportsDigest = reports.size() == confs.length ? digest
+				.digest() : null;
+		start = System.currentTimeMillis();
+		if (reportsDigest != null
+				&& reusePreviousReport(build, previous, reportsDigest,
+						reportsDir, listener)) {
+			timings.add("reuse previous report", null, start, -1);
+			return;
+		}
+		start = System.currentTimeMillis();
+		GenerateReportsCallable.Result result = null;
+		if (getDescriptor().isGenerateOnSlave()
+				&& getDescriptor().getHtmlStylesheet() == null
+				&& resolutionCacheRoot != null && resolutionCacheRoot.isRemote()) {
+			result = generateOnSlave(resolutionCacheRoot, confs, reportsDir,
+					assetsUrl, timings, listener);
+		}
+		if (result == null) {
+			result = generateOnMaster(confs, reports, reportsDir, assetsUrl,
+					listener);
+		}
+		timings.addAll(result.getTimings());
+		timings.add("generate", null, start, -1);
+
+		IvyReportBuildAction action = new IvyReportBuildAction(build,
+				result.getIndexFileName());
+		if (result.getFailures().isEmpty()) {
+			action.setResolveReportsDigest(reportsDigest);
+		}
+		action.setGenerationTime(System.currentTimeMillis() - start);
+		action.setSummaries(result.getSummaries());
+		action.setGraphLevels(result.getGraphLevels());
+		logGraphLevels(result.getGraphLevels(), listener);
+		addReportAction(build, action);
+		start = System.currentTimeMillis();
+		recordReport(build, action, listener);
+		timings.add("trend and index", null, start, -1);
+	}
+
+	/**
+	 * Add the action of the published report, replacing the pending action
+	 * of a report published in the background
+	 */
+	private static void addReportAction(IvyModuleSetBuild build,
+			IvyReportBuildAction action) {
+		build.getActions().removeAll(
+				build.getActions(IvyReportBuildAction.class));
+		build.addAction(action);
+	}
+
+	/**
+	 * Append the summary of the report to the trend of the project and index
+	 * its dependencies
+	 */
+	private void recordReport(IvyModuleSetBuild build,
+			IvyReportBuildAction action, BuildListener listener) {
+		if (!action.getSummaries().isEmpty()) {
+			try {
+				DependencyTrend.forProject(build.getProject()).append(
+						DependencyTrend.Point.of(build.getNumber(), action
+								.getSummaries().get(0), action
+								.getGenerationTime()));
+			} catch (IOException e) {
+				listener.getLogger().println(
+						"Could not record ivy report trend : "
+								+ e.getMessage());
+			}
+		}
+		try {
+			DependencyIndex.getInstance().update(
+					build.getProject().getFullName(), build.getNumber(),
+					action.getReportsDir());
+		} catch (IOException e) {
+			listener.getLogger().println(
+					"Could not index ivy report dependencies : "
+							+ e.getMessage());
+		}
+	}
+
+	/**
+	 * Parse the resolve report of each configuration, once for all the
+	 * reports written at publish time
+	 * 
+	 * @param digest
+	 *            the digest the reports are added to, with the settings used
+	 *            to render them, or null
+	 * @return the reports that could be parsed, by configuration, in the
+	 *         order of the configurations
+	 */
+	private Map<String, ResolveReport> parseResolveReports(File reportsDir,
+			String[] confs, ResolveReportDigest digest, BuildListener listener) {
+		Map<String, ResolveReport> reports = new LinkedHashMap<String, ResolveReport>();
+		for (String conf : confs) {
+			if (digest != null) {
+				digest.add(conf);
+			}
+			try {
+				reports.put(conf, ResolveReport.parse(new File(reportsDir,
+						resolveId + "-" + conf + ".xml"), digest));
+			} catch (IOException e) {
+				listener.getLogger().println(
+						"Could not parse resolve report for configuration "
+								+ conf + " : " + e.getMessage());
+			}
+		}
+		return reports;
+	}
+
+	private long getResolveReportsSize(File reportsDir, String[] confs) {
+		long size = 0;
+		for (String conf : confs) {
+			size += new File(reportsDir, resolveId + "-" + conf + ".xml")
+					.length();
+		}
+		return size;
+	}
+
+	/**
+	 * Summarize the resolve reports when no report is generated at publish
+	 * time
+	 */
+	private static List<DependencySummary> summarizeResolveReports(
+			Map<String, ResolveReport> reports) {
+		List<DependencySummary> summaries = new ArrayList<DependencySummary>();
+		for (Map.Entry<String, ResolveReport> report : reports.entrySet()) {
+			summaries.add(DependencySummary.compute(report.getKey(),
+					report.getValue()));
+		}
+		return summaries;
+	}
+
+	/**
+	 * @return the action of the last build with an ivy report before the given
+	 *         build, or null if there is none
+	 */
+	private IvyReportBuildAction findPreviousReport(IvyModuleSetBuild build) {
+		// cached, so that the builds are not walked for each build
+		IvyReportBuildAction last = IvyReportProjectAction
+				.getLastResult(build.getProject());
+		if (last == null || last.getBuild().getNumber() < build.getNumber()) {
+			return last;
+		}
+		// a concurrent later build published first
+		for (IvyModuleSetBuild previousBuild = build.getPreviousBuild(); previousBuild != null; previousBuild = previousBuild
+				.getPreviousBuild()) {
+			IvyReportBuildAction previous = previousBuild
+					.getAction(IvyReportBuildAction.class);
+			if (previous != null && !previous.isPending()) {
+				return previous;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Write the dependency graph of each configuration next to its resolve
+	 * report, read by the consumers that do not need the whole report
+	 * 
+	 * @return the size of the written graphs
+	 */
+	private long writeDependencyGraphs(Map<String, ResolveReport> reports,
+			File reportsDir, BuildListener listener) {
+		long size = 0;
+		for (Map.Entry<String, ResolveReport> report : reports.entrySet()) {
+			File graphFile = new File(reportsDir, resolveId + "-"
+					+ report.getKey() + DependencyGraph.EXTENSION);
+			try {
+				new DependencyGraphWriter(report.getValue()).write(graphFile);
+				size += graphFile.length();
+			} catch (IOException e) {
+				graphFile.delete();
+				listener.getLogger().println(
+						"Could not write dependency graph for configuration "
+								+ report.getKey() + " : " + e.getMessage());
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Write the changes of the dependencies since the previous report, next
+	 * to the report
+	 */
+	private void writeChanges(IvyReportBuildAction previous, String[] confs,
+			Map<String, ResolveReport> reports, File reportsDir,
+			String assetsUrl, BuildListener listener) {
+		List<DependencyDiff> diffs = new ArrayList<DependencyDiff>();
+		try {
+			for (String conf : confs) {
+				ResolveReport report = reports.get(conf);
+				if (previous == null || report == null) {
+					diffs.add(null);
+					continue;
+				}
+				diffs.add(diffPreviousReport(previous, conf, report,
+						listener));
+			}
+			Writer writer = new OutputStreamWriter(new GZIPOutputStream(
+					new FileOutputStream(new File(reportsDir,
+							ChangesReportWriter.FILE_NAME
+									+ CompressedReportServer.GZIP_EXTENSION))),
+					"UTF-8");
+			try {
+				ChangesReportWriter changesReportWriter = new ChangesReportWriter(
+						writer);
+				changesReportWriter.setAssetsUrl(assetsUrl);
+				changesReportWriter.write(previous == null ? null : previous
+						.getBuild().getDisplayName(), Arrays.asList(confs),
+						diffs);
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			listener.getLogger().println(
+					"Could not compute dependency changes : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Diff the report of a configuration against the dependency graph of the
+	 * previous report, or against its resolve report if it has no graph, like
+	 * the reports published by older versions of the plugin
+	 * 
+	 * @return the diff or null if the previous report has no such
+	 *         configuration
+	 */
+	private DependencyDiff diffPreviousReport(IvyReportBuildAction previous,
+			String conf, ResolveReport report, BuildListener listener)
+			throws IOException {
+		String name = resolveId + "-" + conf;
+		File graphFile = new File(previous.getReportsDir(), name
+				+ DependencyGraph.EXTENSION);
+		if (graphFile.isFile()) {
+			try {
+				return DependencyDiff.compute(DependencyGraph.read(graphFile),
+						report);
+			} catch (IOException e) {
+				listener.getLogger().println(
+						"Could not read " + graphFile + ", parsing "
+								+ name + ".xml instead : " + e.getMessage());
+			}
+		}
+		File previousFile = new File(previous.getReportsDir(), name + ".xml");
+		if (!previousFile.isFile()) {
+			return null;
+		}
+		return DependencyDiff.compute(ResolveReport.parse(previousFile),
+				report);
+	}
+
+	/**
+	 * Reuse the report of the last build with an ivy report if it was
+	 * generated from the same resolve reports
+	 * 
+	 * @return true if the report has been reused
+	 */
+	private boolean reusePreviousReport(IvyModuleSetBuild build,
+			IvyReportBuildAction previous, String digest, File reportsDir,
+			BuildListener listener) throws IOException {
+		if (previous == null
+				|| !digest.equals(previous.getResolveReportsDigest())) {
+			return false;
+		}
+		File[] files = previous.getReportsDir().listFiles();
+		if (files == null) {
+			return false;
+		}
+		long start = System.currentTimeMillis();
+		for (File file : files) {
+			File target = new File(reportsDir, file.getName());
+			if (file.isFile() && !target.exists()
+					&& !file.getName().startsWith(ChangesReportWriter.FILE_NAME)
+					&& !file.getName().equals(PUBLISH_LOG)) {
+				FileUtil.copy(file, target, null);
+			}
+		}
+		long saved = previous.getGenerationTime()
+				- (System.currentTimeMillis() - start);
+		IvyReportBuildAction action = new IvyReportBuildAction(build,
+				previous.getIndexFileName());
+		action.setResolveReportsDigest(digest);
+		action.setGenerationTime(previous.getGenerationTime());
+		action.setSummaries(previous.getSummaries());
+		action.setGraphLevels(previous.getGraphLevels());
+		addReportAction(build, action);
+		recordReport(build, action, listener);
+		listener.getLogger().println(
+				"Resolve reports unchanged since "
+						+ previous.getBuild().getDisplayName()
+						+ ", reused its ivy report (saved "
+						+ Util.getTimeSpanString(Math.max(saved, 0)) + ")");
+		return true;
+	}
+
+	private GenerateReportsCallable.Result generateOnMaster(String[] confs,
+			Map<String, ResolveReport> reports, File reportsDir,
+			String assetsUrl, BuildListener listener) throws IOException,
+			InterruptedException {
+		long start = System.currentTimeMillis();
+		IvyReportGenerator ivyReportGenerator = getDescriptor()
+				.createGenerator(resolveId, confs, reportsDir, reportsDir,
+						graphRenderer, getGraphReduction(), pagedHtml,
+						assetsUrl);
+		ivyReportGenerator.setResolveReports(reports);
+		File htmlReport;
+		try {
+			htmlReport = ivyReportGenerator.generateReports();
+		} finally {
+			logFailures(ivyReportGenerator.getFailures(), listener);
+		}
+		return new GenerateReportsCallable.Result(htmlReport.getName(),
+				ivyReportGenerator.getFailures(),
+				ivyReportGenerator.getSummaries(), ivyReportGenerator
+						.getGraphLevels(), ivyReportGenerator.getTimings(),
+				System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Generate the report on the slave that did the build and extract the
+	 * archive it sends back in the reports directory
+	 * 
+	 * @return the result or null if the report could not be generated on the
+	 *         slave, for example because the graph renderer is not installed
+	 *         there
+	 */
+	private GenerateReportsCallable.Result generateOnSlave(
+			FilePath resolutionCacheRoot, String[] confs, File reportsDir,
+			String assetsUrl, PublishTimings timings, BuildListener listener)
+			throws InterruptedException {
+		listener.getLogger().println("Generating ivy report on the slave...");
+		long start = System.currentTimeMillis();
+		try {
+			Pipe pipe = Pipe.createRemoteToLocal();
+			Future<GenerateReportsCallable.Result> future = resolutionCacheRoot
+					.actAsync(new GenerateReportsCallable(resolveId, confs,
+							getDescriptor().createGraphRenderer(graphRenderer),
+							getGraphReduction(), pagedHtml,
+							getDescriptor().getRenderThreads(),
+							getDescriptor().isKeepDotFiles(), assetsUrl,
+							getDescriptor().getLayoutTimeout() * 1000L, pipe));
+			CountingInputStream input = new CountingInputStream(pipe.getIn());
+			GenerateReportsCallable.Result result;
+			try {
+				try {
+					new FilePath(reportsDir).untarFrom(input,
+							FilePath.TarCompression.GZIP);
+				} catch (IOException e) {
+					// stops the slave if it is still writing, nobody reads
+					// the pipe anymore
+					if (future.cancel(true)) {
+						throw e;
+					}
+					// the callable failure is more meaningful
+					future.get();
+					throw e;
+				}
+				result = future.get();
+			} finally {
+				// does nothing if the slave is done, stops it otherwise
+				future.cancel(true);
+			}
+			logFailures(result.getFailures(), listener);
+			timings.add("generate on slave and transfer", null, start, input
+					.getByteCount());
+			return result;
+		} catch (ExecutionException e) {
+			listener.getLogger().println(
+					"Could not generate ivy report on the slave, generating it on the master : "
+							+ e.getCause().getMessage());
+		} catch (IOException e) {
+			listener.getLogger().println(
+					"Could not generate ivy report on the slave, generating it on the master : "
+							+ e.getMessage());
+		}
+		return null;
+	}
+
+	private void logFailures(Map<String, Throwable> failures,
+			BuildListener listener) {
+		for (Map.Entry<String, Throwable> failure : failures.entrySet()) {
+			listener.getLogger().println(
+					"Could not generate ivy report for configuration "
+							+ failure.getKey() + " : "
+							+ failure.getValue().getMessage());
+		}
+	}
+
+	private void logGraphLevels(Map<String, GraphLevel> graphLevels,
+			BuildListener listener) {
+		for (Map.Entry<String, GraphLevel> graphLevel : graphLevels
+				.entrySet()) {
+			if (graphLevel.getValue() != GraphLevel.FULL) {
+				listener.getLogger().println(
+						"Could not lay out the dependency graph of configuration "
+								+ graphLevel.getKey() + " in time : "
+								+ graphLevel.getValue().getDescription());
+			}
 		}
 	}
 
@@ -145,22 +807,61 @@ public class IvyReportPublisher extends Recorder {
 		}
 	}
 
-	private void copyIvyReportFilesToMaster(FilePath resolutionCacheRoot,
+	/**
+	 * Copy the resolve reports of all the configurations. They are sent by
+	 * the slave in a single archive.
+	 * 
+	 * @return the number of bytes transferred
+	 */
+	private long copyIvyReportFilesToMaster(FilePath resolutionCacheRoot,
 			String[] confs, File targetDir) throws IOException,
 			InterruptedException {
-		for (String conf : confs) {
-			FilePath report = getConfigurationResolveReportInCache(
-					resolutionCacheRoot, conf);
-			if (!report.exists()) {
-				throw new IOException("Report file does not exist : "
-						+ report.getRemote());
+		List<String> missingReports;
+		long transferred = 0;
+		if (resolutionCacheRoot.isRemote()) {
+			Pipe pipe = Pipe.createRemoteToLocal();
+			Future<List<String>> future = resolutionCacheRoot
+					.actAsync(new FetchResolveReportsCallable(resolveId, confs,
+							pipe));
+			CountingInputStream input = new CountingInputStream(pipe.getIn());
+			try {
+				new FilePath(targetDir).untarFrom(input,
+						FilePath.TarCompression.GZIP);
+				transferred = input.getByteCount();
+				missingReports = future.get();
+			} catch (ExecutionException e) {
+				IOException ioException = new IOException(
+						"Could not copy resolve reports : "
+								+ e.getCause().getMessage());
+				ioException.initCause(e.getCause());
+				throw ioException;
+			} finally {
+				// does nothing if the slave is done, stops it otherwise
+				future.cancel(true);
 			}
-			report.copyTo(new FilePath(new File(targetDir, report.getName())));
+		} else {
+			missingReports = new ArrayList<String>();
+			for (String conf : confs) {
+				FilePath report = getConfigurationResolveReportInCache(
+						resolutionCacheRoot, conf);
+				if (!report.exists()) {
+					missingReports.add(report.getRemote());
+					continue;
+				}
+				File target = new File(targetDir, report.getName());
+				report.copyTo(new FilePath(target));
+				transferred += target.length();
+			}
+		}
+		if (!missingReports.isEmpty()) {
+			throw new IOException("Report file does not exist : "
+					+ StringUtils.join(missingReports, ", "));
 		}
+		return transferred;
 	}
 
 	@Override
-	public BuildStepDescriptor<Publisher> getDescriptor() {
+	public DescriptorImpl getDescriptor() {
 		return DESCRIPTOR;
 	}
 
@@ -179,6 +880,17 @@ public class IvyReportPublisher extends Recorder {
 			BuildStepDescriptor<Publisher> {
 
 		private String dotExe;
+		private String htmlStylesheet;
+		private int renderThreads;
+		private String defaultGraphRenderer;
+		private boolean keepDotFiles;
+		private boolean generateOnSlave;
+		private int renderCacheSize;
+		private int layoutTimeout;
+		private boolean publishInBackground;
+		private int backgroundQueueSize;
+		private transient ThreadPoolExecutor renderingExecutor;
+		private transient ReportRenderCache renderCache;
 
 		public DescriptorImpl() {
 			super(IvyReportPublisher.class);
@@ -189,7 +901,35 @@ public class IvyReportPublisher extends Recorder {
 		public boolean configure(StaplerRequest req, JSONObject json)
 				throws hudson.model.Descriptor.FormException {
 			dotExe = Util.fixEmptyAndTrim(json.getString("dotExe"));
+			htmlStylesheet = Util.fixEmptyAndTrim(json
+					.getString("htmlStylesheet"));
+			renderThreads = parsePositiveInt(json.getString("renderThreads"));
+			defaultGraphRenderer = Util.fixEmptyAndTrim(json
+					.getString("defaultGraphRenderer"));
+			keepDotFiles = json.getBoolean("keepDotFiles");
+			renderCacheSize = parsePositiveInt(json.getString("renderCacheSize"));
+			generateOnSlave = json.getBoolean("generateOnSlave");
+			layoutTimeout = parsePositiveInt(json.getString("layoutTimeout"));
+			publishInBackground = json.getBoolean("publishInBackground");
+			backgroundQueueSize = parsePositiveInt(json
+					.getString("backgroundQueueSize"));
 			save();
+			updateRenderingExecutor();
+			updateRenderCache();
+			IvyReportPublishQueue publishQueue = IvyReportPublishQueue
+					.getInstance();
+			publishQueue.setWorkers(getRenderThreads());
+			publishQueue.setCapacity(getBackgroundQueueSize());
+			if (htmlStylesheet != null) {
+				// the custom stylesheet may have been replaced by a file with
+				// the same size and modification time
+				try {
+					TemplatesCache.getInstance().invalidate(
+							new File(htmlStylesheet));
+				} catch (IOException e) {
+					// not a valid path, it cannot have been cached
+				}
+			}
 
 			return true;
 		}
@@ -227,6 +967,285 @@ public class IvyReportPublisher extends Recorder {
 			return FormValidation.validateExecutable(value);
 		}
 
+		/**
+		 * @return the renderer used by the projects that do not choose one
+		 */
+		public String getDefaultGraphRenderer() {
+			return defaultGraphRenderer == null ? DotGraphRenderer.ID
+					: defaultGraphRenderer;
+		}
+
+		public ListBoxModel doFillDefaultGraphRendererItems() {
+			ListBoxModel items = new ListBoxModel();
+			addGraphRendererItems(items);
+			return items;
+		}
+
+		public ListBoxModel doFillGraphRendererItems() {
+			ListBoxModel items = new ListBoxModel();
+			items.add("Default", "");
+			addGraphRendererItems(items);
+			return items;
+		}
+
+		private void addGraphRendererItems(ListBoxModel items) {
+			items.add("Graphviz dot", DotGraphRenderer.ID);
+			items.add("Built-in layered layout (no Graphviz needed)",
+					LayeredGraphRenderer.ID);
+		}
+
+		/**
+		 * @return true if the dot files used to render the graphs are kept
+		 *         next to the reports, to debug rendering issues
+		 */
+		public boolean isKeepDotFiles() {
+			return keepDotFiles;
+		}
+
+		/**
+		 * @param id
+		 *            the renderer id or null to use the default renderer
+		 */
+		public GraphRenderer createGraphRenderer(String id) {
+			if (id == null) {
+				id = getDefaultGraphRenderer();
+			}
+			if (LayeredGraphRenderer.ID.equals(id)) {
+				return new LayeredGraphRenderer();
+			}
+			return new DotGraphRenderer(getDotExeOrDefault());
+		}
+
+		/**
+		 * @return the custom stylesheet used to generate the html report or
+		 *         null to use the default one
+		 */
+		public String getHtmlStylesheet() {
+			return htmlStylesheet;
+		}
+
+		public FormValidation doCheckHtmlStylesheet(
+				@QueryParameter final String value) {
+			String path = Util.fixEmptyAndTrim(value);
+			if (path == null || new File(path).isFile()) {
+				return FormValidation.ok();
+			}
+			return FormValidation.error("No such file : " + path);
+		}
+
+		/**
+		 * @return the number of configurations that can be rendered
+		 *         concurrently on the master
+		 */
+		public int getRenderThreads() {
+			return renderThreads < 1 ? 1 : renderThreads;
+		}
+
+		public FormValidation doCheckRenderThreads(
+				@QueryParameter final String value) {
+			return FormValidation.validatePositiveInteger(value);
+		}
+
+		public FormValidation doCheckMaxGraphDepth(
+				@QueryParameter final String value) {
+			if (Util.fixEmptyAndTrim(value) == null) {
+				return FormValidation.ok();
+			}
+			return FormValidation.validateNonNegativeInteger(value);
+		}
+
+		/**
+		 * @return the executor shared by all the builds to render the reports
+		 *         of the different configurations
+		 */
+		public synchronized ExecutorService getRenderingExecutor() {
+			if (renderingExecutor == null) {
+				renderingExecutor = new ThreadPoolExecutor(getRenderThreads(),
+						getRenderThreads(), 60L, TimeUnit.SECONDS,
+						new LinkedBlockingQueue<Runnable>(),
+						new RenderingThreadFactory());
+				renderingExecutor.allowCoreThreadTimeOut(true);
+			}
+			return renderingExecutor;
+		}
+
+		private synchronized void updateRenderingExecutor() {
+			if (renderingExecutor == null) {
+				return;
+			}
+			int threads = getRenderThreads();
+			if (threads > renderingExecutor.getMaximumPoolSize()) {
+				renderingExecutor.setMaximumPoolSize(threads);
+				renderingExecutor.setCorePoolSize(threads);
+			} else {
+				renderingExecutor.setCorePoolSize(threads);
+				renderingExecutor.setMaximumPoolSize(threads);
+			}
+		}
+
+		/**
+		 * @return true if reports are generated on the slave that did the
+		 *         build instead of the master. The master still generates them
+		 *         if a custom stylesheet is used or if the slave cannot.
+		 */
+		public boolean isGenerateOnSlave() {
+			return generateOnSlave;
+		}
+
+		/**
+		 * @return the maximum size, in MB, of the reports rendered on demand
+		 *         kept on disk
+		 */
+		public int getRenderCacheSize() {
+			return renderCacheSize < 1 ? 512 : renderCacheSize;
+		}
+
+		public FormValidation doCheckRenderCacheSize(
+				@QueryParameter final String value) {
+			return FormValidation.validatePositiveInteger(value);
+		}
+
+		/**
+		 * @return the time, in seconds, given to lay out the graph of a
+		 *         configuration before it is retried with a reduced graph
+		 */
+		public int getLayoutTimeout() {
+			return layoutTimeout < 1 ? 300 : layoutTimeout;
+		}
+
+		public FormValidation doCheckLayoutTimeout(
+				@QueryParameter final String value) {
+			return FormValidation.validatePositiveInteger(value);
+		}
+
+		/**
+		 * @return true if the builds only archive their resolve reports, the
+		 *         reports being generated in the background so that the
+		 *         executors are released sooner
+		 */
+		public boolean isPublishInBackground() {
+			return publishInBackground;
+		}
+
+		/**
+		 * @return the maximum number of reports waiting to be published in
+		 *         the background. The builds publish their reports themselves
+		 *         when the queue is full.
+		 */
+		public int getBackgroundQueueSize() {
+			return backgroundQueueSize < 1 ? 100 : backgroundQueueSize;
+		}
+
+		public FormValidation doCheckBackgroundQueueSize(
+				@QueryParameter final String value) {
+			return FormValidation.validatePositiveInteger(value);
+		}
+
+		/**
+		 * @return the cache of the reports rendered on demand
+		 */
+		public synchronized ReportRenderCache getRenderCache() {
+			if (renderCache == null) {
+				renderCache = new ReportRenderCache(new File(Hudson
+						.getInstance().getRootDir(), "ivy-report-cache"),
+						getRenderCacheSize() * 1024L * 1024L);
+			}
+			return renderCache;
+		}
+
+		private synchronized void updateRenderCache() {
+			if (renderCache != null) {
+				renderCache.setMaxSize(getRenderCacheSize() * 1024L * 1024L);
+			}
+		}
+
+		/**
+		 * Create a generator configured with the global settings
+		 * 
+		 * @param graphRenderer
+		 *            the renderer id or null to use the default renderer
+		 * @param graphReduction
+		 *            how the dependency graphs are reduced before they are
+		 *            laid out
+		 * @param pagedHtml
+		 *            true to write paged html reports
+		 * @param assetsUrl
+		 *            the url of the images and css of the reports, see
+		 *            {@link IvyReportAssets#getUrl()}
+		 */
+		public IvyReportGenerator createGenerator(String resolveId,
+				String[] confs, File resolutionCacheRoot, File targetDir,
+				String graphRenderer, GraphReduction graphReduction,
+				boolean pagedHtml, String assetsUrl) {
+			IvyReportGenerator ivyReportGenerator = new IvyReportGenerator(
+					resolveId, confs, resolutionCacheRoot, targetDir);
+			ivyReportGenerator.setExecutor(getRenderingExecutor());
+			if (htmlStylesheet != null) {
+				ivyReportGenerator.setHtmlStylesheet(new File(htmlStylesheet));
+			}
+			ivyReportGenerator
+					.setGraphRenderer(createGraphRenderer(graphRenderer));
+			ivyReportGenerator.setGraphReduction(graphReduction);
+			ivyReportGenerator.setPagedHtml(pagedHtml);
+			ivyReportGenerator.setKeepDotFiles(isKeepDotFiles());
+			ivyReportGenerator.setCompress(true);
+			ivyReportGenerator.setAssetsUrl(assetsUrl);
+			ivyReportGenerator.setLayoutTimeout(getLayoutTimeout() * 1000L);
+			return ivyReportGenerator;
+		}
+
+		/**
+		 * Add the settings a report is rendered with to a digest, so that it
+		 * changes when the report would be rendered differently
+		 * 
+		 * @param graphRenderer
+		 *            the renderer id or null to use the default renderer
+		 */
+		void addSettings(ResolveReportDigest digest, String graphRenderer,
+				GraphReduction graphReduction, boolean pagedHtml,
+				String assetsUrl) {
+			PluginWrapper plugin = Hudson.getInstance().getPluginManager()
+					.getPlugin("ivy-report-plugin");
+			digest.add(plugin == null ? null : plugin.getVersion());
+			digest.add(graphRenderer == null ? getDefaultGraphRenderer()
+					: graphRenderer);
+			digest.add(graphReduction.getDescription());
+			digest.add(String.valueOf(pagedHtml));
+			digest.add(getDotExeOrDefault());
+			digest.add(String.valueOf(isKeepDotFiles()));
+			digest.add(assetsUrl);
+			digest.add(String.valueOf(getLayoutTimeout()));
+			digest.add(htmlStylesheet);
+			if (htmlStylesheet != null) {
+				digest.add(String.valueOf(new File(htmlStylesheet)
+						.lastModified()));
+			}
+		}
+
+		/**
+		 * @return the value, or 0 if it is not a positive integer
+		 */
+		static int parsePositiveInt(String value) {
+			try {
+				return Math.max(0,
+						Integer.parseInt(Util.fixEmptyAndTrim(value)));
+			} catch (NumberFormatException e) {
+				return 0;
+			}
+		}
+
+	}
+
+	private static class RenderingThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Ivy report renderer #"
+					+ threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+
 	}
 
 }
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+
+import java.util.List;
+
+/**
+ * Management page with the rolling statistics of the ivy report publications
+ * of all the jobs
+ */
+@Extension
+public class IvyReportStatisticsLink extends ManagementLink {
+	private static final String ICON_FILENAME = "/plugin/ivy-report-plugin/ivyReport.png";
+	private static final int SLOWEST_PUBLICATIONS = 20;
+	private static final int[] PERCENTILES = { 50, 90, 99 };
+
+	@Override
+	public String getIconFileName() {
+		return ICON_FILENAME;
+	}
+
+	public String getDisplayName() {
+		return "Ivy report statistics";
+	}
+
+	@Override
+	public String getDescription() {
+		return "Time spent publishing ivy reports, by phase, and the slowest jobs.";
+	}
+
+	@Override
+	public String getUrlName() {
+		return "ivy-report-statistics";
+	}
+
+	public int[] getPercentiles() {
+		return PERCENTILES;
+	}
+
+	public int getWindow() {
+		return PublishStatistics.WINDOW;
+	}
+
+	/**
+	 * @return the number of reports queued or being published in the
+	 *         background
+	 */
+	public int getQueueSize() {
+		return IvyReportPublishQueue.getInstance().getSize();
+	}
+
+	public List<PublishStatistics.PhaseStatistics> getPhaseStatistics() {
+		return PublishStatistics.getInstance().getPhaseStatistics();
+	}
+
+	public List<PublishStatistics.Publication> getSlowestPublications() {
+		return PublishStatistics.getInstance().getSlowestPublications(
+				SLOWEST_PUBLICATIONS);
+	}
+
+}
@@ -0,0 +1,802 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Layered (Sugiyama style) layout of a {@link DotGraph} :
+ * <ol>
+ * <li>cycles are broken by reversing the back edges of a depth first search</li>
+ * <li>nodes are assigned to layers using the longest path from the sources
+ * and edges spanning several layers are split using virtual nodes</li>
+ * <li>crossings are reduced using barycenter sweeps, keeping the best ordering
+ * found</li>
+ * <li>nodes are positioned in their layer as close as possible to their
+ * neighbours while respecting the node separation</li>
+ * </ol>
+ * Coordinates are in points, like the ones computed by dot.
+ */
+public class LayeredGraphLayout {
+	private static final double POINTS_PER_INCH = 72;
+	private static final double MARGIN = 8;
+	private static final double ARROW_LENGTH = 10;
+	private static final int ORDERING_ITERATIONS = 24;
+	private static final int POSITIONING_ITERATIONS = 8;
+	private static final double VIRTUAL_NODE_WEIGHT = 4;
+
+	private final DotGraph graph;
+	private final boolean leftToRight;
+	private final boolean flipped;
+	private final double nodeSeparation;
+	private final double rankSeparation;
+
+	// real nodes
+	private final int nodeCount;
+	private final String[][] labels;
+	private final double[] widths;
+	private final double[] heights;
+	private final double[] centerXs;
+	private final double[] centerYs;
+
+	// layered graph, including virtual nodes
+	private int vertexCount;
+	private int[] layerOf;
+	private double[] breadths;
+	private int[][] upperNeighbours;
+	private int[][] lowerNeighbours;
+	private int[][] layers;
+	private int[] positions;
+	private double[] coordinates;
+	private double[] rankCoordinates;
+
+	// edges : the layered vertices they go through
+	private final List<DotGraph.Edge> edges = new ArrayList<DotGraph.Edge>();
+	private final List<int[]> edgeChains = new ArrayList<int[]>();
+	private final List<double[]> edgePaths = new ArrayList<double[]>();
+	private boolean[] reversedEdges;
+
+	private double width;
+	private double height;
+
+	public LayeredGraphLayout(DotGraph graph) {
+		this.graph = graph;
+		String rankdir = graph.getAttribute("rankdir", "TB").toUpperCase();
+		this.leftToRight = rankdir.equals("LR") || rankdir.equals("RL");
+		this.flipped = rankdir.equals("RL") || rankdir.equals("BT");
+		this.nodeSeparation = parseInches(graph.getAttribute("nodesep", null),
+				0.25);
+		this.rankSeparation = parseInches(graph.getAttribute("ranksep", null),
+				0.5);
+		this.nodeCount = graph.getNodes().size();
+		this.labels = new String[nodeCount][];
+		this.widths = new double[nodeCount];
+		this.heights = new double[nodeCount];
+		this.centerXs = new double[nodeCount];
+		this.centerYs = new double[nodeCount];
+	}
+
+	public DotGraph getGraph() {
+		return graph;
+	}
+
+	public double getWidth() {
+		return width;
+	}
+
+	public double getHeight() {
+		return height;
+	}
+
+	public String[] getLabelLines(DotGraph.Node node) {
+		return labels[node.getIndex()];
+	}
+
+	public double getCenterX(DotGraph.Node node) {
+		return centerXs[node.getIndex()];
+	}
+
+	public double getCenterY(DotGraph.Node node) {
+		return centerYs[node.getIndex()];
+	}
+
+	public double getWidth(DotGraph.Node node) {
+		return widths[node.getIndex()];
+	}
+
+	public double getHeight(DotGraph.Node node) {
+		return heights[node.getIndex()];
+	}
+
+	/**
+	 * @return the edges that have been laid out, self loops are ignored
+	 */
+	public List<DotGraph.Edge> getEdges() {
+		return edges;
+	}
+
+	/**
+	 * @return the path of the edge : a start point followed by cubic bezier
+	 *         segments (two control points and an end point), as x,y pairs.
+	 *         The path ends where the arrow head starts.
+	 */
+	public double[] getEdgePath(int edgeIndex) {
+		return edgePaths.get(edgeIndex);
+	}
+
+	public void layout() throws InterruptedException {
+		computeNodeSizes();
+		int[] edgeTails = new int[graph.getEdges().size()];
+		int[] edgeHeads = new int[graph.getEdges().size()];
+		for (DotGraph.Edge edge : graph.getEdges()) {
+			if (edge.getTail() == edge.getHead()) {
+				continue;
+			}
+			edgeTails[edges.size()] = edge.getTail().getIndex();
+			edgeHeads[edges.size()] = edge.getHead().getIndex();
+			edges.add(edge);
+		}
+		int edgeCount = edges.size();
+		reversedEdges = removeCycles(edgeTails, edgeHeads, edgeCount);
+		int[] nodeLayers = assignLayers(edgeTails, edgeHeads, reversedEdges,
+				edgeCount);
+		buildLayeredGraph(edgeTails, edgeHeads, reversedEdges, edgeCount,
+				nodeLayers);
+		orderLayers();
+		assignCoordinates();
+		computeEdgePaths();
+	}
+
+	private void computeNodeSizes() {
+		for (DotGraph.Node node : graph.getNodes()) {
+			int i = node.getIndex();
+			labels[i] = getLabelLines(node.getAttribute("label", "\\N"),
+					node.getId());
+			double fontSize = parseDouble(node.getAttribute("fontsize", null),
+					14);
+			int maxLength = 0;
+			for (String line : labels[i]) {
+				maxLength = Math.max(maxLength, line.length());
+			}
+			double textWidth = maxLength * fontSize * 0.6 + 16;
+			double textHeight = labels[i].length * fontSize * 1.2 + 8;
+			String shape = node.getAttribute("shape", "ellipse");
+			if (isEllipse(shape)) {
+				textWidth *= 1.3;
+				textHeight *= 1.3;
+			}
+			widths[i] = Math.max(textWidth,
+					parseInches(node.getAttribute("width", null), 0.75));
+			heights[i] = Math.max(textHeight,
+					parseInches(node.getAttribute("height", null), 0.5));
+		}
+	}
+
+	static boolean isEllipse(String shape) {
+		return shape.equals("ellipse") || shape.equals("oval")
+				|| shape.equals("circle");
+	}
+
+	/**
+	 * Depth first search marking the edges going back to a node being
+	 * visited
+	 */
+	private boolean[] removeCycles(int[] edgeTails, int[] edgeHeads,
+			int edgeCount) {
+		int[][] outEdges = buildEdgeLists(edgeTails, edgeCount);
+		boolean[] reversed = new boolean[edgeCount];
+		int[] state = new int[nodeCount];
+		int[] stackNodes = new int[nodeCount];
+		int[] stackNext = new int[nodeCount];
+		for (int root = 0; root < nodeCount; root++) {
+			if (state[root] != 0) {
+				continue;
+			}
+			int top = 0;
+			stackNodes[0] = root;
+			stackNext[0] = 0;
+			state[root] = 1;
+			while (top >= 0) {
+				int node = stackNodes[top];
+				if (stackNext[top] == outEdges[node].length) {
+					state[node] = 2;
+					top--;
+					continue;
+				}
+				int edge = outEdges[node][stackNext[top]++];
+				int head = edgeHeads[edge];
+				if (state[head] == 1) {
+					reversed[edge] = true;
+				} else if (state[head] == 0) {
+					state[head] = 1;
+					top++;
+					stackNodes[top] = head;
+					stackNext[top] = 0;
+				}
+			}
+		}
+		return reversed;
+	}
+
+	/**
+	 * Longest path layering. Sources that are not the roots of the graph are
+	 * then moved down, next to their highest successor.
+	 */
+	private int[] assignLayers(int[] edgeTails, int[] edgeHeads,
+			boolean[] reversed, int edgeCount) {
+		int[] from = new int[edgeCount];
+		int[] to = new int[edgeCount];
+		int[] inDegrees = new int[nodeCount];
+		for (int e = 0; e < edgeCount; e++) {
+			from[e] = reversed[e] ? edgeHeads[e] : edgeTails[e];
+			to[e] = reversed[e] ? edgeTails[e] : edgeHeads[e];
+			inDegrees[to[e]]++;
+		}
+		int[][] outEdges = buildEdgeLists(from, edgeCount);
+		int[] nodeLayers = new int[nodeCount];
+		int[] topologicalOrder = new int[nodeCount];
+		int head = 0;
+		int tail = 0;
+		int[] remaining = inDegrees.clone();
+		for (int i = 0; i < nodeCount; i++) {
+			if (remaining[i] == 0) {
+				topologicalOrder[tail++] = i;
+			}
+		}
+		while (head < tail) {
+			int node = topologicalOrder[head++];
+			for (int edge : outEdges[node]) {
+				int successor = to[edge];
+				nodeLayers[successor] = Math.max(nodeLayers[successor],
+						nodeLayers[node] + 1);
+				if (--remaining[successor] == 0) {
+					topologicalOrder[tail++] = successor;
+				}
+			}
+		}
+		boolean rootFound = false;
+		for (int i = tail - 1; i >= 0; i--) {
+			int node = topologicalOrder[i];
+			if (inDegrees[node] != 0 || outEdges[node].length == 0) {
+				continue;
+			}
+			if (!rootFound && isFirstSource(node, inDegrees)) {
+				rootFound = true;
+				continue;
+			}
+			int layer = Integer.MAX_VALUE;
+			for (int edge : outEdges[node]) {
+				layer = Math.min(layer, nodeLayers[to[edge]] - 1);
+			}
+			nodeLayers[node] = layer;
+		}
+		return nodeLayers;
+	}
+
+	private boolean isFirstSource(int node, int[] inDegrees) {
+		for (int i = 0; i < node; i++) {
+			if (inDegrees[i] == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void buildLayeredGraph(int[] edgeTails, int[] edgeHeads,
+			boolean[] reversed, int edgeCount, int[] nodeLayers) {
+		int virtualCount = 0;
+		for (int e = 0; e < edgeCount; e++) {
+			int span = Math.abs(nodeLayers[edgeHeads[e]]
+					- nodeLayers[edgeTails[e]]);
+			virtualCount += Math.max(0, span - 1);
+		}
+		vertexCount = nodeCount + virtualCount;
+		layerOf = new int[vertexCount];
+		breadths = new double[vertexCount];
+		int layerCount = 0;
+		for (int i = 0; i < nodeCount; i++) {
+			layerOf[i] = nodeLayers[i];
+			breadths[i] = leftToRight ? heights[i] : widths[i];
+			layerCount = Math.max(layerCount, nodeLayers[i] + 1);
+		}
+		int[] segmentUppers = new int[edgeCount + virtualCount];
+		int[] segmentLowers = new int[edgeCount + virtualCount];
+		int segmentCount = 0;
+		int nextVirtual = nodeCount;
+		for (int e = 0; e < edgeCount; e++) {
+			int upper = reversed[e] ? edgeHeads[e] : edgeTails[e];
+			int lower = reversed[e] ? edgeTails[e] : edgeHeads[e];
+			int span = layerOf[lower] - layerOf[upper];
+			int[] chain = new int[span + 1];
+			chain[0] = upper;
+			chain[span] = lower;
+			for (int i = 1; i < span; i++) {
+				chain[i] = nextVirtual;
+				layerOf[nextVirtual] = layerOf[upper] + i;
+				nextVirtual++;
+			}
+			for (int i = 0; i < span; i++) {
+				segmentUppers[segmentCount] = chain[i];
+				segmentLowers[segmentCount] = chain[i + 1];
+				segmentCount++;
+			}
+			edgeChains.add(chain);
+		}
+		lowerNeighbours = buildNeighbourLists(segmentUppers, segmentLowers,
+				segmentCount);
+		upperNeighbours = buildNeighbourLists(segmentLowers, segmentUppers,
+				segmentCount);
+		layers = initialOrdering(layerCount);
+		positions = new int[vertexCount];
+		updatePositions();
+	}
+
+	/**
+	 * Breadth first ordering : the vertices of a layer are sorted by the
+	 * first time they are reached from the previous layer
+	 */
+	private int[][] initialOrdering(int layerCount) {
+		int[] layerSizes = new int[layerCount];
+		for (int v = 0; v < vertexCount; v++) {
+			layerSizes[layerOf[v]]++;
+		}
+		int[][] result = new int[layerCount][];
+		for (int l = 0; l < layerCount; l++) {
+			result[l] = new int[layerSizes[l]];
+		}
+		int[] filled = new int[layerCount];
+		boolean[] placed = new boolean[vertexCount];
+		for (int v = 0; v < nodeCount; v++) {
+			if (layerOf[v] == 0) {
+				result[0][filled[0]++] = v;
+				placed[v] = true;
+			}
+		}
+		for (int l = 1; l < layerCount; l++) {
+			for (int u : result[l - 1]) {
+				for (int v : lowerNeighbours[u]) {
+					if (!placed[v]) {
+						placed[v] = true;
+						result[l][filled[l]++] = v;
+					}
+				}
+			}
+			for (int v = 0; v < vertexCount; v++) {
+				if (layerOf[v] == l && !placed[v]) {
+					placed[v] = true;
+					result[l][filled[l]++] = v;
+				}
+			}
+		}
+		return result;
+	}
+
+	private void orderLayers() throws InterruptedException {
+		int[][] best = copyLayers();
+		long bestCrossings = countCrossings();
+		final double[] barycenters = new double[vertexCount];
+		for (int iteration = 0; iteration < ORDERING_ITERATIONS
+				&& bestCrossings > 0; iteration++) {
+			checkInterrupted();
+			boolean down = iteration % 2 == 0;
+			if (down) {
+				for (int l = 1; l < layers.length; l++) {
+					sortByBarycenter(layers[l], upperNeighbours, barycenters);
+				}
+			} else {
+				for (int l = layers.length - 2; l >= 0; l--) {
+					sortByBarycenter(layers[l], lowerNeighbours, barycenters);
+				}
+			}
+			long crossings = countCrossings();
+			if (crossings < bestCrossings) {
+				bestCrossings = crossings;
+				best = copyLayers();
+			}
+		}
+		layers = best;
+		updatePositions();
+	}
+
+	private void sortByBarycenter(int[] layer, int[][] neighbours,
+			final double[] barycenters) {
+		for (int v : layer) {
+			if (neighbours[v].length == 0) {
+				barycenters[v] = positions[v];
+				continue;
+			}
+			double sum = 0;
+			for (int n : neighbours[v]) {
+				sum += positions[n];
+			}
+			barycenters[v] = sum / neighbours[v].length;
+		}
+		Integer[] sorted = new Integer[layer.length];
+		for (int i = 0; i < layer.length; i++) {
+			sorted[i] = layer[i];
+		}
+		// stable sort, vertices with the same barycenter keep their order
+		Arrays.sort(sorted, new java.util.Comparator<Integer>() {
+			public int compare(Integer v1, Integer v2) {
+				return Double.compare(barycenters[v1], barycenters[v2]);
+			}
+		});
+		for (int i = 0; i < layer.length; i++) {
+			layer[i] = sorted[i];
+			positions[layer[i]] = i;
+		}
+	}
+
+	/**
+	 * Count the crossings between all the pairs of adjacent layers, using an
+	 * accumulator tree for each pair (Barth, Juenger and Mutzel)
+	 */
+	private long countCrossings() {
+		long crossings = 0;
+		for (int l = 0; l < layers.length - 1; l++) {
+			int lowerSize = layers[l + 1].length;
+			long[] tree = new long[lowerSize + 1];
+			long inserted = 0;
+			for (int u : layers[l]) {
+				int[] lowers = new int[lowerNeighbours[u].length];
+				for (int i = 0; i < lowers.length; i++) {
+					lowers[i] = positions[lowerNeighbours[u][i]];
+				}
+				Arrays.sort(lowers);
+				for (int position : lowers) {
+					// number of inserted edges ending strictly after position
+					long notAfter = 0;
+					for (int i = position + 1; i > 0; i -= i & -i) {
+						notAfter += tree[i];
+					}
+					crossings += inserted - notAfter;
+					for (int i = position + 1; i <= lowerSize; i += i & -i) {
+						tree[i]++;
+					}
+					inserted++;
+				}
+			}
+		}
+		return crossings;
+	}
+
+	private int[][] copyLayers() {
+		int[][] copy = new int[layers.length][];
+		for (int l = 0; l < layers.length; l++) {
+			copy[l] = layers[l].clone();
+		}
+		return copy;
+	}
+
+	private void updatePositions() {
+		for (int[] layer : layers) {
+			for (int i = 0; i < layer.length; i++) {
+				positions[layer[i]] = i;
+			}
+		}
+	}
+
+	/**
+	 * Place the vertices along their layer, each one as close as possible to
+	 * the mean of its neighbours. Keeping the order and the minimum separation
+	 * is an isotonic regression, solved with the pool adjacent violators
+	 * algorithm.
+	 */
+	private void assignCoordinates() throws InterruptedException {
+		coordinates = new double[vertexCount];
+		for (int[] layer : layers) {
+			double position = 0;
+			for (int i = 0; i < layer.length; i++) {
+				if (i > 0) {
+					position += separation(layer[i - 1], layer[i]);
+				}
+				coordinates[layer[i]] = position;
+			}
+		}
+		for (int iteration = 0; iteration < POSITIONING_ITERATIONS; iteration++) {
+			checkInterrupted();
+			boolean both = iteration >= POSITIONING_ITERATIONS - 2;
+			if (iteration % 2 == 0) {
+				for (int l = 1; l < layers.length; l++) {
+					placeLayer(layers[l], upperNeighbours,
+							both ? lowerNeighbours : null);
+				}
+			} else {
+				for (int l = layers.length - 2; l >= 0; l--) {
+					placeLayer(layers[l], lowerNeighbours,
+							both ? upperNeighbours : null);
+				}
+			}
+		}
+		double min = Double.MAX_VALUE;
+		for (int v = 0; v < vertexCount; v++) {
+			min = Math.min(min, coordinates[v] - breadths[v] / 2);
+		}
+		for (int v = 0; v < vertexCount; v++) {
+			coordinates[v] += MARGIN - min;
+		}
+
+		rankCoordinates = new double[layers.length];
+		double position = MARGIN;
+		for (int l = 0; l < layers.length; l++) {
+			double depth = 0;
+			for (int v : layers[l]) {
+				if (v < nodeCount) {
+					depth = Math.max(depth, leftToRight ? widths[v]
+							: heights[v]);
+				}
+			}
+			rankCoordinates[l] = position + depth / 2;
+			position += depth + rankSeparation;
+		}
+
+		double maxCoordinate = 0;
+		for (int v = 0; v < vertexCount; v++) {
+			maxCoordinate = Math.max(maxCoordinate, coordinates[v]
+					+ breadths[v] / 2);
+		}
+		double breadth = maxCoordinate + MARGIN;
+		double depth = position - rankSeparation + MARGIN;
+		width = leftToRight ? depth : breadth;
+		height = leftToRight ? breadth : depth;
+		for (int v = 0; v < nodeCount; v++) {
+			centerXs[v] = x(coordinates[v], rankCoordinates[layerOf[v]]);
+			centerYs[v] = y(coordinates[v], rankCoordinates[layerOf[v]]);
+		}
+	}
+
+	private double separation(int v1, int v2) {
+		double gap = (v1 < nodeCount && v2 < nodeCount) ? nodeSeparation
+				: nodeSeparation / 2;
+		return (breadths[v1] + breadths[v2]) / 2 + gap;
+	}
+
+	private void placeLayer(int[] layer, int[][] neighbours,
+			int[][] otherNeighbours) {
+		int size = layer.length;
+		if (size == 0) {
+			return;
+		}
+		double[] targets = new double[size];
+		double[] weights = new double[size];
+		double offset = 0;
+		for (int i = 0; i < size; i++) {
+			int v = layer[i];
+			if (i > 0) {
+				offset += separation(layer[i - 1], v);
+			}
+			double sum = 0;
+			int count = 0;
+			for (int n : neighbours[v]) {
+				sum += coordinates[n];
+				count++;
+			}
+			if (otherNeighbours != null) {
+				for (int n : otherNeighbours[v]) {
+					sum += coordinates[n];
+					count++;
+				}
+			}
+			double target = count == 0 ? coordinates[v] : sum / count;
+			targets[i] = target - offset;
+			weights[i] = v < nodeCount ? 1 : VIRTUAL_NODE_WEIGHT;
+		}
+		// pool adjacent violators
+		double[] blockValues = new double[size];
+		double[] blockWeights = new double[size];
+		int[] blockSizes = new int[size];
+		int blocks = 0;
+		for (int i = 0; i < size; i++) {
+			blockValues[blocks] = targets[i];
+			blockWeights[blocks] = weights[i];
+			blockSizes[blocks] = 1;
+			blocks++;
+			while (blocks > 1
+					&& blockValues[blocks - 2] > blockValues[blocks - 1]) {
+				double weight = blockWeights[blocks - 2]
+						+ blockWeights[blocks - 1];
+				blockValues[blocks - 2] = (blockValues[blocks - 2]
+						* blockWeights[blocks - 2] + blockValues[blocks - 1]
+						* blockWeights[blocks - 1])
+						/ weight;
+				blockWeights[blocks - 2] = weight;
+				blockSizes[blocks - 2] += blockSizes[blocks - 1];
+				blocks--;
+			}
+		}
+		offset = 0;
+		int i = 0;
+		for (int b = 0; b < blocks; b++) {
+			for (int k = 0; k < blockSizes[b]; k++, i++) {
+				if (i > 0) {
+					offset += separation(layer[i - 1], layer[i]);
+				}
+				coordinates[layer[i]] = blockValues[b] + offset;
+			}
+		}
+	}
+
+	private void computeEdgePaths() {
+		for (int e = 0; e < edgeChains.size(); e++) {
+			int[] chain = edgeChains.get(e);
+			double[] points = new double[2 * (3 * chain.length - 2)];
+			int p = 0;
+			double previousRank = 0;
+			for (int i = 0; i < chain.length; i++) {
+				int v = chain[i];
+				double rank = rankCoordinates[layerOf[v]];
+				double depth = v < nodeCount ? (leftToRight ? widths[v]
+						: heights[v]) : 0;
+				double entryRank = rank - depth / 2;
+				double exitRank = rank + depth / 2;
+				if (i > 0) {
+					double middle = (previousRank + entryRank) / 2;
+					double previousCoordinate = coordinates[chain[i - 1]];
+					points[p++] = x(previousCoordinate, middle);
+					points[p++] = y(previousCoordinate, middle);
+					points[p++] = x(coordinates[v], middle);
+					points[p++] = y(coordinates[v], middle);
+					points[p++] = x(coordinates[v], entryRank);
+					points[p++] = y(coordinates[v], entryRank);
+				}
+				if (i == 0) {
+					points[p++] = x(coordinates[v], exitRank);
+					points[p++] = y(coordinates[v], exitRank);
+				}
+				previousRank = exitRank;
+			}
+			if (reversedEdges[e]) {
+				reversePoints(points);
+			}
+			shortenForArrow(points);
+			edgePaths.add(points);
+		}
+	}
+
+	private void reversePoints(double[] points) {
+		int n = points.length / 2;
+		for (int i = 0; i < n / 2; i++) {
+			int j = n - 1 - i;
+			double x = points[2 * i];
+			double y = points[2 * i + 1];
+			points[2 * i] = points[2 * j];
+			points[2 * i + 1] = points[2 * j + 1];
+			points[2 * j] = x;
+			points[2 * j + 1] = y;
+		}
+	}
+
+	private void shortenForArrow(double[] points) {
+		int n = points.length;
+		double dx = points[n - 2] - points[n - 4];
+		double dy = points[n - 1] - points[n - 3];
+		double length = Math.sqrt(dx * dx + dy * dy);
+		if (length < 0.01) {
+			dx = points[n - 2] - points[0];
+			dy = points[n - 1] - points[1];
+			length = Math.sqrt(dx * dx + dy * dy);
+			if (length < 0.01) {
+				return;
+			}
+		}
+		double shortening = Math.min(ARROW_LENGTH, length / 2);
+		points[n - 2] -= dx / length * shortening;
+		points[n - 1] -= dy / length * shortening;
+	}
+
+	private double x(double coordinate, double rank) {
+		double x = leftToRight ? rank : coordinate;
+		return flipped && leftToRight ? width - x : x;
+	}
+
+	private double y(double coordinate, double rank) {
+		double y = leftToRight ? coordinate : rank;
+		return flipped && !leftToRight ? height - y : y;
+	}
+
+	private int[][] buildEdgeLists(int[] edgeSources, int edgeCount) {
+		int[] counts = new int[nodeCount];
+		for (int e = 0; e < edgeCount; e++) {
+			counts[edgeSources[e]]++;
+		}
+		int[][] lists = new int[nodeCount][];
+		for (int i = 0; i < nodeCount; i++) {
+			lists[i] = new int[counts[i]];
+			counts[i] = 0;
+		}
+		for (int e = 0; e < edgeCount; e++) {
+			lists[edgeSources[e]][counts[edgeSources[e]]++] = e;
+		}
+		return lists;
+	}
+
+	private int[][] buildNeighbourLists(int[] sources, int[] targets,
+			int count) {
+		int[] counts = new int[vertexCount];
+		for (int i = 0; i < count; i++) {
+			counts[sources[i]]++;
+		}
+		int[][] lists = new int[vertexCount][];
+		for (int v = 0; v < vertexCount; v++) {
+			lists[v] = new int[counts[v]];
+			counts[v] = 0;
+		}
+		for (int i = 0; i < count; i++) {
+			lists[sources[i]][counts[sources[i]]++] = targets[i];
+		}
+		return lists;
+	}
+
+	private static void checkInterrupted() throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	/**
+	 * Split a dot label into lines, interpreting the \N, \n, \l and \r escapes
+	 */
+	static String[] getLabelLines(String label, String nodeId) {
+		List<String> lines = new ArrayList<String>();
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < label.length(); i++) {
+			char c = label.charAt(i);
+			if (c != '\\' || i == label.length() - 1) {
+				line.append(c);
+				continue;
+			}
+			char next = label.charAt(++i);
+			if (next == 'n' || next == 'l' || next == 'r') {
+				lines.add(line.toString());
+				line.setLength(0);
+			} else if (next == 'N') {
+				line.append(nodeId);
+			} else {
+				line.append(next);
+			}
+		}
+		if (line.length() > 0 || lines.isEmpty()) {
+			lines.add(line.toString());
+		}
+		return lines.toArray(new String[lines.size()]);
+	}
+
+	static double parseDouble(String value, double defaultValue) {
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Double.parseDouble(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private static double parseInches(String value, double defaultValue) {
+		return parseDouble(value, defaultValue) * POINTS_PER_INCH;
+	}
+
+}
@@ -0,0 +1,53 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Render graphs inside the jvm using a {@link LayeredGraphLayout}. Graphviz
+ * does not need to be installed.
+ */
+public class LayeredGraphRenderer implements GraphRenderer {
+	private static final long serialVersionUID = 2284786458745098232L;
+	public static final String ID = "java";
+
+	public void render(InputStream dot, OutputStream svg) throws IOException,
+			InterruptedException {
+		DotGraph graph = new DotParser(new BufferedReader(
+				new InputStreamReader(dot, "UTF-8"))).parse();
+		LayeredGraphLayout layout = new LayeredGraphLayout(graph);
+		layout.layout();
+		Writer writer = new OutputStreamWriter(svg, "UTF-8");
+		new SvgGraphWriter(writer).write(layout);
+		writer.flush();
+	}
+
+}
@@ -0,0 +1,212 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rolling statistics of the ivy report publications of all the jobs, since
+ * startup.
+ * <p>
+ * The durations of the last {@link #WINDOW} publications of each phase are
+ * kept to compute percentiles, as well as the last publications to find the
+ * slowest jobs.
+ */
+public class PublishStatistics {
+	public static final int WINDOW = 1000;
+	private static final PublishStatistics INSTANCE = new PublishStatistics();
+
+	// phase name -> samples, in the order the phases were first seen
+	private final Map<String, Samples> phases = new LinkedHashMap<String, Samples>();
+	private final Publication[] publications = new Publication[WINDOW];
+	private int publicationCount;
+
+	public static PublishStatistics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * The durations and bytes of a phase, in a ring buffer
+	 */
+	private static class Samples {
+		private final long[] times = new long[WINDOW];
+		private final long[] bytes = new long[WINDOW];
+		private int count;
+
+		private void add(long time, long bytes) {
+			this.times[count % WINDOW] = time;
+			this.bytes[count % WINDOW] = bytes;
+			count++;
+		}
+	}
+
+	/**
+	 * Statistics of a phase over the window
+	 */
+	public static class PhaseStatistics {
+		private final String name;
+		private final int count;
+		private final long[] sortedTimes;
+		private final long totalBytes;
+		private final int bytesCount;
+
+		private PhaseStatistics(String name, Samples samples) {
+			this.name = name;
+			this.count = Math.min(samples.count, WINDOW);
+			this.sortedTimes = Arrays.copyOf(samples.times, count);
+			Arrays.sort(sortedTimes);
+			long total = 0;
+			int withBytes = 0;
+			for (int i = 0; i < count; i++) {
+				if (samples.bytes[i] >= 0) {
+					total += samples.bytes[i];
+					withBytes++;
+				}
+			}
+			this.totalBytes = total;
+			this.bytesCount = withBytes;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the number of samples in the window
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * @param percentile
+		 *            between 0 and 100
+		 * @return the duration in ms under which this percentage of the
+		 *         samples fall (nearest rank)
+		 */
+		public long getPercentile(int percentile) {
+			if (count == 0) {
+				return 0;
+			}
+			int rank = (int) Math.ceil(percentile / 100.0 * count);
+			return sortedTimes[Math.max(rank, 1) - 1];
+		}
+
+		public long getMax() {
+			return count == 0 ? 0 : sortedTimes[count - 1];
+		}
+
+		/**
+		 * @return the mean number of bytes or -1 if the phase has no size
+		 */
+		public long getMeanBytes() {
+			return bytesCount == 0 ? -1 : totalBytes / bytesCount;
+		}
+	}
+
+	/**
+	 * A publication of a report
+	 */
+	public static class Publication {
+		private final String job;
+		private final int buildNumber;
+		private final long time;
+
+		private Publication(String job, int buildNumber, long time) {
+			this.job = job;
+			this.buildNumber = buildNumber;
+			this.time = time;
+		}
+
+		public String getJob() {
+			return job;
+		}
+
+		public int getBuildNumber() {
+			return buildNumber;
+		}
+
+		/**
+		 * @return the total time of the publication, in ms
+		 */
+		public long getTime() {
+			return time;
+		}
+	}
+
+	public synchronized void record(String job, int buildNumber,
+			PublishTimings timings) {
+		long total = 0;
+		for (PublishTimings.Phase phase : timings.getPhases()) {
+			// the phases of the configurations are grouped by name
+			Samples samples = phases.get(phase.getName());
+			if (samples == null) {
+				samples = new Samples();
+				phases.put(phase.getName(), samples);
+			}
+			samples.add(phase.getTime(), phase.getBytes());
+			if (phase.getName().equals(PublishTimings.TOTAL)) {
+				total = phase.getTime();
+			}
+		}
+		publications[publicationCount % WINDOW] = new Publication(job,
+				buildNumber, total);
+		publicationCount++;
+	}
+
+	public synchronized List<PhaseStatistics> getPhaseStatistics() {
+		List<PhaseStatistics> result = new ArrayList<PhaseStatistics>();
+		for (Map.Entry<String, Samples> entry : phases.entrySet()) {
+			result.add(new PhaseStatistics(entry.getKey(), entry.getValue()));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the slowest of the last {@link #WINDOW} publications, slowest
+	 *         first
+	 */
+	public synchronized List<Publication> getSlowestPublications(int max) {
+		List<Publication> result = new ArrayList<Publication>();
+		for (int i = 0; i < Math.min(publicationCount, WINDOW); i++) {
+			result.add(publications[i]);
+		}
+		Collections.sort(result, new Comparator<Publication>() {
+			public int compare(Publication publication1,
+					Publication publication2) {
+				return publication1.getTime() < publication2.getTime() ? 1
+						: publication1.getTime() == publication2.getTime() ? 0
+								: -1;
+			}
+		});
+		return result.subList(0, Math.min(max, result.size()));
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Time spent and bytes produced or transferred by each phase of the
+ * publication of an ivy report
+ */
+@ExportedBean
+public class PublishTimings implements Serializable {
+	private static final long serialVersionUID = 1L;
+	public static final String TOTAL = "total";
+	private final List<Phase> phases = new ArrayList<Phase>();
+
+	@ExportedBean
+	public static class Phase implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final String name;
+		private final String conf;
+		private final long time;
+		private final long bytes;
+
+		public Phase(String name, String conf, long time, long bytes) {
+			this.name = name;
+			this.conf = conf;
+			this.time = time;
+			this.bytes = bytes;
+		}
+
+		@Exported
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the configuration or null for a phase of the whole report
+		 */
+		@Exported
+		public String getConf() {
+			return conf;
+		}
+
+		/**
+		 * @return the duration, in ms
+		 */
+		@Exported
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * @return the bytes produced or transferred, -1 if not applicable
+		 */
+		@Exported
+		public long getBytes() {
+			return bytes;
+		}
+	}
+
+	/**
+	 * @param start
+	 *            the start time of the phase, as returned by
+	 *            {@link System#currentTimeMillis()}
+	 */
+	public synchronized void add(String name, String conf, long start,
+			long bytes) {
+		phases.add(new Phase(name, conf, System.currentTimeMillis() - start,
+				bytes));
+	}
+
+	public synchronized void addAll(PublishTimings timings) {
+		phases.addAll(timings.getPhases());
+	}
+
+	@Exported
+	public synchronized List<Phase> getPhases() {
+		return new ArrayList<Phase>(phases);
+	}
+
+	public synchronized boolean isEmpty() {
+		return phases.isEmpty();
+	}
+
+	public void print(PrintStream out) {
+		out.println("Ivy report phases :");
+		for (Phase phase : getPhases()) {
+			out.println("  " + phase.getName()
+					+ (phase.getConf() == null ? "" : " [" + phase.getConf() + "]")
+					+ " : " + phase.getTime() + " ms"
+					+ (phase.getBytes() < 0 ? "" : ", " + phase.getBytes() + " bytes"));
+		}
+	}
+
+}
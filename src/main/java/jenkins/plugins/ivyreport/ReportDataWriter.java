@@ -0,0 +1,225 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the data of the paged html report of a configuration, see
+ * {@link HtmlReportWriter#setPaged(String, String, String)}.
+ * <p>
+ * The data is a json array with a row per module :
+ * <code>[organisation, name, [[revision, status, flags, size in kB, callers], ...]]</code>
+ * where the flags contain 's' for searched, 'd' for downloaded, 'e' for
+ * evicted and 'x' for error. The search index is a json object with the
+ * sorted lower case words of the organisations and names of the modules, and
+ * the modules of each word :
+ * <code>{"words":[...], "modules":[[...], ...]}</code>. A word is either a
+ * whole organisation or name, or a part of it between punctuation, so that
+ * a prefix search finds "commons-lang" from "lang".
+ */
+public class ReportDataWriter {
+	private final ResolveReport report;
+
+	public ReportDataWriter(ResolveReport report) {
+		this.report = report;
+	}
+
+	public void writeData(Writer out) throws IOException {
+		out.write('[');
+		for (int m = 0; m < report.getModuleCount(); m++) {
+			if (m > 0) {
+				out.write(",\n");
+			}
+			out.write('[');
+			string(out, report.getModuleOrganisation(m));
+			out.write(',');
+			string(out, report.getModuleName(m));
+			out.write(",[");
+			for (int r = report.getFirstRevision(m); r < report
+					.getEndRevision(m); r++) {
+				if (r > report.getFirstRevision(m)) {
+					out.write(',');
+				}
+				out.write('[');
+				string(out, report.getRevisionAttribute(r,
+						ResolveReport.REVISION_NAME));
+				out.write(',');
+				string(out, report.getRevisionAttribute(r,
+						ResolveReport.REVISION_STATUS));
+				out.write(',');
+				string(out, getFlags(r));
+				out.write(',');
+				out.write(HtmlReportWriter.kiloBytes(getSize(r)));
+				out.write(',');
+				out.write(Integer.toString(report.getEndCaller(r)
+						- report.getFirstCaller(r)));
+				out.write(']');
+			}
+			out.write("]]");
+		}
+		out.write("]\n");
+		out.flush();
+	}
+
+	public void writeSearchIndex(Writer out) throws IOException {
+		// word -> modules, in increasing order
+		Map<String, List<Integer>> words = new TreeMap<String, List<Integer>>();
+		for (int m = 0; m < report.getModuleCount(); m++) {
+			addWords(words, report.getModuleOrganisation(m), m);
+			addWords(words, report.getModuleName(m), m);
+		}
+		out.write("{\"words\":[");
+		boolean first = true;
+		for (String word : words.keySet()) {
+			if (!first) {
+				out.write(',');
+			}
+			first = false;
+			string(out, word);
+		}
+		out.write("],\n\"modules\":[");
+		first = true;
+		for (List<Integer> modules : words.values()) {
+			if (!first) {
+				out.write(',');
+			}
+			first = false;
+			out.write('[');
+			for (int i = 0; i < modules.size(); i++) {
+				if (i > 0) {
+					out.write(',');
+				}
+				out.write(Integer.toString(modules.get(i)));
+			}
+			out.write(']');
+		}
+		out.write("]}\n");
+		out.flush();
+	}
+
+	private static void addWords(Map<String, List<Integer>> words,
+			String value, int module) {
+		if (value == null) {
+			return;
+		}
+		String lowerCase = value.toLowerCase();
+		addWord(words, lowerCase, module);
+		int start = -1;
+		for (int i = 0; i <= lowerCase.length(); i++) {
+			boolean letter = i < lowerCase.length()
+					&& Character.isLetterOrDigit(lowerCase.charAt(i));
+			if (letter && start == -1) {
+				start = i;
+			} else if (!letter && start != -1) {
+				if (start > 0 || i < lowerCase.length()) {
+					addWord(words, lowerCase.substring(start, i), module);
+				}
+				start = -1;
+			}
+		}
+	}
+
+	private static void addWord(Map<String, List<Integer>> words, String word,
+			int module) {
+		List<Integer> modules = words.get(word);
+		if (modules == null) {
+			modules = new ArrayList<Integer>(1);
+			words.put(word, modules);
+		}
+		if (modules.isEmpty() || modules.get(modules.size() - 1) != module) {
+			modules.add(module);
+		}
+	}
+
+	private String getFlags(int revision) {
+		StringBuilder flags = new StringBuilder(4);
+		if ("true".equals(report.getRevisionAttribute(revision,
+				ResolveReport.REVISION_SEARCHED))) {
+			flags.append('s');
+		}
+		if ("true".equals(report.getRevisionAttribute(revision,
+				ResolveReport.REVISION_DOWNLOADED))) {
+			flags.append('d');
+		}
+		if (report.hasRevisionAttribute(revision,
+				ResolveReport.REVISION_EVICTED)) {
+			flags.append('e');
+		}
+		if (report.hasRevisionAttribute(revision, ResolveReport.REVISION_ERROR)) {
+			flags.append('x');
+		}
+		return flags.toString();
+	}
+
+	private double getSize(int revision) {
+		double size = 0;
+		for (int a = report.getFirstArtifact(revision); a < report
+				.getEndArtifact(revision); a++) {
+			if (report.hasArtifactSize(a)) {
+				size += report.getArtifactSize(a);
+			}
+		}
+		return size;
+	}
+
+	private static void string(Writer out, String value) throws IOException {
+		out.write('"');
+		if (value != null) {
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				switch (c) {
+				case '"':
+					out.write("\\\"");
+					break;
+				case '\\':
+					out.write("\\\\");
+					break;
+				case '\n':
+					out.write("\\n");
+					break;
+				case '\r':
+					out.write("\\r");
+					break;
+				case '\t':
+					out.write("\\t");
+					break;
+				default:
+					if (c < 0x20 || c == '<' || c == 0x2028 || c == 0x2029) {
+						out.write(String.format("\\u%04x", (int) c));
+					} else {
+						out.write(c);
+					}
+				}
+			}
+		}
+		out.write('"');
+	}
+
+}
@@ -0,0 +1,287 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Size bounded cache, on disk, of the reports rendered when they are first
+ * viewed.
+ * <p>
+ * Each entry is a directory. The least recently used entries are deleted when
+ * the cache gets bigger than its maximum size, except the ones that are being
+ * served. Concurrent requests for an entry that is being rendered wait for
+ * the same rendering.
+ */
+public class ReportRenderCache {
+	private static final Logger LOGGER = Logger
+			.getLogger(ReportRenderCache.class.getName());
+	private static final String TMP_SUFFIX = ".tmp";
+	private final File root;
+	private final ConcurrentMap<String, FutureTask<File>> renders = new ConcurrentHashMap<String, FutureTask<File>>();
+	// sizes of the entries, in access order
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(
+			16, 0.75f, true);
+	// number of users of the entries that are being served
+	private final Map<String, Integer> pins = new HashMap<String, Integer>();
+	private long size;
+	private long maxSize;
+	private boolean loaded;
+
+	/**
+	 * Renders the reports of an entry
+	 */
+	public interface Renderer {
+		void render(File targetDir) throws IOException, InterruptedException;
+	}
+
+	public ReportRenderCache(File root, long maxSize) {
+		this.root = root;
+		this.maxSize = maxSize;
+	}
+
+	public synchronized void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+		evict(null);
+	}
+
+	/**
+	 * Get the directory of an entry, rendering it if it is not in the cache.
+	 * The entry is not evicted until it is released.
+	 * 
+	 * @param key
+	 *            the entry key, which must be usable as a file name
+	 * @see #release(String)
+	 */
+	public File acquire(String key, Renderer renderer) throws IOException,
+			InterruptedException {
+		File dir = new File(root, key);
+		while (true) {
+			synchronized (this) {
+				load();
+				if (entries.get(key) != null) {
+					Integer count = pins.get(key);
+					pins.put(key, count == null ? 1 : count + 1);
+					dir.setLastModified(System.currentTimeMillis());
+					return dir;
+				}
+			}
+			// the rendered entry may be evicted by another rendering before
+			// it is pinned
+			getRendered(key, renderer);
+		}
+	}
+
+	/**
+	 * Release an entry got by {@link #acquire(String, Renderer)}, which may
+	 * then be evicted
+	 */
+	public synchronized void release(String key) {
+		Integer count = pins.get(key);
+		if (count == null) {
+			return;
+		}
+		if (count > 1) {
+			pins.put(key, count - 1);
+		} else {
+			pins.remove(key);
+			evict(null);
+		}
+	}
+
+	private File getRendered(final String key, final Renderer renderer)
+			throws IOException, InterruptedException {
+		FutureTask<File> task = new FutureTask<File>(new Callable<File>() {
+			public File call() throws Exception {
+				return render(key, renderer);
+			}
+		});
+		FutureTask<File> render = renders.putIfAbsent(key, task);
+		if (render == null) {
+			render = task;
+			try {
+				task.run();
+			} finally {
+				renders.remove(key, task);
+			}
+		}
+		try {
+			return render.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof InterruptedException) {
+				throw (InterruptedException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			IOException ioException = new IOException(cause.getMessage());
+			ioException.initCause(cause);
+			throw ioException;
+		}
+	}
+
+	private File render(String key, Renderer renderer) throws IOException,
+			InterruptedException {
+		File tmpDir = new File(root, key + TMP_SUFFIX);
+		if (tmpDir.exists()) {
+			Util.deleteRecursive(tmpDir);
+		}
+		if (!tmpDir.mkdirs()) {
+			throw new IOException("Unable to create directory: "
+					+ tmpDir.getAbsolutePath());
+		}
+		long start = System.currentTimeMillis();
+		try {
+			renderer.render(tmpDir);
+		} catch (IOException e) {
+			Util.deleteRecursive(tmpDir);
+			throw e;
+		}
+		File dir = new File(root, key);
+		if (dir.exists()) {
+			Util.deleteRecursive(dir);
+		}
+		if (!tmpDir.renameTo(dir)) {
+			throw new IOException("Unable to rename " + tmpDir + " to " + dir);
+		}
+		long entrySize = sizeOf(dir);
+		LOGGER.log(Level.FINE, "Rendered {0} ({1} bytes) in {2} ms",
+				new Object[] { key, entrySize,
+						System.currentTimeMillis() - start });
+		synchronized (this) {
+			Long previous = entries.put(key, entrySize);
+			if (previous != null) {
+				size -= previous;
+			}
+			size += entrySize;
+			evict(key);
+		}
+		return dir;
+	}
+
+	/**
+	 * Delete the least recently used entries that are not being served until
+	 * the cache fits in its maximum size
+	 * 
+	 * @param keep
+	 *            an entry that must be kept
+	 */
+	private void evict(String keep) {
+		Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+		while (size > maxSize && it.hasNext()) {
+			Map.Entry<String, Long> entry = it.next();
+			if (entry.getKey().equals(keep)
+					|| pins.containsKey(entry.getKey())) {
+				continue;
+			}
+			it.remove();
+			size -= entry.getValue();
+			try {
+				Util.deleteRecursive(new File(root, entry.getKey()));
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Could not delete cached report "
+						+ entry.getKey(), e);
+			}
+		}
+	}
+
+	/**
+	 * Read the entries left by a previous run, the last modification time of
+	 * their directory being their last access time
+	 */
+	private void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		File[] dirs = root.listFiles();
+		if (dirs == null) {
+			return;
+		}
+		Arrays.sort(dirs, new Comparator<File>() {
+			public int compare(File file1, File file2) {
+				long lastModified1 = file1.lastModified();
+				long lastModified2 = file2.lastModified();
+				return lastModified1 < lastModified2 ? -1
+						: (lastModified1 == lastModified2 ? 0 : 1);
+			}
+		});
+		for (File dir : dirs) {
+			if (!dir.isDirectory()) {
+				continue;
+			}
+			if (dir.getName().endsWith(TMP_SUFFIX)) {
+				// interrupted rendering
+				try {
+					Util.deleteRecursive(dir);
+				} catch (IOException e) {
+					LOGGER.log(Level.WARNING, "Could not delete " + dir, e);
+				}
+				continue;
+			}
+			long entrySize = sizeOf(dir);
+			entries.put(dir.getName(), entrySize);
+			size += entrySize;
+		}
+		evict(null);
+	}
+
+	private static long sizeOf(File file) {
+		if (file.isFile()) {
+			return file.length();
+		}
+		long size = 0;
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				size += sizeOf(child);
+			}
+		}
+		return size;
+	}
+
+}
@@ -0,0 +1,638 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * In memory model of an ivy resolve report (the
+ * &lt;resolveId&gt;-&lt;conf&gt;.xml file in the resolution cache).
+ * <p>
+ * Strings are interned and modules, revisions, callers and artifacts are
+ * stored in int arrays, children being contiguous ranges in document order.
+ * The callers are indexed by the module revision that calls them so that the
+ * dependencies of a revision are found without scanning the whole report.
+ */
+public class ResolveReport {
+	// revision attributes
+	public static final int REVISION_NAME = 0;
+	public static final int REVISION_STATUS = 1;
+	public static final int REVISION_PUBDATE = 2;
+	public static final int REVISION_RESOLVER = 3;
+	public static final int REVISION_CONF = 4;
+	public static final int REVISION_HOMEPAGE = 5;
+	public static final int REVISION_DEFAULT = 6;
+	public static final int REVISION_SEARCHED = 7;
+	public static final int REVISION_DOWNLOADED = 8;
+	public static final int REVISION_EVICTED = 9;
+	public static final int REVISION_EVICTED_REASON = 10;
+	public static final int REVISION_ERROR = 11;
+	private static final String[] REVISION_ATTRIBUTES = { "name", "status",
+			"pubdate", "resolver", "conf", "homepage", "default", "searched",
+			"downloaded", "evicted", "evicted-reason", "error" };
+
+	// caller attributes
+	public static final int CALLER_ORGANISATION = 0;
+	public static final int CALLER_NAME = 1;
+	public static final int CALLER_CONF = 2;
+	public static final int CALLER_REV = 3;
+	public static final int CALLER_CALLERREV = 4;
+	private static final String[] CALLER_ATTRIBUTES = { "organisation", "name",
+			"conf", "rev", "callerrev" };
+
+	// artifact attributes
+	public static final int ARTIFACT_NAME = 0;
+	public static final int ARTIFACT_TYPE = 1;
+	public static final int ARTIFACT_EXT = 2;
+	public static final int ARTIFACT_STATUS = 3;
+	private static final String[] ARTIFACT_ATTRIBUTES = { "name", "type",
+			"ext", "status" };
+
+	// license attributes
+	public static final int LICENSE_NAME = 0;
+	public static final int LICENSE_URL = 1;
+	private static final String[] LICENSE_ATTRIBUTES = { "name", "url" };
+
+	private final List<String> strings = new ArrayList<String>();
+	private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+
+	private String organisation;
+	private String module;
+	private String revision;
+	private String conf;
+	private String confs;
+	private String date;
+
+	private final IntArray moduleOrganisations = new IntArray();
+	private final IntArray moduleNames = new IntArray();
+	private final IntArray moduleFirstRevisions = new IntArray();
+
+	private final IntArray revisionModules = new IntArray();
+	private final IntArray revisionAttributes = new IntArray();
+	private final IntArray revisionFirstLicenses = new IntArray();
+	private final IntArray revisionFirstEvictedBys = new IntArray();
+	private final IntArray revisionFirstCallers = new IntArray();
+	private final IntArray revisionFirstArtifacts = new IntArray();
+
+	private final IntArray licenseAttributes = new IntArray();
+	private final IntArray evictedByRevs = new IntArray();
+	private final IntArray callerRevisions = new IntArray();
+	private final IntArray callerAttributes = new IntArray();
+	private final IntArray artifactAttributes = new IntArray();
+	private double[] artifactSizes = new double[16];
+	private boolean[] artifactHasSize = new boolean[16];
+
+	// index of the callers by calling module revision
+	private int[] revisionDependencyKeys;
+	private int[] dependencyStarts;
+	private int[] dependencyCallers;
+	private TripleIndex dependencyKeys;
+
+	private ResolveReport() {
+	}
+
+	public static ResolveReport parse(File file) throws IOException {
+		return parse(file, null);
+	}
+
+	/**
+	 * Parse a resolve report and add it to a digest in the same pass, which
+	 * gives the same digest as {@link ResolveReportDigest#add(File)}
+	 * 
+	 * @param digest
+	 *            the digest or null
+	 */
+	public static ResolveReport parse(File file, ResolveReportDigest digest)
+			throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			ResolveReport report = parse(new InputSource(in),
+					digest == null ? null : digest.startReport());
+			if (digest != null) {
+				digest.endReport();
+			}
+			return report;
+		} finally {
+			in.close();
+		}
+	}
+
+	public static ResolveReport parse(InputSource source) throws IOException {
+		return parse(source, null);
+	}
+
+	private static ResolveReport parse(InputSource source,
+			DefaultHandler digestHandler) throws IOException {
+		ResolveReport report = new ResolveReport();
+		try {
+			SAXParserFactory factory = SAXParserFactory.newInstance();
+			factory.newSAXParser().parse(source,
+					report.new Handler(digestHandler));
+		} catch (SAXException e) {
+			IOException ioException = new IOException(
+					"Cannot parse resolve report : " + e.getMessage());
+			ioException.initCause(e);
+			throw ioException;
+		} catch (ParserConfigurationException e) {
+			IOException ioException = new IOException(
+					"Cannot parse resolve report : " + e.getMessage());
+			ioException.initCause(e);
+			throw ioException;
+		}
+		report.buildIndex();
+		return report;
+	}
+
+	public String getOrganisation() {
+		return organisation;
+	}
+
+	public String getModule() {
+		return module;
+	}
+
+	public String getRevision() {
+		return revision;
+	}
+
+	public String getConf() {
+		return conf;
+	}
+
+	public String getConfs() {
+		return confs;
+	}
+
+	public String getDate() {
+		return date;
+	}
+
+	public int getModuleCount() {
+		return moduleNames.size();
+	}
+
+	public String getModuleOrganisation(int module) {
+		return string(moduleOrganisations.get(module));
+	}
+
+	public String getModuleName(int module) {
+		return string(moduleNames.get(module));
+	}
+
+	public int getFirstRevision(int module) {
+		return moduleFirstRevisions.get(module);
+	}
+
+	public int getEndRevision(int module) {
+		return module + 1 < getModuleCount() ? moduleFirstRevisions
+				.get(module + 1) : getRevisionCount();
+	}
+
+	public int getRevisionCount() {
+		return revisionModules.size();
+	}
+
+	public int getRevisionModule(int revision) {
+		return revisionModules.get(revision);
+	}
+
+	/**
+	 * @param attribute
+	 *            one of the REVISION_ constants
+	 * @return the attribute value or null if the revision does not have this
+	 *         attribute
+	 */
+	public String getRevisionAttribute(int revision, int attribute) {
+		return string(revisionAttributes.get(revision
+				* REVISION_ATTRIBUTES.length + attribute));
+	}
+
+	public boolean hasRevisionAttribute(int revision, int attribute) {
+		return revisionAttributes.get(revision * REVISION_ATTRIBUTES.length
+				+ attribute) != -1;
+	}
+
+	public int getFirstLicense(int revision) {
+		return revisionFirstLicenses.get(revision);
+	}
+
+	public int getEndLicense(int revision) {
+		return end(revisionFirstLicenses, revision, licenseAttributes.size()
+				/ LICENSE_ATTRIBUTES.length);
+	}
+
+	public String getLicenseAttribute(int license, int attribute) {
+		return string(licenseAttributes.get(license * LICENSE_ATTRIBUTES.length
+				+ attribute));
+	}
+
+	public int getFirstEvictedBy(int revision) {
+		return revisionFirstEvictedBys.get(revision);
+	}
+
+	public int getEndEvictedBy(int revision) {
+		return end(revisionFirstEvictedBys, revision, evictedByRevs.size());
+	}
+
+	public String getEvictedByRev(int evictedBy) {
+		return string(evictedByRevs.get(evictedBy));
+	}
+
+	public int getCallerCount() {
+		return callerRevisions.size();
+	}
+
+	public int getFirstCaller(int revision) {
+		return revisionFirstCallers.get(revision);
+	}
+
+	public int getEndCaller(int revision) {
+		return end(revisionFirstCallers, revision, callerRevisions.size());
+	}
+
+	/**
+	 * @return the revision that is called, i.e. the one the caller element
+	 *         belongs to
+	 */
+	public int getCallerRevision(int caller) {
+		return callerRevisions.get(caller);
+	}
+
+	public String getCallerAttribute(int caller, int attribute) {
+		return string(callerAttributes.get(caller * CALLER_ATTRIBUTES.length
+				+ attribute));
+	}
+
+	public int getArtifactCount() {
+		return artifactAttributes.size() / ARTIFACT_ATTRIBUTES.length;
+	}
+
+	public int getFirstArtifact(int revision) {
+		return revisionFirstArtifacts.get(revision);
+	}
+
+	public int getEndArtifact(int revision) {
+		return end(revisionFirstArtifacts, revision, getArtifactCount());
+	}
+
+	public String getArtifactAttribute(int artifact, int attribute) {
+		return string(artifactAttributes.get(artifact
+				* ARTIFACT_ATTRIBUTES.length + attribute));
+	}
+
+	public boolean hasArtifactSize(int artifact) {
+		return artifactHasSize[artifact];
+	}
+
+	/**
+	 * @return the artifact size or NaN if the size is not a number
+	 */
+	public double getArtifactSize(int artifact) {
+		return artifactSizes[artifact];
+	}
+
+	/**
+	 * @return the dependency key of the revision, used to get the callers it
+	 *         is referenced by, or -1 if it has no dependencies
+	 */
+	public int getDependencyKey(int revision) {
+		return revisionDependencyKeys[revision];
+	}
+
+	/**
+	 * @return the dependency key of a module revision that may not be part
+	 *         of the dependencies (like the resolved module itself), or -1 if
+	 *         it has no dependencies
+	 */
+	public int getDependencyKey(String organisation, String module,
+			String revision) {
+		Integer organisationId = stringIds.get(organisation);
+		Integer moduleId = stringIds.get(module);
+		Integer revisionId = stringIds.get(revision);
+		if (organisationId == null || moduleId == null || revisionId == null) {
+			return -1;
+		}
+		return dependencyKeys.get(organisationId, moduleId, revisionId);
+	}
+
+	/**
+	 * @return the callers whose caller is the module revision with the given
+	 *         dependency key, in document order. Use
+	 *         {@link #getCallerRevision(int)} to get the dependencies
+	 *         themselves.
+	 */
+	public int getFirstDependency(int dependencyKey) {
+		return dependencyKey == -1 ? 0 : dependencyStarts[dependencyKey];
+	}
+
+	public int getEndDependency(int dependencyKey) {
+		return dependencyKey == -1 ? 0 : dependencyStarts[dependencyKey + 1];
+	}
+
+	public int getDependencyCaller(int dependency) {
+		return dependencyCallers[dependency];
+	}
+
+	private int end(IntArray firsts, int index, int size) {
+		return index + 1 < firsts.size() ? firsts.get(index + 1) : size;
+	}
+
+	private String string(int id) {
+		return id == -1 ? null : strings.get(id);
+	}
+
+	private int intern(String value) {
+		if (value == null) {
+			return -1;
+		}
+		Integer id = stringIds.get(value);
+		if (id == null) {
+			id = strings.size();
+			strings.add(value);
+			stringIds.put(value, id);
+		}
+		return id;
+	}
+
+	private void addAttributes(IntArray array, Attributes attributes,
+			String[] names) {
+		for (String name : names) {
+			array.add(intern(attributes.getValue(name)));
+		}
+	}
+
+	private void addArtifactSize(String size) {
+		int artifact = getArtifactCount() - 1;
+		if (artifact >= artifactSizes.length) {
+			artifactSizes = Arrays.copyOf(artifactSizes,
+					artifactSizes.length * 2);
+			artifactHasSize = Arrays.copyOf(artifactHasSize,
+					artifactHasSize.length * 2);
+		}
+		artifactHasSize[artifact] = size != null;
+		double value = Double.NaN;
+		if (size != null) {
+			try {
+				value = Double.parseDouble(size.trim());
+			} catch (NumberFormatException e) {
+				// NaN, like xpath
+			}
+		}
+		artifactSizes[artifact] = value;
+	}
+
+	private void buildIndex() {
+		int callerCount = getCallerCount();
+		dependencyKeys = new TripleIndex(Math.max(16, callerCount));
+		int[] callerKeys = new int[callerCount];
+		for (int c = 0; c < callerCount; c++) {
+			int offset = c * CALLER_ATTRIBUTES.length;
+			callerKeys[c] = dependencyKeys.getOrAdd(
+					callerAttributes.get(offset + CALLER_ORGANISATION),
+					callerAttributes.get(offset + CALLER_NAME),
+					callerAttributes.get(offset + CALLER_CALLERREV));
+		}
+		int keyCount = dependencyKeys.size();
+		dependencyStarts = new int[keyCount + 1];
+		for (int c = 0; c < callerCount; c++) {
+			dependencyStarts[callerKeys[c] + 1]++;
+		}
+		for (int k = 0; k < keyCount; k++) {
+			dependencyStarts[k + 1] += dependencyStarts[k];
+		}
+		int[] filled = new int[keyCount];
+		dependencyCallers = new int[callerCount];
+		for (int c = 0; c < callerCount; c++) {
+			int key = callerKeys[c];
+			dependencyCallers[dependencyStarts[key] + filled[key]++] = c;
+		}
+		revisionDependencyKeys = new int[getRevisionCount()];
+		for (int r = 0; r < getRevisionCount(); r++) {
+			int m = revisionModules.get(r);
+			revisionDependencyKeys[r] = dependencyKeys.get(
+					moduleOrganisations.get(m), moduleNames.get(m),
+					revisionAttributes.get(r * REVISION_ATTRIBUTES.length
+							+ REVISION_NAME));
+		}
+	}
+
+	private class Handler extends DefaultHandler {
+		// also sent the elements, or null
+		private final DefaultHandler digestHandler;
+		private int depth;
+		private int revisionDepth = -1;
+		private boolean inArtifacts;
+
+		public Handler(DefaultHandler digestHandler) {
+			this.digestHandler = digestHandler;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName,
+				Attributes attributes) throws SAXException {
+			if (digestHandler != null) {
+				digestHandler.startElement(uri, localName, qName, attributes);
+			}
+			depth++;
+			if (depth == 2 && "info".equals(qName)) {
+				organisation = attributes.getValue("organisation");
+				module = attributes.getValue("module");
+				revision = attributes.getValue("revision");
+				conf = attributes.getValue("conf");
+				confs = attributes.getValue("confs");
+				date = attributes.getValue("date");
+			} else if (depth == 3 && "module".equals(qName)) {
+				moduleOrganisations.add(intern(attributes
+						.getValue("organisation")));
+				moduleNames.add(intern(attributes.getValue("name")));
+				moduleFirstRevisions.add(getRevisionCount());
+			} else if (depth == 4 && "revision".equals(qName)) {
+				revisionDepth = depth;
+				revisionModules.add(getModuleCount() - 1);
+				addAttributes(revisionAttributes, attributes,
+						REVISION_ATTRIBUTES);
+				revisionFirstLicenses.add(licenseAttributes.size()
+						/ LICENSE_ATTRIBUTES.length);
+				revisionFirstEvictedBys.add(evictedByRevs.size());
+				revisionFirstCallers.add(callerRevisions.size());
+				revisionFirstArtifacts.add(getArtifactCount());
+			} else if (revisionDepth != -1 && depth == revisionDepth + 1) {
+				if ("license".equals(qName)) {
+					addAttributes(licenseAttributes, attributes,
+							LICENSE_ATTRIBUTES);
+				} else if ("evicted-by".equals(qName)) {
+					evictedByRevs.add(intern(attributes.getValue("rev")));
+				} else if ("caller".equals(qName)) {
+					callerRevisions.add(getRevisionCount() - 1);
+					addAttributes(callerAttributes, attributes,
+							CALLER_ATTRIBUTES);
+				} else if ("artifacts".equals(qName)) {
+					inArtifacts = true;
+				}
+			} else if (inArtifacts && depth == revisionDepth + 2
+					&& "artifact".equals(qName)) {
+				addAttributes(artifactAttributes, attributes,
+						ARTIFACT_ATTRIBUTES);
+				addArtifactSize(attributes.getValue("size"));
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName)
+				throws SAXException {
+			if (digestHandler != null) {
+				digestHandler.endElement(uri, localName, qName);
+			}
+			if (depth == revisionDepth) {
+				revisionDepth = -1;
+			} else if (inArtifacts && depth == revisionDepth + 1) {
+				inArtifacts = false;
+			}
+			depth--;
+		}
+	}
+
+	/**
+	 * Growable array of ints
+	 */
+	private static class IntArray {
+		private int[] values = new int[16];
+		private int size;
+
+		public void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		public int get(int index) {
+			return values[index];
+		}
+
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Open addressing hash index of int triples
+	 */
+	private static class TripleIndex {
+		private int[] slots;
+		private int[] triples;
+		private int size;
+
+		public TripleIndex(int expectedSize) {
+			int capacity = Integer.highestOneBit(expectedSize * 2 - 1) << 1;
+			slots = new int[capacity];
+			Arrays.fill(slots, -1);
+			triples = new int[expectedSize * 3];
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int get(int a, int b, int c) {
+			int mask = slots.length - 1;
+			for (int i = hash(a, b, c) & mask;; i = (i + 1) & mask) {
+				int id = slots[i];
+				if (id == -1) {
+					return -1;
+				}
+				if (triples[3 * id] == a && triples[3 * id + 1] == b
+						&& triples[3 * id + 2] == c) {
+					return id;
+				}
+			}
+		}
+
+		public int getOrAdd(int a, int b, int c) {
+			int mask = slots.length - 1;
+			int i = hash(a, b, c) & mask;
+			while (true) {
+				int id = slots[i];
+				if (id == -1) {
+					break;
+				}
+				if (triples[3 * id] == a && triples[3 * id + 1] == b
+						&& triples[3 * id + 2] == c) {
+					return id;
+				}
+				i = (i + 1) & mask;
+			}
+			if (3 * size == triples.length) {
+				triples = Arrays.copyOf(triples, triples.length * 2);
+			}
+			triples[3 * size] = a;
+			triples[3 * size + 1] = b;
+			triples[3 * size + 2] = c;
+			slots[i] = size;
+			size++;
+			if (2 * size > slots.length) {
+				rehash();
+			}
+			return size - 1;
+		}
+
+		private void rehash() {
+			slots = new int[slots.length * 2];
+			Arrays.fill(slots, -1);
+			int mask = slots.length - 1;
+			for (int id = 0; id < size; id++) {
+				int i = hash(triples[3 * id], triples[3 * id + 1],
+						triples[3 * id + 2]) & mask;
+				while (slots[i] != -1) {
+					i = (i + 1) & mask;
+				}
+				slots[i] = id;
+			}
+		}
+
+		private static int hash(int a, int b, int c) {
+			int h = a * 0x9E3779B1 + b;
+			h = h * 0x9E3779B1 + c;
+			return h ^ (h >>> 16);
+		}
+	}
+
+}
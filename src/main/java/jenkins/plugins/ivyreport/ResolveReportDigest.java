@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Digest of the content of resolve reports.
+ * <p>
+ * The elements and attributes of the reports are digested, except the
+ * resolution date, so that two resolutions of the same dependencies have the
+ * same digest.
+ */
+public class ResolveReportDigest {
+	private final MessageDigest messageDigest;
+
+	public ResolveReportDigest() {
+		try {
+			messageDigest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Add a string, like a rendering setting, to the digest
+	 */
+	public void add(String value) {
+		update(value == null ? "\u0000" : value);
+		update("\u0001");
+	}
+
+	/**
+	 * Add the content of a resolve report to the digest
+	 * 
+	 * @see ResolveReport#parse(File, ResolveReportDigest)
+	 */
+	public void add(File report) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(report));
+		try {
+			SAXParserFactory.newInstance().newSAXParser()
+					.parse(new InputSource(in), startReport());
+		} catch (SAXException e) {
+			IOException ioException = new IOException(
+					"Cannot parse resolve report : " + e.getMessage());
+			ioException.initCause(e);
+			throw ioException;
+		} catch (ParserConfigurationException e) {
+			IOException ioException = new IOException(
+					"Cannot parse resolve report : " + e.getMessage());
+			ioException.initCause(e);
+			throw ioException;
+		} finally {
+			in.close();
+		}
+		endReport();
+	}
+
+	/**
+	 * Start adding a resolve report that is parsed by the caller
+	 * 
+	 * @return the handler to send the elements of the report to
+	 */
+	DefaultHandler startReport() {
+		return new Handler();
+	}
+
+	/**
+	 * End adding a resolve report started by {@link #startReport()}
+	 */
+	void endReport() {
+		update("\u0002");
+	}
+
+	/**
+	 * @return the hexadecimal digest. The digest is reset.
+	 */
+	public String digest() {
+		return Util.toHexString(messageDigest.digest());
+	}
+
+	private void update(String value) {
+		try {
+			messageDigest.update(value.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private class Handler extends DefaultHandler {
+		private int depth;
+
+		@Override
+		public void startElement(String uri, String localName, String qName,
+				Attributes attributes) throws SAXException {
+			depth++;
+			update("<");
+			update(qName);
+			boolean info = depth == 2 && "info".equals(qName);
+			for (int i = 0; i < attributes.getLength(); i++) {
+				String name = attributes.getQName(i);
+				if (info && "date".equals(name)) {
+					continue;
+				}
+				update(" ");
+				update(name);
+				update("=");
+				update(attributes.getValue(i));
+				update("\u0001");
+			}
+			update(">");
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName)
+				throws SAXException {
+			depth--;
+			update("/>");
+		}
+	}
+
+}
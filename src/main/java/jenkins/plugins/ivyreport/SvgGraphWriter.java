@@ -0,0 +1,302 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Write a {@link LayeredGraphLayout} as svg, using the dot attributes for the
+ * shapes, colors and fonts
+ */
+public class SvgGraphWriter {
+	private static final double ARROW_LENGTH = 10;
+	private static final double ARROW_HALF_WIDTH = 3.5;
+
+	private final Writer writer;
+
+	public SvgGraphWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	public void write(LayeredGraphLayout layout) throws IOException {
+		DotGraph graph = layout.getGraph();
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+		writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\""
+				+ format(layout.getWidth()) + "pt\" height=\""
+				+ format(layout.getHeight()) + "pt\" viewBox=\"0 0 "
+				+ format(layout.getWidth()) + " "
+				+ format(layout.getHeight()) + "\">\n");
+		writer.write("<g class=\"graph\">\n");
+		writer.write("<rect x=\"0\" y=\"0\" width=\"" + format(layout.getWidth())
+				+ "\" height=\"" + format(layout.getHeight()) + "\" fill=\""
+				+ color(graph.getAttribute("bgcolor", "white")) + "\"/>\n");
+		for (int i = 0; i < layout.getEdges().size(); i++) {
+			writeEdge(layout, i);
+		}
+		for (DotGraph.Node node : graph.getNodes()) {
+			writeNode(layout, node);
+		}
+		writer.write("</g>\n</svg>\n");
+		writer.flush();
+	}
+
+	private void writeNode(LayeredGraphLayout layout, DotGraph.Node node)
+			throws IOException {
+		Set<String> styles = getStyles(node.getAttribute("style", ""));
+		if (styles.contains("invis")) {
+			return;
+		}
+		double cx = layout.getCenterX(node);
+		double cy = layout.getCenterY(node);
+		double width = layout.getWidth(node);
+		double height = layout.getHeight(node);
+		String shape = node.getAttribute("shape", "ellipse");
+		String color = node.getAttribute("color", "black");
+		String fill = "none";
+		if (styles.contains("filled")) {
+			fill = node.getAttribute("fillcolor",
+					node.getAttribute("color", "lightgrey"));
+		}
+		writer.write("<g class=\"node\"><title>" + escape(node.getId())
+				+ "</title>\n");
+		String strokeAttributes = " fill=\"" + color(fill) + "\" stroke=\""
+				+ color(color) + "\"" + strokeStyle(styles);
+		if (LayeredGraphLayout.isEllipse(shape)) {
+			writer.write("<ellipse cx=\"" + format(cx) + "\" cy=\""
+					+ format(cy) + "\" rx=\"" + format(width / 2)
+					+ "\" ry=\"" + format(height / 2) + "\""
+					+ strokeAttributes + "/>\n");
+		} else if (!shape.equals("plaintext") && !shape.equals("plain")
+				&& !shape.equals("none")) {
+			writer.write("<rect x=\"" + format(cx - width / 2) + "\" y=\""
+					+ format(cy - height / 2) + "\" width=\""
+					+ format(width) + "\" height=\"" + format(height) + "\""
+					+ (styles.contains("rounded") ? " rx=\"6\"" : "")
+					+ strokeAttributes + "/>\n");
+		}
+		double fontSize = LayeredGraphLayout.parseDouble(
+				node.getAttribute("fontsize", null), 14);
+		String[] lines = layout.getLabelLines(node);
+		double lineHeight = fontSize * 1.2;
+		double baseline = cy - lines.length * lineHeight / 2 + fontSize;
+		for (int i = 0; i < lines.length; i++) {
+			writer.write("<text text-anchor=\"middle\" x=\"" + format(cx)
+					+ "\" y=\"" + format(baseline + i * lineHeight)
+					+ "\" font-family=\""
+					+ escape(node.getAttribute("fontname", "Times,serif"))
+					+ "\" font-size=\"" + format(fontSize) + "\" fill=\""
+					+ color(node.getAttribute("fontcolor", "black")) + "\">"
+					+ escape(lines[i]) + "</text>\n");
+		}
+		writer.write("</g>\n");
+	}
+
+	private void writeEdge(LayeredGraphLayout layout, int edgeIndex)
+			throws IOException {
+		DotGraph.Edge edge = layout.getEdges().get(edgeIndex);
+		Set<String> styles = getStyles(edge.getAttribute("style", ""));
+		if (styles.contains("invis")) {
+			return;
+		}
+		double[] points = layout.getEdgePath(edgeIndex);
+		String color = color(edge.getAttribute("color", "black"));
+		writer.write("<g class=\"edge\"><title>"
+				+ escape(edge.getTail().getId()) + "&#45;&gt;"
+				+ escape(edge.getHead().getId()) + "</title>\n");
+		StringBuilder path = new StringBuilder();
+		path.append('M').append(format(points[0])).append(',')
+				.append(format(points[1]));
+		for (int i = 2; i < points.length; i += 6) {
+			path.append('C');
+			for (int j = i; j < i + 6; j += 2) {
+				if (j > i) {
+					path.append(' ');
+				}
+				path.append(format(points[j])).append(',')
+						.append(format(points[j + 1]));
+			}
+		}
+		writer.write("<path fill=\"none\" stroke=\"" + color + "\""
+				+ strokeStyle(styles) + " d=\"" + path + "\"/>\n");
+		if (layout.getGraph().isDirected()
+				&& !"none".equals(edge.getAttribute("arrowhead", null))
+				&& !"none".equals(edge.getAttribute("dir", null))) {
+			writeArrowHead(points, color);
+		}
+		String label = edge.getAttribute("label", null);
+		if (label != null) {
+			int middle = (points.length / 2) & ~1;
+			writer.write("<text text-anchor=\"middle\" x=\""
+					+ format(points[middle]) + "\" y=\""
+					+ format(points[middle + 1])
+					+ "\" font-family=\"Times,serif\" font-size=\"10\">"
+					+ escape(label) + "</text>\n");
+		}
+		writer.write("</g>\n");
+	}
+
+	private void writeArrowHead(double[] points, String color)
+			throws IOException {
+		int n = points.length;
+		double baseX = points[n - 2];
+		double baseY = points[n - 1];
+		double dx = baseX - points[n - 4];
+		double dy = baseY - points[n - 3];
+		double length = Math.sqrt(dx * dx + dy * dy);
+		if (length < 0.01) {
+			return;
+		}
+		dx /= length;
+		dy /= length;
+		double tipX = baseX + dx * ARROW_LENGTH;
+		double tipY = baseY + dy * ARROW_LENGTH;
+		writer.write("<polygon fill=\"" + color + "\" stroke=\"" + color
+				+ "\" points=\"" + format(tipX) + "," + format(tipY) + " "
+				+ format(baseX - dy * ARROW_HALF_WIDTH) + ","
+				+ format(baseY + dx * ARROW_HALF_WIDTH) + " "
+				+ format(baseX + dy * ARROW_HALF_WIDTH) + ","
+				+ format(baseY - dx * ARROW_HALF_WIDTH) + "\"/>\n");
+	}
+
+	private Set<String> getStyles(String style) {
+		return new HashSet<String>(Arrays.asList(style.replace(" ", "")
+				.split(",")));
+	}
+
+	private String strokeStyle(Set<String> styles) {
+		if (styles.contains("dashed")) {
+			return " stroke-dasharray=\"5,2\"";
+		}
+		if (styles.contains("dotted")) {
+			return " stroke-dasharray=\"1,5\"";
+		}
+		if (styles.contains("bold")) {
+			return " stroke-width=\"2\"";
+		}
+		return "";
+	}
+
+	/**
+	 * Convert a dot color to a svg color. Dot also accepts hsv colors and the
+	 * x11 gray levels.
+	 */
+	static String color(String color) {
+		String value = color.trim();
+		if (value.startsWith("#")) {
+			// svg does not support alpha
+			return value.length() > 7 ? value.substring(0, 7) : value;
+		}
+		String[] hsv = value.split("[ ,]+");
+		if (hsv.length == 3) {
+			try {
+				return hsvToRgb(Double.parseDouble(hsv[0]),
+						Double.parseDouble(hsv[1]), Double.parseDouble(hsv[2]));
+			} catch (NumberFormatException e) {
+				return "black";
+			}
+		}
+		String lowerCase = value.toLowerCase();
+		if (lowerCase.matches("gr[ae]y[0-9]+")) {
+			int level = Integer.parseInt(lowerCase.substring(4));
+			return "rgb(" + Math.min(level, 100) + "%,"
+					+ Math.min(level, 100) + "%," + Math.min(level, 100)
+					+ "%)";
+		}
+		return escape(lowerCase);
+	}
+
+	private static String hsvToRgb(double h, double s, double v) {
+		double r = v, g = v, b = v;
+		if (s > 0) {
+			double sector = (h >= 1 ? 0 : h) * 6;
+			int i = (int) Math.floor(sector);
+			double f = sector - i;
+			double p = v * (1 - s);
+			double q = v * (1 - s * f);
+			double t = v * (1 - s * (1 - f));
+			switch (i) {
+			case 0: r = v; g = t; b = p; break;
+			case 1: r = q; g = v; b = p; break;
+			case 2: r = p; g = v; b = t; break;
+			case 3: r = p; g = q; b = v; break;
+			case 4: r = t; g = p; b = v; break;
+			default: r = v; g = p; b = q; break;
+			}
+		}
+		return String.format("#%02x%02x%02x", Math.round(r * 255),
+				Math.round(g * 255), Math.round(b * 255));
+	}
+
+	/**
+	 * Format a coordinate with at most two decimals, independently of the
+	 * locale
+	 */
+	static String format(double value) {
+		long hundredths = Math.round(value * 100);
+		StringBuilder sb = new StringBuilder();
+		if (hundredths < 0) {
+			sb.append('-');
+			hundredths = -hundredths;
+		}
+		sb.append(hundredths / 100);
+		long decimals = hundredths % 100;
+		if (decimals != 0) {
+			sb.append('.');
+			if (decimals < 10) {
+				sb.append('0');
+			}
+			sb.append(decimals % 10 == 0 ? decimals / 10 : decimals);
+		}
+		return sb.toString();
+	}
+
+	static String escape(String text) {
+		StringBuilder sb = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '<':
+				sb.append("&lt;");
+				break;
+			case '>':
+				sb.append("&gt;");
+				break;
+			case '&':
+				sb.append("&amp;");
+				break;
+			case '"':
+				sb.append("&quot;");
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+}
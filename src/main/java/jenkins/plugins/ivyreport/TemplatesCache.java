@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Plugin-wide cache of compiled xsl stylesheets.
+ * <p>
+ * {@link Templates} are thread safe, so a stylesheet only needs to be compiled
+ * once and each transformation just asks for a new
+ * {@link javax.xml.transform.Transformer}. Stylesheets bundled in a jar are
+ * keyed by their url, stylesheets on disk by their path and are recompiled
+ * when their last modification time or size changes.
+ */
+public class TemplatesCache {
+	private static final Logger LOGGER = Logger.getLogger(TemplatesCache.class
+			.getName());
+	private static final TemplatesCache INSTANCE = new TemplatesCache();
+
+	private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<String, Entry>();
+
+	public static TemplatesCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Get the compiled stylesheet for a resource loaded from the classpath
+	 * 
+	 * @param owner
+	 *            the class used to load the resource
+	 * @param name
+	 *            the resource name, relative to the package of owner
+	 */
+	public Templates getTemplates(Class<?> owner, String name)
+			throws IOException {
+		URL url = owner.getResource(name);
+		if (url == null) {
+			throw new IOException("Cannot find stylesheet " + name);
+		}
+		String key = url.toExternalForm();
+		Entry entry = cache.get(key);
+		if (entry == null) {
+			entry = new Entry(compile(url), 0, 0);
+			Entry previous = cache.putIfAbsent(key, entry);
+			if (previous != null) {
+				entry = previous;
+			}
+		}
+		return entry.templates;
+	}
+
+	/**
+	 * Get the compiled stylesheet for a file. The stylesheet is compiled again
+	 * if the file changed since it was cached.
+	 */
+	public Templates getTemplates(File style) throws IOException {
+		String key = style.getCanonicalPath();
+		long lastModified = style.lastModified();
+		long length = style.length();
+		Entry entry = cache.get(key);
+		if (entry == null || entry.lastModified != lastModified
+				|| entry.length != length) {
+			if (!style.isFile()) {
+				throw new IOException("Cannot find stylesheet "
+						+ style.getAbsolutePath());
+			}
+			entry = new Entry(compile(style.toURI().toURL()), lastModified,
+					length);
+			cache.put(key, entry);
+		}
+		return entry.templates;
+	}
+
+	/**
+	 * Remove a stylesheet file from the cache. The stylesheets bundled in a
+	 * jar are kept.
+	 */
+	public void invalidate(File style) throws IOException {
+		cache.remove(style.getCanonicalPath());
+	}
+
+	private Templates compile(URL url) throws IOException {
+		LOGGER.log(Level.FINE, "Compiling stylesheet {0}", url);
+		InputStream xsltStream = url.openStream();
+		try {
+			StreamSource xsltSource = new StreamSource(xsltStream,
+					url.toExternalForm());
+			// TransformerFactory is not thread safe
+			TransformerFactory tFactory = TransformerFactory.newInstance();
+			return tFactory.newTemplates(xsltSource);
+		} catch (TransformerConfigurationException e) {
+			IOException ioException = new IOException(
+					"Cannot compile stylesheet " + url + " : " + e.getMessage());
+			ioException.initCause(e);
+			throw ioException;
+		} finally {
+			try {
+				xsltStream.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	private static class Entry {
+		private final Templates templates;
+		private final long lastModified;
+		private final long length;
+
+		public Entry(Templates templates, long lastModified, long length) {
+			this.templates = templates;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+	}
+
+}
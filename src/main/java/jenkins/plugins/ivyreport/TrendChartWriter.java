@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import static jenkins.plugins.ivyreport.SvgGraphWriter.escape;
+import static jenkins.plugins.ivyreport.SvgGraphWriter.format;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Write a metric of a {@link DependencyTrend} as a svg line chart, one point
+ * per build from the oldest to the newest
+ */
+public class TrendChartWriter {
+	public static final int WIDTH = 500;
+	public static final int HEIGHT = 200;
+	private static final int LEFT = 60;
+	private static final int RIGHT = 15;
+	private static final int TOP = 25;
+	private static final int BOTTOM = 25;
+	private static final String FONT = " font-family=\"Verdana,Helvetica,sans-serif\" font-size=\"11\"";
+
+	private final Writer writer;
+
+	public TrendChartWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * @param metric
+	 *            index in {@link DependencyTrend#METRICS}
+	 */
+	public void write(List<DependencyTrend.Point> points, int metric)
+			throws IOException {
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+		writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\""
+				+ WIDTH + "\" height=\"" + HEIGHT + "\" viewBox=\"0 0 "
+				+ WIDTH + " " + HEIGHT + "\">\n");
+		writer.write("<rect x=\"0\" y=\"0\" width=\"" + WIDTH
+				+ "\" height=\"" + HEIGHT + "\" fill=\"white\"/>\n");
+		writer.write("<text x=\"" + (WIDTH / 2) + "\" y=\"15\" text-anchor=\"middle\""
+				+ FONT + " font-weight=\"bold\">"
+				+ escape(DependencyTrend.METRIC_TITLES[metric]) + "</text>\n");
+		double plotWidth = WIDTH - LEFT - RIGHT;
+		double plotHeight = HEIGHT - TOP - BOTTOM;
+		long max = 0;
+		for (DependencyTrend.Point point : points) {
+			max = Math.max(max, point.getValue(metric));
+		}
+		max = roundUp(max);
+		// axes and grid
+		for (int i = 0; i <= 4; i++) {
+			double y = TOP + plotHeight * i / 4;
+			writer.write("<line x1=\"" + LEFT + "\" y1=\"" + format(y)
+					+ "\" x2=\"" + (WIDTH - RIGHT) + "\" y2=\"" + format(y)
+					+ "\" stroke=\"" + (i == 4 ? "black" : "#dddddd")
+					+ "\"/>\n");
+			writer.write("<text x=\"" + (LEFT - 5) + "\" y=\""
+					+ format(y + 4) + "\" text-anchor=\"end\"" + FONT + ">"
+					+ (max * (4 - i) / 4) + "</text>\n");
+		}
+		writer.write("<line x1=\"" + LEFT + "\" y1=\"" + TOP + "\" x2=\""
+				+ LEFT + "\" y2=\"" + (HEIGHT - BOTTOM)
+				+ "\" stroke=\"black\"/>\n");
+		if (!points.isEmpty()) {
+			writeBuildLabel(points.get(0), LEFT, "start");
+			if (points.size() > 1) {
+				writeBuildLabel(points.get(points.size() - 1), WIDTH - RIGHT,
+						"end");
+			}
+			StringBuilder polyline = new StringBuilder();
+			for (int i = 0; i < points.size(); i++) {
+				double x = LEFT
+						+ (points.size() == 1 ? plotWidth / 2 : plotWidth * i
+								/ (points.size() - 1));
+				double y = TOP + plotHeight
+						- (max == 0 ? 0 : plotHeight
+								* points.get(i).getValue(metric) / max);
+				polyline.append(format(x)).append(',').append(format(y))
+						.append(' ');
+			}
+			writer.write("<polyline fill=\"none\" stroke=\"#3465a4\" stroke-width=\"1.5\" points=\""
+					+ polyline.toString().trim() + "\"/>\n");
+		}
+		writer.write("</svg>\n");
+		writer.flush();
+	}
+
+	private void writeBuildLabel(DependencyTrend.Point point, double x,
+			String anchor) throws IOException {
+		writer.write("<text x=\"" + format(x) + "\" y=\"" + (HEIGHT - 8)
+				+ "\" text-anchor=\"" + anchor + "\"" + FONT + ">#"
+				+ point.getBuildNumber() + "</text>\n");
+	}
+
+	/**
+	 * Round the maximum of the axis up to a multiple of 4 times 1, 2 or 5
+	 * times a power of ten, so that the grid labels are round
+	 */
+	static long roundUp(long max) {
+		if (max <= 4) {
+			return 4;
+		}
+		long step = 1;
+		while (true) {
+			for (long factor : new long[] { 1, 2, 5 }) {
+				if (step * factor * 4 >= max) {
+					return step * factor * 4;
+				}
+			}
+			step *= 10;
+		}
+	}
+
+}
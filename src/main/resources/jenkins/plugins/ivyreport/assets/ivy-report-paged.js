@@ -0,0 +1,179 @@
+/*
+ * Module browser of the paged ivy reports : a virtualized list of the
+ * modules, a prefix search over the precomputed index of their words and
+ * the details of a module fetched when it is opened.
+ */
+function ivyReportModules(dataUrl, searchUrl, moduleUrl, assetsUrl) {
+  var ROW_HEIGHT = 22;
+  var list = document.getElementById('modules');
+  var count = document.getElementById('modulecount');
+  var details = document.getElementById('moduledetails');
+  var search = document.getElementById('modulesearch');
+  var modules = [];
+  var ids = {};
+  var index = null;
+  var shown = [];
+  var spacer = document.createElement('div');
+  var rows = document.createElement('div');
+  spacer.style.position = 'relative';
+  rows.style.position = 'absolute';
+  rows.style.left = '0';
+  rows.style.right = '0';
+  spacer.appendChild(rows);
+  list.appendChild(spacer);
+
+  function get(url, callback) {
+    var request = new XMLHttpRequest();
+    request.onreadystatechange = function() {
+      if (request.readyState == 4 && request.status == 200) {
+        callback(request.responseText);
+      }
+    };
+    request.open('GET', url, true);
+    request.send(null);
+  }
+
+  function escape(value) {
+    return value.replace(/&/g, '&amp;').replace(/</g, '&lt;').replace(/>/g, '&gt;').replace(/"/g, '&quot;');
+  }
+
+  var ICONS = { s: 'searched', d: 'downloaded', e: 'evicted', x: 'error' };
+
+  function row(m) {
+    var module = modules[m];
+    var html = '<div class="modulerow" style="height:' + ROW_HEIGHT + 'px;overflow:hidden;white-space:nowrap">'
+        + '<a href="#' + escape(module[0] + '-' + module[1]) + '">' + escape(module[1]) + ' by ' + escape(module[0]) + '</a>';
+    for (var r = 0; r < module[2].length; r++) {
+      var revision = module[2][r];
+      html += ' <span style="padding-left:10px">' + escape(revision[0]) + ' ' + escape(revision[1])
+          + ' ' + revision[3] + ' kB, ' + revision[4] + ' callers';
+      for (var f = 0; f < revision[2].length; f++) {
+        var icon = ICONS[revision[2].charAt(f)];
+        html += ' <img src="' + escape(assetsUrl + icon + '.svg') + '" alt="' + icon + '" title="' + icon + '">';
+      }
+      html += '</span>';
+    }
+    return html + '</div>';
+  }
+
+  function render() {
+    var first = Math.max(0, Math.floor(list.scrollTop / ROW_HEIGHT) - 10);
+    var end = Math.min(shown.length, first + Math.ceil(list.clientHeight / ROW_HEIGHT) + 20);
+    var html = [];
+    for (var i = first; i < end; i++) {
+      html.push(row(shown[i]));
+    }
+    rows.style.top = (first * ROW_HEIGHT) + 'px';
+    rows.innerHTML = html.join('');
+  }
+
+  function show(matches) {
+    shown = matches;
+    spacer.style.height = (shown.length * ROW_HEIGHT) + 'px';
+    count.innerHTML = shown.length + ' of ' + modules.length + ' modules';
+    list.scrollTop = 0;
+    render();
+  }
+
+  // the modules with a word starting with the prefix
+  function lookup(prefix) {
+    var words = index.words;
+    var low = 0;
+    var high = words.length;
+    while (low < high) {
+      var middle = (low + high) >> 1;
+      if (words[middle] < prefix) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    var found = {};
+    for (var w = low; w < words.length && words[w].indexOf(prefix) == 0; w++) {
+      var matches = index.modules[w];
+      for (var i = 0; i < matches.length; i++) {
+        found[matches[i]] = true;
+      }
+    }
+    return found;
+  }
+
+  function filter() {
+    // all the modules until the index is loaded
+    var terms = index == null ? [] : search.value.toLowerCase().split(/[^a-z0-9\u00c0-\uffff]+/);
+    var result = null;
+    for (var t = 0; t < terms.length; t++) {
+      if (terms[t].length == 0) {
+        continue;
+      }
+      var found = lookup(terms[t]);
+      if (result != null) {
+        for (var m in result) {
+          if (!found[m]) {
+            delete result[m];
+          }
+        }
+      } else {
+        result = found;
+      }
+    }
+    if (result == null) {
+      var all = [];
+      for (var m = 0; m < modules.length; m++) {
+        all.push(m);
+      }
+      show(all);
+      return;
+    }
+    var matches = [];
+    for (var m in result) {
+      matches.push(parseInt(m, 10));
+    }
+    matches.sort(function(a, b) { return a - b; });
+    show(matches);
+  }
+
+  // open the module of a #organisation-module[-revision] anchor
+  function open() {
+    var anchor = decodeURIComponent(window.location.hash.substring(1));
+    if (anchor.length == 0) {
+      return;
+    }
+    var m = ids[anchor];
+    for (var end = anchor.lastIndexOf('-'); m === undefined && end > 0; end = anchor.lastIndexOf('-', end - 1)) {
+      m = ids[anchor.substring(0, end)];
+    }
+    if (m === undefined || details.getAttribute('data-module') == String(m)) {
+      scrollTo(anchor);
+      return;
+    }
+    get(moduleUrl + m, function(html) {
+      details.innerHTML = html;
+      details.setAttribute('data-module', String(m));
+      scrollTo(anchor);
+    });
+  }
+
+  function scrollTo(anchor) {
+    var targets = document.getElementsByName(anchor);
+    if (targets.length > 0) {
+      targets[targets.length - 1].scrollIntoView();
+    }
+  }
+
+  list.onscroll = render;
+  search.onkeyup = filter;
+  window.onhashchange = open;
+  get(dataUrl, function(json) {
+    modules = JSON.parse(json);
+    for (var m = 0; m < modules.length; m++) {
+      ids[modules[m][0] + '-' + modules[m][1]] = m;
+    }
+    filter();
+    open();
+    get(searchUrl, function(json) {
+      index = JSON.parse(json);
+      filter();
+    });
+  });
+}
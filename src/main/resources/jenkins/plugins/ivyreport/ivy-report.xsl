@@ -22,6 +22,7 @@
 
 <xsl:param name="confs"    select="/ivy-report/info/@confs"/>
 <xsl:param name="extension"    select="'xml'"/>
+<xsl:param name="assets"    select="''"/>
 
 <xsl:variable name="myorg"    select="/ivy-report/info/@organisation"/>
 <xsl:variable name="mymod"    select="/ivy-report/info/@module"/>
@@ -161,21 +162,21 @@
 <xsl:template name="icons">
     <xsl:param name="revision"/>
     <xsl:if test="$revision/@searched = 'true'">
-         <img src="http://ant.apache.org/ivy/images/searched.gif" alt="searched" title="required a search in repository"/>
+         <img src="{$assets}searched.svg" alt="searched" title="required a search in repository"/>
     </xsl:if>
     <xsl:if test="$revision/@downloaded = 'true'">
-         <img src="http://ant.apache.org/ivy/images/downloaded.gif" alt="downloaded" title="downloaded from repository"/>
+         <img src="{$assets}downloaded.svg" alt="downloaded" title="downloaded from repository"/>
     </xsl:if>
     <xsl:if test="$revision/@evicted">
         <xsl:element name="img">
-            <xsl:attribute name="src">http://ant.apache.org/ivy/images/evicted.gif</xsl:attribute>
+            <xsl:attribute name="src"><xsl:value-of select="$assets"/>evicted.svg</xsl:attribute>
             <xsl:attribute name="alt">evicted</xsl:attribute>
             <xsl:attribute name="title">evicted by <xsl:for-each select="$revision/evicted-by"><xsl:value-of select="@rev"/> </xsl:for-each></xsl:attribute>
         </xsl:element>
     </xsl:if>
     <xsl:if test="$revision/@error">
         <xsl:element name="img">
-            <xsl:attribute name="src">http://ant.apache.org/ivy/images/error.gif</xsl:attribute>
+            <xsl:attribute name="src"><xsl:value-of select="$assets"/>error.svg</xsl:attribute>
             <xsl:attribute name="alt">error</xsl:attribute>
             <xsl:attribute name="title">error: <xsl:value-of select="$revision/@error"/></xsl:attribute>
         </xsl:element>
@@ -257,10 +258,10 @@
     <meta http-equiv="content-type" content="text/html; charset=ISO-8859-1" />
     <meta http-equiv="content-language" content="en" />
     <meta name="robots" content="index,follow" />
-    <link rel="stylesheet" type="text/css" href="ivy-report.css" /> 
+    <link rel="stylesheet" type="text/css" href="{$assets}ivy-report.css" /> 
   </head>
   <body>
-    <div id="logo"><a href="http://ant.apache.org/ivy/"><img src="http://ant.apache.org/ivy/images/logo.png"/></a></div>
+    <div id="logo"><a href="http://ant.apache.org/ivy/"><img src="{$assets}logo.svg"/></a></div>
     <h1>
       <xsl:element name="a">
         <xsl:attribute name="name"><xsl:value-of select="info/@organisation"/>-<xsl:value-of select="info/@module"/></xsl:attribute>
@@ -299,10 +300,10 @@
         <table class="header">
           <tr><td class="title">Modules</td><td class="value"><xsl:value-of select="count($modules)"/></td></tr>
           <tr><td class="title">Revisions</td><td class="value"><xsl:value-of select="count($revisions)"/>  
-            (<xsl:value-of select="count($searcheds)"/> searched <img src="http://ant.apache.org/ivy/images/searched.gif" alt="searched" title="module revisions which required a search with a dependency resolver to be resolved"/>,
-            <xsl:value-of select="count($downloadeds)"/> downloaded <img src="http://ant.apache.org/ivy/images/downloaded.gif" alt="downloaded" title="module revisions for which ivy file was downloaded by dependency resolver"/>,
-            <xsl:value-of select="count($evicteds)"/> evicted <img src="http://ant.apache.org/ivy/images/evicted.gif" alt="evicted" title="module revisions which were evicted by others"/>,
-            <xsl:value-of select="count($errors)"/> errors <img src="http://ant.apache.org/ivy/images/error.gif" alt="error" title="module revisions on which error occured"/>)</td></tr>
+            (<xsl:value-of select="count($searcheds)"/> searched <img src="{$assets}searched.svg" alt="searched" title="module revisions which required a search with a dependency resolver to be resolved"/>,
+            <xsl:value-of select="count($downloadeds)"/> downloaded <img src="{$assets}downloaded.svg" alt="downloaded" title="module revisions for which ivy file was downloaded by dependency resolver"/>,
+            <xsl:value-of select="count($evicteds)"/> evicted <img src="{$assets}evicted.svg" alt="evicted" title="module revisions which were evicted by others"/>,
+            <xsl:value-of select="count($errors)"/> errors <img src="{$assets}error.svg" alt="error" title="module revisions on which error occured"/>)</td></tr>
           <tr><td class="title">Artifacts</td><td class="value"><xsl:value-of select="count($artifacts)"/> 
             (<xsl:value-of select="count($dlartifacts)"/> downloaded,
             <xsl:value-of select="count($faileds)"/> failed)</td></tr>
@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+/**
+ * Checks that a report is diffed the same way against the dependency graph
+ * of the previous report as against its resolve report.
+ */
+public class DependencyDiffTest {
+
+	@Test
+	public void testSameReportHasNoChanges() throws Exception {
+		ResolveReport report = parseFixture();
+		assertTrue(DependencyDiff.compute(report, report).isEmpty());
+		assertTrue(DependencyDiff.compute(toGraph(report), report).isEmpty());
+	}
+
+	@Test
+	public void testGraphGivesTheSameChanges() throws Exception {
+		// an empty previous report : every module is added
+		ResolveReport empty = ResolveReport.parse(new InputSource(
+				new StringReader("<ivy-report><info/><dependencies/>"
+						+ "</ivy-report>")));
+		ResolveReport report = parseFixture();
+		DependencyDiff fromReport = DependencyDiff.compute(report, empty);
+		DependencyDiff fromGraph = DependencyDiff.compute(toGraph(report),
+				empty);
+		assertEquals(report.getModuleCount(), fromGraph.getRemovedModules()
+				.size());
+		for (int i = 0; i < fromReport.getRemovedModules().size(); i++) {
+			DependencyDiff.Change expected = fromReport.getRemovedModules()
+					.get(i);
+			DependencyDiff.Change change = fromGraph.getRemovedModules()
+					.get(i);
+			assertEquals(expected.getOrganisation(), change.getOrganisation());
+			assertEquals(expected.getModule(), change.getModule());
+			assertEquals(expected.getPreviousRevisions(),
+					change.getPreviousRevisions());
+		}
+	}
+
+	private static ResolveReport parseFixture() throws Exception {
+		return ResolveReport.parse(new File(DependencyDiffTest.class
+				.getResource("org.test-app-compile.xml").toURI()));
+	}
+
+	private static DependencyGraph toGraph(ResolveReport report)
+			throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new DependencyGraphWriter(report).write(out);
+		return DependencyGraph.read(out.toByteArray());
+	}
+}
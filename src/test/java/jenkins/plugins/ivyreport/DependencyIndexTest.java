@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyIndexTest {
+	@Rule
+	public TemporaryFolder dir = new TemporaryFolder();
+	private File reportsDir;
+
+	@Before
+	public void setUp() throws Exception {
+		reportsDir = new File(DependencyIndexTest.class.getResource(
+				"org.test-app-compile.xml").toURI()).getParentFile();
+	}
+
+	@Test
+	public void testRename() throws IOException {
+		DependencyIndex index = new DependencyIndex(dir.getRoot());
+		index.update("app", 3, reportsDir);
+		index.rename("app", "application");
+		assertJob("application", 3, index.find("org.test", "core", null));
+		// the renamed job is persisted
+		assertJob("application", 3, new DependencyIndex(dir.getRoot()).find(
+				"org.test", "core", null));
+	}
+
+	@Test
+	public void testRemove() throws IOException {
+		DependencyIndex index = new DependencyIndex(dir.getRoot());
+		index.update("app", 3, reportsDir);
+		index.remove("app");
+		assertTrue(index.find("org.test", "core", null).isEmpty());
+		assertTrue(new DependencyIndex(dir.getRoot()).find("org.test", "core", null)
+				.isEmpty());
+	}
+
+	private static void assertJob(String job, int buildNumber,
+			List<DependencyIndex.Entry> entries) {
+		assertEquals(1, entries.size());
+		assertEquals(job, entries.get(0).getJob());
+		assertEquals(buildNumber, entries.get(0).getBuildNumber());
+	}
+}
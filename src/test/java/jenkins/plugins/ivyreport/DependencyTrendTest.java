@@ -0,0 +1,62 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyTrendTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReadIsCachedUntilTheFileChanges() throws IOException {
+		File file = new File(folder.getRoot(), "ivy-report-trend.log");
+		DependencyTrend trend = new DependencyTrend(file);
+		assertEquals(0, trend.read().size());
+		trend.append(point(1));
+		List<DependencyTrend.Point> points = trend.read();
+		assertEquals(1, points.size());
+		assertSame(points, new DependencyTrend(file).read());
+		trend.append(point(2));
+		assertEquals(2, trend.read().size());
+		trend.remove(1);
+		points = trend.read();
+		assertEquals(1, points.size());
+		assertEquals(2, points.get(0).getBuildNumber());
+	}
+
+	private static DependencyTrend.Point point(int buildNumber) {
+		return new DependencyTrend.Point(buildNumber, new long[] { 10, 1, 2,
+				300, 400 });
+	}
+}
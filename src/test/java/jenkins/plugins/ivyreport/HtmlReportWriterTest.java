@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+/**
+ * Compares the html written by {@link HtmlReportWriter} to the html of
+ * ivy-report.xsl, that it replaces.
+ * <p>
+ * org.test-app-compile.xml has diamonds (app -&gt; core and api-impl -&gt;
+ * api), a revision evicted by two others, a failed artifact, an artifact
+ * without size, an unresolved revision and a module (org.test/api) whose
+ * name is a substring of another one (org.test/api-impl). The xslt
+ * serializer does not break lines and escape characters like the writer, so
+ * the outputs are compared as sequences of tags, with their attributes, and
+ * texts, with their whitespace collapsed.
+ */
+public class HtmlReportWriterTest {
+	private static final String CONFS = "compile,runtime";
+	private static final Pattern TOKEN = Pattern.compile("<[^>]*>|[^<]+");
+	private static final Pattern TAG_NAME = Pattern.compile("^</?\\w+");
+	private static final Pattern ATTRIBUTE = Pattern
+			.compile("([\\w-]+)=\"([^\"]*)\"");
+	private static final Pattern CHARACTER_REFERENCE = Pattern
+			.compile("&#(\\d+);");
+
+	@Test
+	public void testSameOutputAsStylesheet() throws Exception {
+		assertEquals(tokenize(transform()), tokenize(write()));
+	}
+
+	@Test
+	public void testEvictedByTitlesAreNotSeparated() throws Exception {
+		// like the stylesheet, that writes the evicted-by revisions one after
+		// the other
+		assertTrue(write().contains("title=\"evicted by 1.01.1\""));
+	}
+
+	@Test
+	public void testModuleInCallstackIsNotExpanded() throws Exception {
+		// org.other/broken is a dependency of org.test/api, but it is not
+		// written under org.test/api-impl -> org.test/api because, like in
+		// the stylesheet, org.test/api is a substring of the call stack
+		ResolveReport report = ResolveReport.parse(getResolveReport());
+		assertTrue(writeSubtree(report, "core").contains(
+				"<a href=\"#org.other-broken\""));
+		String subtree = writeSubtree(report, "api-impl");
+		assertTrue(subtree.contains("<a href=\"#org.test-api\""));
+		assertFalse(subtree.contains("<a href=\"#org.other-broken\""));
+	}
+
+	private static File getResolveReport() throws URISyntaxException {
+		return new File(HtmlReportWriterTest.class.getResource(
+				"org.test-app-compile.xml").toURI());
+	}
+
+	private static String write() throws Exception {
+		StringWriter out = new StringWriter();
+		new HtmlReportWriter(ResolveReport.parse(getResolveReport()), CONFS,
+				"html", out).write();
+		return out.toString();
+	}
+
+	private static String transform() throws Exception {
+		Transformer transformer = TransformerFactory.newInstance()
+				.newTransformer(
+						new StreamSource(HtmlReportWriter.class.getResource(
+								"ivy-report.xsl").toString()));
+		transformer.setParameter("confs", CONFS);
+		transformer.setParameter("extension", "html");
+		StringWriter out = new StringWriter();
+		transformer.transform(new StreamSource(getResolveReport()),
+				new StreamResult(out));
+		return out.toString();
+	}
+
+	/**
+	 * @return the rows of the dependencies of the first revision of a module
+	 *         of org.test
+	 */
+	private static String writeSubtree(ResolveReport report, String module)
+			throws Exception {
+		for (int m = 0; m < report.getModuleCount(); m++) {
+			if ("org.test".equals(report.getModuleOrganisation(m))
+					&& module.equals(report.getModuleName(m))) {
+				StringWriter out = new StringWriter();
+				new HtmlReportWriter(report, CONFS, "html", out).writeSubtree(
+						report.getFirstRevision(m), "", 0);
+				return out.toString();
+			}
+		}
+		throw new IllegalArgumentException("No such module: " + module);
+	}
+
+	private static List<String> tokenize(String html) {
+		List<String> tokens = new ArrayList<String>();
+		Matcher matcher = TOKEN.matcher(html);
+		while (matcher.find()) {
+			String token = matcher.group();
+			if (token.startsWith("<")) {
+				Matcher name = TAG_NAME.matcher(token);
+				if (!name.find()) {
+					// doctype or comment
+					continue;
+				}
+				StringBuilder tag = new StringBuilder(name.group()
+						.toLowerCase());
+				Matcher attribute = ATTRIBUTE.matcher(token);
+				while (attribute.find()) {
+					tag.append(' ').append(attribute.group(1).toLowerCase())
+							.append("=[").append(unescape(attribute.group(2)))
+							.append(']');
+				}
+				tokens.add(tag.append('>').toString());
+			} else {
+				String text = unescape(token).replaceAll("\\s+", " ").trim();
+				if (text.length() > 0) {
+					tokens.add(text);
+				}
+			}
+		}
+		return tokens;
+	}
+
+	private static String unescape(String value) {
+		value = value.replace("&lt;", "<").replace("&gt;", ">")
+				.replace("&quot;", "\"").replace("&#39;", "'");
+		Matcher matcher = CHARACTER_REFERENCE.matcher(value);
+		StringBuffer result = new StringBuffer();
+		while (matcher.find()) {
+			matcher.appendReplacement(result, Matcher.quoteReplacement(String
+					.valueOf((char) Integer.parseInt(matcher.group(1)))));
+		}
+		matcher.appendTail(result);
+		return result.toString().replace("&amp;", "&");
+	}
+}
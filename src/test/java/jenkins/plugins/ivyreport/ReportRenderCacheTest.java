@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, Cedric Chabanois
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE. 
+ */
+package jenkins.plugins.ivyreport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReportRenderCacheTest {
+	@Rule
+	public TemporaryFolder root = new TemporaryFolder();
+	private int renders;
+
+	@Test
+	public void testRendersOnce() throws Exception {
+		ReportRenderCache cache = new ReportRenderCache(root.getRoot(), 1000);
+		File dir = cache.acquire("a", new FixedSizeRenderer(100));
+		cache.release("a");
+		assertEquals(dir, cache.acquire("a", new FixedSizeRenderer(100)));
+		cache.release("a");
+		assertEquals(1, renders);
+	}
+
+	@Test
+	public void testServedEntryIsNotEvicted() throws Exception {
+		ReportRenderCache cache = new ReportRenderCache(root.getRoot(), 150);
+		File a = cache.acquire("a", new FixedSizeRenderer(100));
+		File b = cache.acquire("b", new FixedSizeRenderer(100));
+		cache.release("b");
+		// a is the least recently used entry but it is being served
+		assertTrue(a.isDirectory());
+		assertFalse(b.isDirectory());
+		cache.release("a");
+		assertTrue(a.isDirectory());
+		File c = cache.acquire("c", new FixedSizeRenderer(100));
+		cache.release("c");
+		assertFalse(a.isDirectory());
+		assertTrue(c.isDirectory());
+	}
+
+	@Test
+	public void testReleasedEntryIsEvictedWhenTooBig() throws Exception {
+		ReportRenderCache cache = new ReportRenderCache(root.getRoot(), 150);
+		File a = cache.acquire("a", new FixedSizeRenderer(100));
+		File b = cache.acquire("b", new FixedSizeRenderer(100));
+		// both are being served
+		assertTrue(a.isDirectory());
+		assertTrue(b.isDirectory());
+		cache.release("a");
+		assertFalse(a.isDirectory());
+		cache.release("b");
+		assertTrue(b.isDirectory());
+	}
+
+	private class FixedSizeRenderer implements ReportRenderCache.Renderer {
+		private final int size;
+
+		public FixedSizeRenderer(int size) {
+			this.size = size;
+		}
+
+		public void render(File targetDir) throws IOException {
+			renders++;
+			FileOutputStream out = new FileOutputStream(new File(targetDir,
+					"report.html"));
+			try {
+				out.write(new byte[size]);
+			} finally {
+				out.close();
+			}
+		}
+	}
+}